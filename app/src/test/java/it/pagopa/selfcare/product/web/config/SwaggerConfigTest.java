@@ -1,6 +1,7 @@
 package it.pagopa.selfcare.product.web.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.selfcare.product.core.ImageUploadService;
 import it.pagopa.selfcare.product.core.ProductService;
 import it.pagopa.selfcare.product.web.model.mapper.ProductResourceMapperImpl;
 import org.junit.jupiter.api.Test;
@@ -38,6 +39,9 @@ class SwaggerConfigTest {
     @MockBean
     private ProductService productService;
 
+    @MockBean
+    private ImageUploadService imageUploadService;
+
     @Autowired
     WebApplicationContext context;
 
@@ -5,8 +5,64 @@ import it.pagopa.selfcare.product.connector.exception.FileUploadException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 public interface FileStorageConnector {
 
-    URL uploadProductImg(InputStream file, String fileName, String contentType) throws FileUploadException, MalformedURLException;
+    /**
+     * Matches the {@code <name>-<sha256>.<extension>} images and their {@code <name>-<sha256>-<width>.<extension>}
+     * renditions, whose content never changes once stored
+     */
+    Pattern CONTENT_ADDRESSED_FILE_NAME = Pattern.compile(".*-[0-9a-f]{64}(-\\d+)?\\.[^./]+");
+
+
+    /**
+     * @return {@code true} if the given file name is derived from the file content, so the file can be cached forever
+     */
+    static boolean isContentAddressed(String fileName) {
+        return fileName != null && CONTENT_ADDRESSED_FILE_NAME.matcher(fileName).matches();
+    }
+
+    /**
+     * @param file          the image content, read exactly up to contentLength bytes
+     * @param contentLength the length of the image in bytes
+     * @return the public URL of the uploaded image
+     */
+    default URL uploadProductImg(InputStream file, long contentLength, String fileName, String contentType) throws FileUploadException, MalformedURLException {
+        return uploadProductImg(file, contentLength, fileName, contentType, null);
+    }
+
+    /**
+     * @param file            the image content, already encoded with contentEncoding, read exactly up to contentLength bytes
+     * @param contentLength   the length of the encoded image in bytes
+     * @param contentEncoding the encoding the image has to be served with, as {@code gzip}, {@code null} if not encoded
+     * @return the public URL of the uploaded image
+     */
+    URL uploadProductImg(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) throws FileUploadException, MalformedURLException;
+
+    /**
+     * Non-blocking variant of {@link #uploadProductImg(InputStream, long, String, String, String)}, failing with a
+     * {@link FileUploadException} if the upload fails.
+     * The default implementation runs the blocking upload on the caller thread, connectors backed by a non-blocking
+     * client override it so that many uploads can be in flight on few threads.
+     * The product image services do not use it yet, they upload through the blocking variant.
+     *
+     * @return the public URL of the uploaded image, once the upload completes
+     */
+    default CompletableFuture<URL> uploadProductImgAsync(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) {
+        try {
+            return CompletableFuture.completedFuture(uploadProductImg(file, contentLength, fileName, contentType, contentEncoding));
+        } catch (FileUploadException e) {
+            return CompletableFuture.failedFuture(e);
+        } catch (MalformedURLException e) {
+            return CompletableFuture.failedFuture(new FileUploadException(e));
+        }
+    }
+
+    /**
+     * @return the public URL of the image already stored with the given file name, if any
+     */
+    Optional<URL> findProductImg(String fileName) throws FileUploadException, MalformedURLException;
 }
@@ -0,0 +1,20 @@
+package it.pagopa.selfcare.product.connector.api;
+
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+
+import java.util.Optional;
+
+/**
+ * Stores the state of the asynchronous image uploads, so that it can be polled through any replica.
+ * Completed operations are kept only for a limited time.
+ */
+public interface ImageUploadOperationConnector {
+
+    /**
+     * Store the given operation, replacing the one with the same id (if any)
+     */
+    void save(ImageUploadOperation operation);
+
+    Optional<ImageUploadOperation> findById(String id);
+
+}
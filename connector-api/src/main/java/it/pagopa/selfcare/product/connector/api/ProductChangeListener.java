@@ -0,0 +1,17 @@
+package it.pagopa.selfcare.product.connector.api;
+
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+
+/**
+ * Callback notified of the changes made to the products collection, including those made by other replicas.
+ */
+public interface ProductChangeListener {
+
+    void onProductChange(ProductChangeEvent event);
+
+    /**
+     * Invoked when single changes may have been missed, so any state derived from the products must be rebuilt
+     */
+    void onCatalogResync();
+
+}
@@ -1,9 +1,15 @@
 package it.pagopa.selfcare.product.connector.api;
 
+import it.pagopa.selfcare.commons.base.utils.InstitutionType;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ProductConnector {
@@ -12,8 +18,59 @@ public interface ProductConnector {
 
     ProductOperations save(ProductOperations entity);
 
+    /**
+     * Atomically apply the editable fields set on the given product to the stored one, in a single round-trip,
+     * provided that the latter is not {@link ProductStatus#INACTIVE INACTIVE} and, when the given product has a version,
+     * that it still has the same version.
+     * The fields left null are not modified, the contract templates updatedAt are moved forward only if their version changes.
+     *
+     * @return the updated product, with its version incremented
+     * @throws it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException if there is no such product
+     * @throws it.pagopa.selfcare.product.connector.exception.ResourceConflictException if the product has been modified in the meantime
+     */
+    ProductOperations updateProduct(ProductOperations product);
+
+    /**
+     * Atomically set the logo and its renditions of the product with the given id,
+     * provided that it is not {@link ProductStatus#INACTIVE INACTIVE}, leaving the other fields as they are.
+     *
+     * @return the updated product, with its version incremented
+     * @throws it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException if there is no such product
+     */
+    ProductOperations updateLogo(String id, String logo, Map<Integer, String> logoRenditions);
+
+    /**
+     * Atomically set the depict image and its renditions of the product with the given id,
+     * provided that it is not {@link ProductStatus#INACTIVE INACTIVE}, leaving the other fields as they are.
+     *
+     * @return the updated product, with its version incremented
+     * @throws it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException if there is no such product
+     */
+    ProductOperations updateDepictImage(String id, String depictImageUrl, Map<Integer, String> depictImageRenditions);
+
     Optional<ProductOperations> findById(String id);
 
+    /**
+     * @return the product with the given id, populating at least its id, its status and the given fields
+     */
+    Optional<ProductOperations> findById(String id, Collection<String> fields);
+
+    /**
+     * @return the product with the given id, with its parent (if any) set as {@link ProductOperations#getProductOperations() productOperations}
+     */
+    Optional<ProductOperations> findByIdWithParent(String id);
+
+    /**
+     * @return the product with the given id, populating at least its status and roleMappings
+     */
+    Optional<ProductOperations> findRoleMappingsById(String id);
+
+    /**
+     * @return the product with the given id, populating at least its status, its default contract template
+     * and, if any, the contract template of the given institutionType
+     */
+    Optional<ProductOperations> findContractTemplatesById(String id, InstitutionType institutionType);
+
     boolean existsById(String id);
 
     /**
@@ -27,6 +84,17 @@ public interface ProductConnector {
 
     List<ProductOperations> findAll();
 
+    /**
+     * @return the products with the given ids, in no particular order, skipping the ones that do not exist
+     */
+    List<ProductOperations> findAllById(Collection<String> ids);
+
+    /**
+     * @return the products with the given ids, in no particular order, skipping the ones that do not exist,
+     * populating at least their id, their status and the given fields
+     */
+    List<ProductOperations> findAllById(Collection<String> ids, Collection<String> fields);
+
     void deleteById(String id);
 
     /**
@@ -47,7 +115,20 @@ public interface ProductConnector {
 
     List<ProductOperations> findByStatusIsNot(ProductStatus status);
 
+    /**
+     * @return the products, whatever their status, created or modified at or after the given instant
+     */
+    List<ProductOperations> findByModifiedAtAfter(Instant since);
+
+    /**
+     * @return the root products that are not {@link ProductStatus#INACTIVE INACTIVE},
+     * each one with its children that are not {@link ProductStatus#INACTIVE INACTIVE} either
+     */
+    List<ProductTree> findProductTree();
+
     void disableById(String id);
 
     void updateProductStatus(String id, ProductStatus status);
+
+    CatalogVersion getCatalogVersion();
 }
@@ -0,0 +1,9 @@
+package it.pagopa.selfcare.product.connector.exception;
+
+public class ResourceConflictException extends RuntimeException {
+
+    public ResourceConflictException(String msg) {
+        super(msg);
+    }
+
+}
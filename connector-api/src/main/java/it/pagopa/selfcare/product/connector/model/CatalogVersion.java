@@ -0,0 +1,52 @@
+package it.pagopa.selfcare.product.connector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Identifies the state of a set of products, usually the whole products collection: it changes whenever a product
+ * is created, modified or removed
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogVersion {
+    private long count;
+    /**
+     * A digest of the id, version and creation date of every product: the version is incremented on every write,
+     * and the creation date tells apart a product created again with the same id
+     */
+    private String fingerprint;
+
+
+    /**
+     * The products are digested in the order of their ids, so the same products give the same version on every replica
+     */
+    public static CatalogVersion of(Collection<? extends ProductOperations> products) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        products.stream()
+                .sorted(Comparator.comparing(ProductOperations::getId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(product -> digest.update((product.getId() + ":"
+                        + (product.getVersion() == null ? "" : product.getVersion()) + ":"
+                        + (product.getCreatedAt() == null ? "" : product.getCreatedAt().toEpochMilli()) + "\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+        final StringBuilder fingerprint = new StringBuilder();
+        final byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            fingerprint.append(String.format("%02x", hash[i]));
+        }
+        return new CatalogVersion(products.size(), fingerprint.toString());
+    }
+}
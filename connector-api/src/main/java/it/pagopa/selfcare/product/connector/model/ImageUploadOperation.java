@@ -0,0 +1,44 @@
+package it.pagopa.selfcare.product.connector.model;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Immutable snapshot of the state of an asynchronous product image upload.
+ */
+@Value
+public class ImageUploadOperation {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    String id;
+    String productId;
+    ProductImageType imageType;
+    Status status;
+    String error;
+    Instant createdAt;
+    Instant updatedAt;
+
+
+    public static ImageUploadOperation pending(String id, String productId, ProductImageType imageType) {
+        final Instant now = Instant.now();
+        return new ImageUploadOperation(id, productId, imageType, Status.PENDING, null, now, now);
+    }
+
+
+    public ImageUploadOperation withStatus(Status status, String error) {
+        return new ImageUploadOperation(id, productId, imageType, status, error, createdAt, Instant.now());
+    }
+
+
+    public boolean isDone() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+}
@@ -0,0 +1,29 @@
+package it.pagopa.selfcare.product.connector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeEvent {
+    private ProductChangeType type;
+    private String productId;
+    /**
+     * The product as it is after the change, {@code null} when it has been removed from the collection
+     * or, for a {@link ProductChangeType#STATUS_CHANGE STATUS_CHANGE} or a {@link ProductChangeType#DELETE DELETE}
+     * notified by the service, when it has not been read back
+     */
+    private ProductOperations product;
+    /**
+     * The cluster time of the change, as the value of its BSON timestamp, when it comes from the change stream:
+     * it is the same on every replica, and it grows with the order of the changes
+     */
+    private Long clusterTime;
+
+
+    public ProductChangeEvent(ProductChangeType type, String productId, ProductOperations product) {
+        this(type, productId, product, null);
+    }
+}
@@ -0,0 +1,8 @@
+package it.pagopa.selfcare.product.connector.model;
+
+public enum ProductChangeType {
+    CREATE,
+    UPDATE,
+    STATUS_CHANGE,
+    DELETE
+}
@@ -0,0 +1,6 @@
+package it.pagopa.selfcare.product.connector.model;
+
+public enum ProductImageType {
+    LOGO,
+    DEPICT_IMAGE
+}
@@ -24,6 +24,14 @@ public interface ProductOperations {
 
     void setDepictImageUrl(String depictImageUrl);
 
+    Map<Integer, String> getLogoRenditions();
+
+    void setLogoRenditions(Map<Integer, String> logoRenditions);
+
+    Map<Integer, String> getDepictImageRenditions();
+
+    void setDepictImageRenditions(Map<Integer, String> depictImageRenditions);
+
     String getTitle();
 
     void setTitle(String title);
@@ -109,4 +117,8 @@ public interface ProductOperations {
 
     boolean isInvoiceable();
     void setInvoiceable(boolean invoiceable);
+
+    Long getVersion();
+
+    void setVersion(Long version);
 }
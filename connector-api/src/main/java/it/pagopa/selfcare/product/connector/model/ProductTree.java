@@ -0,0 +1,15 @@
+package it.pagopa.selfcare.product.connector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductTree {
+    private ProductOperations node;
+    private List<ProductOperations> children;
+}
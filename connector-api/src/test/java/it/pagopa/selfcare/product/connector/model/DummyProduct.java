@@ -13,6 +13,8 @@ public class DummyProduct implements ProductOperations {
     private String logo;
     private String logoBgColor;
     private String depictImageUrl;
+    private Map<Integer, String> logoRenditions;
+    private Map<Integer, String> depictImageRenditions;
     private String title;
     private String description;
     private String urlPublic;
@@ -35,6 +37,7 @@ public class DummyProduct implements ProductOperations {
     private String roleManagementURL;
     private ProductOperations productOperations;
     private boolean invoiceable;
+    private Long version;
 
 
     @Override
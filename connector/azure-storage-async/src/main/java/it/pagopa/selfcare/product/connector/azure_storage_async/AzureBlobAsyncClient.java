@@ -0,0 +1,156 @@
+package it.pagopa.selfcare.product.connector.azure_storage_async;
+
+import com.azure.storage.blob.BlobAsyncClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobHttpHeaders;
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import it.pagopa.selfcare.product.connector.api.FileStorageConnector;
+import it.pagopa.selfcare.product.connector.exception.FileUploadException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores the product images through the non-blocking Azure Storage Blob client.
+ * The uploads are sent on the client event loop, only the reads from the source stream run on a worker thread.
+ * The image services still call the blocking {@link #uploadProductImg}, which waits for the upload on the caller
+ * thread: only the callers of {@link #uploadProductImgAsync} can have many uploads in flight without holding a thread each.
+ */
+@Slf4j
+@Service
+@Profile("AzureStorageAsync")
+class AzureBlobAsyncClient implements FileStorageConnector {
+
+    private final BlobContainerAsyncClient blobContainer;
+    private final String publicHost;
+    private final int blockSize;
+    private final String cacheControl;
+    private final String mutableCacheControl;
+    private final ParallelTransferOptions transferOptions;
+
+
+    AzureBlobAsyncClient(@Value("${blobStorage.connectionString}") String storageConnectionString,
+                         @Value("${blobStorage.product.img.containerReference}") String productImgContainerReference,
+                         @Value("${blobStorage.product.upload.host}") String publicHost,
+                         @Value("${blobStorage.upload.blockSize}") int blockSize,
+                         @Value("${blobStorage.upload.maxConcurrency}") int maxConcurrency,
+                         @Value("${blobStorage.upload.cacheControl}") String cacheControl,
+                         @Value("${blobStorage.upload.mutableCacheControl}") String mutableCacheControl) {
+        this.blobContainer = new BlobServiceClientBuilder()
+                .connectionString(storageConnectionString)
+                .buildAsyncClient()
+                .getBlobContainerAsyncClient(productImgContainerReference);
+        this.publicHost = publicHost;
+        this.blockSize = blockSize;
+        this.cacheControl = cacheControl;
+        this.mutableCacheControl = mutableCacheControl;
+        this.transferOptions = new ParallelTransferOptions()
+                .setBlockSizeLong((long) blockSize)
+                .setMaxSingleUploadSizeLong((long) blockSize)
+                .setMaxConcurrency(maxConcurrency);
+    }
+
+
+    @Override
+    public URL uploadProductImg(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) throws FileUploadException {
+        log.trace("uploadProductImg start");
+        log.debug("uploadProductImg file = {}, contentLength = {}, fileName = {}, contentType = {}, contentEncoding = {}", file, contentLength, fileName, contentType, contentEncoding);
+        final URL url = upload(file, contentLength, fileName, contentType, contentEncoding).block();
+        log.debug("uploadProductImg result = {}", url);
+        log.trace("uploadProductImg end");
+        return url;
+    }
+
+
+    @Override
+    public CompletableFuture<URL> uploadProductImgAsync(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) {
+        log.trace("uploadProductImgAsync start");
+        log.debug("uploadProductImgAsync file = {}, contentLength = {}, fileName = {}, contentType = {}, contentEncoding = {}", file, contentLength, fileName, contentType, contentEncoding);
+        final CompletableFuture<URL> result = upload(file, contentLength, fileName, contentType, contentEncoding).toFuture();
+        log.trace("uploadProductImgAsync end");
+        return result;
+    }
+
+
+    /**
+     * @return a cold {@link Mono} uploading the image on subscription, emitting its public URL or a {@link FileUploadException}
+     */
+    Mono<URL> upload(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) {
+        final BlobAsyncClient blob = blobContainer.getBlobAsyncClient(fileName);
+        final BlobHttpHeaders headers = new BlobHttpHeaders()
+                .setContentType(contentType)
+                // a blob stored under a fixed name can be overwritten, so it cannot be cached as immutable
+                .setCacheControl(FileStorageConnector.isContentAddressed(fileName) ? cacheControl : mutableCacheControl)
+                .setContentEncoding(contentEncoding);
+        final BlobParallelUploadOptions options = new BlobParallelUploadOptions(read(file, contentLength, blockSize))
+                .setParallelTransferOptions(transferOptions)
+                .setHeaders(headers);
+        return blob.uploadWithResponse(options)
+                .then(Mono.fromCallable(() -> toPublicUrl(fileName)))
+                .doOnSuccess(url -> log.info("Uploaded {}", fileName))
+                .onErrorMap(e -> !(e instanceof FileUploadException), FileUploadException::new);
+    }
+
+
+    @Override
+    public Optional<URL> findProductImg(String fileName) throws FileUploadException, MalformedURLException {
+        log.trace("findProductImg start");
+        log.debug("findProductImg fileName = {}", fileName);
+        final Boolean exists = blobContainer.getBlobAsyncClient(fileName)
+                .exists()
+                .onErrorMap(FileUploadException::new)
+                .block();
+        final Optional<URL> url = Boolean.TRUE.equals(exists) ? Optional.of(toPublicUrl(fileName)) : Optional.empty();
+        log.debug("findProductImg result = {}", url);
+        log.trace("findProductImg end");
+        return url;
+    }
+
+
+    private URL toPublicUrl(String fileName) throws MalformedURLException {
+        return new URL(new URL(blobContainer.getBlobContainerUrl()).getProtocol(), publicHost, "/" + fileName);
+    }
+
+
+    /**
+     * Reads exactly {@code contentLength} bytes of the stream in chunks of at most {@code chunkSize} bytes.
+     * The stream is read on demand, on a worker thread, so at most the chunks requested by the client are held in memory.
+     */
+    static Flux<ByteBuffer> read(InputStream file, long contentLength, int chunkSize) {
+        return Flux.<ByteBuffer, Long>generate(() -> 0L, (offset, sink) -> {
+                    if (offset >= contentLength) {
+                        sink.complete();
+                        return offset;
+                    }
+                    final int length = (int) Math.min(chunkSize, contentLength - offset);
+                    try {
+                        final byte[] chunk = file.readNBytes(length);
+                        if (chunk.length < length) {
+                            sink.error(new EOFException(String.format("Expected %d bytes, stream ended after %d", contentLength, offset + chunk.length)));
+                        } else {
+                            sink.next(ByteBuffer.wrap(chunk));
+                        }
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                    return offset + length;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+}
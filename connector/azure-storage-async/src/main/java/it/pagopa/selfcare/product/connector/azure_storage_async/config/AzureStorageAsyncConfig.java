@@ -0,0 +1,11 @@
+package it.pagopa.selfcare.product.connector.azure_storage_async.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+
+@Configuration
+@PropertySource("classpath:config/azure-storage-async-config.properties")
+@Profile("AzureStorageAsync")
+class AzureStorageAsyncConfig {
+}
@@ -0,0 +1,211 @@
+package it.pagopa.selfcare.product.connector.azure_storage_async;
+
+import com.azure.storage.blob.BlobAsyncClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import it.pagopa.selfcare.product.connector.exception.FileUploadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+class AzureBlobAsyncClientTest {
+
+    private static final String PUBLIC_HOST = "selcdcheckoutsa.z6.web.core.windows.net";
+    private static final int BLOCK_SIZE = 4;
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String MUTABLE_CACHE_CONTROL = "public, max-age=300";
+    private static final byte[] IMAGE = "product image".getBytes(StandardCharsets.UTF_8);
+
+    private AzureBlobAsyncClient blobClient;
+    private BlobContainerAsyncClient blobContainerMock;
+
+
+    @BeforeEach
+    void setUp() throws Exception {
+        blobClient = new AzureBlobAsyncClient("UseDevelopmentStorage=true;",
+                "$web", PUBLIC_HOST, BLOCK_SIZE, 2, CACHE_CONTROL, MUTABLE_CACHE_CONTROL);
+        blobContainerMock = Mockito.mock(BlobContainerAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobContainerUrl())
+                .thenReturn("https://selcdcheckoutsa.blob.core.windows.net/$web");
+        Field field = AzureBlobAsyncClient.class.getDeclaredField("blobContainer");
+        field.setAccessible(true);
+        field.set(blobClient, blobContainerMock);
+    }
+
+
+    @Test
+    void uploadProductImg() throws Exception {
+        //given
+        String fileName = "resources/products/productId/logo.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        Mockito.when(blobMock.uploadWithResponse(Mockito.any(BlobParallelUploadOptions.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0, BlobParallelUploadOptions.class)
+                        .getDataFlux()
+                        .doOnNext(buffer -> {
+                            byte[] chunk = new byte[buffer.remaining()];
+                            buffer.get(chunk);
+                            uploaded.writeBytes(chunk);
+                        })
+                        .then(Mono.empty()));
+        //when
+        URL url = blobClient.uploadProductImg(new ByteArrayInputStream(IMAGE), IMAGE.length, fileName, "image/png", "gzip");
+        //then
+        Assertions.assertEquals(new URL("https", PUBLIC_HOST, "/" + fileName), url);
+        Assertions.assertArrayEquals(IMAGE, uploaded.toByteArray());
+        ArgumentCaptor<BlobParallelUploadOptions> optionsCaptor = ArgumentCaptor.forClass(BlobParallelUploadOptions.class);
+        Mockito.verify(blobMock, Mockito.times(1))
+                .uploadWithResponse(optionsCaptor.capture());
+        BlobParallelUploadOptions options = optionsCaptor.getValue();
+        Assertions.assertEquals("image/png", options.getHeaders().getContentType());
+        Assertions.assertEquals(MUTABLE_CACHE_CONTROL, options.getHeaders().getCacheControl());
+        Assertions.assertEquals("gzip", options.getHeaders().getContentEncoding());
+        Assertions.assertEquals(BLOCK_SIZE, options.getParallelTransferOptions().getBlockSizeLong());
+        Assertions.assertEquals(2, options.getParallelTransferOptions().getMaxConcurrency());
+    }
+
+
+    @Test
+    void uploadProductImg_contentAddressed() {
+        //given
+        String fileName = "resources/products/productId/logo-9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08-64.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.uploadWithResponse(Mockito.any(BlobParallelUploadOptions.class)))
+                .thenReturn(Mono.empty());
+        //when
+        blobClient.uploadProductImg(new ByteArrayInputStream(IMAGE), IMAGE.length, fileName, "image/png", null);
+        //then
+        ArgumentCaptor<BlobParallelUploadOptions> optionsCaptor = ArgumentCaptor.forClass(BlobParallelUploadOptions.class);
+        Mockito.verify(blobMock, Mockito.times(1))
+                .uploadWithResponse(optionsCaptor.capture());
+        Assertions.assertEquals(CACHE_CONTROL, optionsCaptor.getValue().getHeaders().getCacheControl());
+    }
+
+
+    @Test
+    void uploadProductImgAsync_ko() {
+        //given
+        String fileName = "filename.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.uploadWithResponse(Mockito.any(BlobParallelUploadOptions.class)))
+                .thenReturn(Mono.error(new IllegalStateException("upload failed")));
+        //when
+        CompletableFuture<URL> result = blobClient.uploadProductImgAsync(new ByteArrayInputStream(IMAGE), IMAGE.length, fileName, "image/png", null);
+        //then
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, result::get);
+        Assertions.assertTrue(e.getCause() instanceof FileUploadException);
+        Assertions.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+    }
+
+
+    @Test
+    void uploadProductImg_ko() {
+        //given
+        String fileName = "filename.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.uploadWithResponse(Mockito.any(BlobParallelUploadOptions.class)))
+                .thenReturn(Mono.error(new IllegalStateException("upload failed")));
+        //when
+        Executable executable = () -> blobClient.uploadProductImg(new ByteArrayInputStream(IMAGE), IMAGE.length, fileName, "image/png", null);
+        //then
+        Assertions.assertThrows(FileUploadException.class, executable);
+    }
+
+
+    @Test
+    void findProductImg_found() throws Exception {
+        //given
+        String fileName = "resources/products/productId/logo.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.exists())
+                .thenReturn(Mono.just(true));
+        //when
+        Optional<URL> url = blobClient.findProductImg(fileName);
+        //then
+        Assertions.assertEquals(Optional.of(new URL("https", PUBLIC_HOST, "/" + fileName)), url);
+    }
+
+
+    @Test
+    void findProductImg_notFound() throws Exception {
+        //given
+        String fileName = "resources/products/productId/logo.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.exists())
+                .thenReturn(Mono.just(false));
+        //when
+        Optional<URL> url = blobClient.findProductImg(fileName);
+        //then
+        Assertions.assertTrue(url.isEmpty());
+    }
+
+
+    @Test
+    void findProductImg_ko() {
+        //given
+        String fileName = "resources/products/productId/logo.png";
+        BlobAsyncClient blobMock = Mockito.mock(BlobAsyncClient.class);
+        Mockito.when(blobContainerMock.getBlobAsyncClient(fileName))
+                .thenReturn(blobMock);
+        Mockito.when(blobMock.exists())
+                .thenReturn(Mono.error(new IllegalStateException("request failed")));
+        //when
+        Executable executable = () -> blobClient.findProductImg(fileName);
+        //then
+        Assertions.assertThrows(FileUploadException.class, executable);
+    }
+
+
+    @Test
+    void read_chunks() {
+        //when
+        List<Integer> chunks = AzureBlobAsyncClient.read(new ByteArrayInputStream(IMAGE), 10, BLOCK_SIZE)
+                .map(ByteBuffer::remaining)
+                .collectList()
+                .block();
+        //then
+        Assertions.assertEquals(List.of(4, 4, 2), chunks);
+    }
+
+
+    @Test
+    void read_truncatedStream() {
+        //when
+        Executable executable = () -> AzureBlobAsyncClient.read(new ByteArrayInputStream(IMAGE), IMAGE.length + 1L, BLOCK_SIZE)
+                .collect(Collectors.counting())
+                .block();
+        //then
+        RuntimeException e = Assertions.assertThrows(RuntimeException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof EOFException);
+    }
+
+}
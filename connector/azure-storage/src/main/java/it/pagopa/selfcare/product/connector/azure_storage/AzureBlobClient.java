@@ -2,68 +2,219 @@ package it.pagopa.selfcare.product.connector.azure_storage;
 
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.BlockEntry;
 import com.microsoft.azure.storage.blob.CloudBlobClient;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import it.pagopa.selfcare.product.connector.api.FileStorageConnector;
 import it.pagopa.selfcare.product.connector.exception.FileUploadException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 @Slf4j
 @Service
 @Profile("AzureStorage")
 class AzureBlobClient implements FileStorageConnector {
 
-    private final String institutionsImgContainerReference;
-    private final CloudBlobClient blobClient;
+    private static final String UPLOAD_TIMER = "blob.storage.upload";
+    private static final String UPLOAD_SIZE_SUMMARY = "blob.storage.upload.size";
+    private static final String MODE_TAG = "mode";
+    private static final String OUTCOME_TAG = "outcome";
+
+    private final CloudBlobContainer blobContainer;
     private final String publicHost;
+    private final int blockSize;
+    private final int maxConcurrency;
+    private final String cacheControl;
+    private final String mutableCacheControl;
+    private final ExecutorService uploadExecutor;
+    private final MeterRegistry meterRegistry = Metrics.globalRegistry;
+    private final DistributionSummary uploadSize;
 
 
     AzureBlobClient(@Value("${blobStorage.connectionString}") String storageConnectionString,
                     @Value("${blobStorage.product.img.containerReference}") String productImgContainerReference,
-                    @Value("${blobStorage.product.upload.host}") String publicHost)
-            throws URISyntaxException, InvalidKeyException {
+                    @Value("${blobStorage.product.upload.host}") String publicHost,
+                    @Value("${blobStorage.upload.blockSize}") int blockSize,
+                    @Value("${blobStorage.upload.maxConcurrency}") int maxConcurrency,
+                    @Value("${blobStorage.upload.cacheControl}") String cacheControl,
+                    @Value("${blobStorage.upload.mutableCacheControl}") String mutableCacheControl,
+                    BlobRequestOptions requestOptions)
+            throws URISyntaxException, InvalidKeyException, StorageException {
 
         final CloudStorageAccount storageAccount = CloudStorageAccount.parse(storageConnectionString);
-        this.blobClient = storageAccount.createCloudBlobClient();
-        this.institutionsImgContainerReference = productImgContainerReference;
+        final CloudBlobClient blobClient = storageAccount.createCloudBlobClient();
+        blobClient.setDefaultRequestOptions(requestOptions);
+        // the reference is only a client side handle, no request is sent to the storage here
+        this.blobContainer = blobClient.getContainerReference(productImgContainerReference);
         this.publicHost = publicHost;
+        this.blockSize = blockSize;
+        this.maxConcurrency = maxConcurrency;
+        this.cacheControl = cacheControl;
+        this.mutableCacheControl = mutableCacheControl;
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("blob-upload-");
+        threadFactory.setDaemon(true);
+        this.uploadExecutor = Executors.newFixedThreadPool(maxConcurrency, threadFactory);
+        this.uploadSize = DistributionSummary.builder(UPLOAD_SIZE_SUMMARY)
+                .description("Size of the images uploaded to the blob storage")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+
+    @PreDestroy
+    void shutdown() {
+        uploadExecutor.shutdownNow();
     }
 
 
     @Override
-    public URL uploadProductImg(InputStream file, String fileName, String contentType) throws FileUploadException, MalformedURLException {
-        log.trace("uploadInstitutionLogo start");
-        log.debug("uploadInstitutionLogo file = {}, fileName = {}, contentType = {}", file, fileName, contentType);
+    public URL uploadProductImg(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) throws FileUploadException, MalformedURLException {
+        log.trace("uploadProductImg start");
+        log.debug("uploadProductImg file = {}, contentLength = {}, fileName = {}, contentType = {}, contentEncoding = {}", file, contentLength, fileName, contentType, contentEncoding);
         URI logoUri = null;
+        final String mode = contentLength <= blockSize ? "single" : "blocks";
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
 
         try {
-            final CloudBlobContainer blobContainer = blobClient.getContainerReference(institutionsImgContainerReference);
             final CloudBlockBlob blob = blobContainer.getBlockBlobReference(fileName);
             blob.getProperties().setContentType(contentType);
-            blob.upload(file, file.available());
+            // a blob stored under a fixed name can be overwritten, so it cannot be cached as immutable
+            blob.getProperties().setCacheControl(FileStorageConnector.isContentAddressed(fileName) ? cacheControl : mutableCacheControl);
+            blob.getProperties().setContentEncoding(contentEncoding);
+            if (contentLength <= blockSize) {
+                blob.upload(file, contentLength);
+            } else {
+                uploadBlocks(blob, file, contentLength);
+            }
             logoUri = blob.getUri();
+            outcome = "success";
+            uploadSize.record(contentLength);
             log.info("Uploaded {}", fileName);
 
 
         } catch (StorageException | URISyntaxException | IOException e) {
             throw new FileUploadException(e);
+        } finally {
+            sample.stop(Timer.builder(UPLOAD_TIMER)
+                    .description("Time taken to upload an image to the blob storage")
+                    .tag(MODE_TAG, mode)
+                    .tag(OUTCOME_TAG, outcome)
+                    .register(meterRegistry));
         }
-        URL url = new URL(logoUri.toURL().getProtocol(), publicHost, logoUri.toURL().getFile().substring(5));
-        log.debug("uploadProductLogo result = {}", url);
-        log.trace("uploadProductLogo end");
+        URL url = toPublicUrl(logoUri);
+        log.debug("uploadProductImg result = {}", url);
+        log.trace("uploadProductImg end");
         return url;
     }
 
+
+    @Override
+    public Optional<URL> findProductImg(String fileName) throws FileUploadException, MalformedURLException {
+        log.trace("findProductImg start");
+        log.debug("findProductImg fileName = {}", fileName);
+        final URI imgUri;
+        try {
+            final CloudBlockBlob blob = blobContainer.getBlockBlobReference(fileName);
+            imgUri = blob.exists() ? blob.getUri() : null;
+        } catch (StorageException | URISyntaxException e) {
+            throw new FileUploadException(e);
+        }
+        final Optional<URL> url = imgUri == null ? Optional.empty() : Optional.of(toPublicUrl(imgUri));
+        log.debug("findProductImg result = {}", url);
+        log.trace("findProductImg end");
+        return url;
+    }
+
+
+    private URL toPublicUrl(URI blobUri) throws MalformedURLException {
+        return new URL(blobUri.toURL().getProtocol(), publicHost, blobUri.toURL().getFile().substring(5));
+    }
+
+
+    /**
+     * Read the file in blocks of {@code blockSize} bytes, uploading at most {@code maxConcurrency} of them at a time,
+     * then commit the block list. At most {@code maxConcurrency + 1} blocks are held in memory, whatever the file size.
+     */
+    private void uploadBlocks(CloudBlockBlob blob, InputStream file, long contentLength) throws StorageException, IOException {
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final List<BlockEntry> blocks = new ArrayList<>();
+        final List<Future<Void>> uploads = new ArrayList<>();
+        try {
+            for (long offset = 0; offset < contentLength; offset += blockSize) {
+                final int length = (int) Math.min(blockSize, contentLength - offset);
+                final byte[] block = file.readNBytes(length);
+                if (block.length < length) {
+                    throw new EOFException(String.format("Expected %d bytes, stream ended after %d", contentLength, offset + block.length));
+                }
+                final String blockId = Base64.getEncoder()
+                        .encodeToString(String.format("%08d", blocks.size()).getBytes(StandardCharsets.US_ASCII));
+                blocks.add(new BlockEntry(blockId));
+                permits.acquire();
+                uploads.add(uploadExecutor.submit(() -> {
+                    try {
+                        blob.uploadBlock(blockId, new ByteArrayInputStream(block), block.length);
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+                for (Future<Void> upload : uploads) {
+                    if (upload.isDone()) {
+                        upload.get();
+                    }
+                }
+            }
+            for (Future<Void> upload : uploads) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            uploads.forEach(upload -> upload.cancel(true));
+            throw new InterruptedIOException("Block upload interrupted");
+        } catch (ExecutionException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (IOException e) {
+            uploads.forEach(upload -> upload.cancel(true));
+            throw e;
+        }
+        blob.commitBlockList(blocks);
+        log.debug("uploadBlocks committed {} blocks", blocks.size());
+    }
+
 }
@@ -1,5 +1,9 @@
 package it.pagopa.selfcare.product.connector.azure_storage.config;
 
+import com.microsoft.azure.storage.RetryExponentialRetry;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.PropertySource;
@@ -8,4 +12,21 @@ import org.springframework.context.annotation.PropertySource;
 @PropertySource("classpath:config/azure-storage-config.properties")
 @Profile("AzureStorage")
 class AzureStorageConfig {
+
+    @Bean
+    public BlobRequestOptions blobRequestOptions(@Value("${blobStorage.request.concurrentRequestCount}") int concurrentRequestCount,
+                                                 @Value("${blobStorage.request.singleBlobPutThresholdInBytes}") int singleBlobPutThresholdInBytes,
+                                                 @Value("${blobStorage.request.timeoutIntervalInMs}") int timeoutIntervalInMs,
+                                                 @Value("${blobStorage.request.maximumExecutionTimeInMs}") int maximumExecutionTimeInMs,
+                                                 @Value("${blobStorage.request.retry.deltaBackoffInMs}") int retryDeltaBackoffInMs,
+                                                 @Value("${blobStorage.request.retry.maxAttempts}") int retryMaxAttempts) {
+        final BlobRequestOptions requestOptions = new BlobRequestOptions();
+        requestOptions.setConcurrentRequestCount(concurrentRequestCount);
+        requestOptions.setSingleBlobPutThresholdInBytes(singleBlobPutThresholdInBytes);
+        requestOptions.setTimeoutIntervalInMs(timeoutIntervalInMs);
+        requestOptions.setMaximumExecutionTimeInMs(maximumExecutionTimeInMs);
+        requestOptions.setRetryPolicyFactory(new RetryExponentialRetry(retryDeltaBackoffInMs, retryMaxAttempts));
+        return requestOptions;
+    }
+
 }
@@ -2,75 +2,318 @@ package it.pagopa.selfcare.product.connector.azure_storage;
 
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.BlobProperties;
-import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.BlockEntry;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.pagopa.selfcare.product.connector.exception.FileUploadException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.core.io.ClassPathResource;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.security.InvalidKeyException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 class AzureBlobClientTest {
 
+    private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_CONCURRENCY = 2;
+    private static final long LOGO_SIZE = 8_480;
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String MUTABLE_CACHE_CONTROL = "public, max-age=300";
+    private static final String CONTENT_ADDRESSED_FILE_NAME = "resources/products/productId/logo-9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.png";
+
     @Test
     void uploadProductLogo_ok() throws URISyntaxException, InvalidKeyException, IOException, NoSuchFieldException, IllegalAccessException, StorageException {
         //given
         AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
-                "$web", "selcdcheckoutsa.z6.web.core.windows.net");
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
         CloudBlockBlob blockBlobMock = Mockito.mock(CloudBlockBlob.class);
         Mockito.when(blockBlobMock.getProperties())
                 .thenReturn(new BlobProperties());
         Mockito.doNothing().
-                when(blockBlobMock).upload(Mockito.any(), Mockito.anyByte());
+                when(blockBlobMock).upload(Mockito.any(), Mockito.anyLong());
         CloudBlobContainer blobContainerMock = Mockito.mock(CloudBlobContainer.class);
         Mockito.when(blobContainerMock.getBlockBlobReference("filename.png"))
                 .thenReturn(blockBlobMock);
-        CloudBlobClient blobClientMock = Mockito.mock(CloudBlobClient.class);
-        Mockito.when(blobClientMock.getContainerReference("$web"))
-                .thenReturn(blobContainerMock);
         URI uriMock = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png");
         Mockito.when(blockBlobMock.getUri()).thenReturn(uriMock);
-        mockCloudBlobClient(blobClient, blobClientMock);
+        mockBlobContainer(blobClient, blobContainerMock);
 
         InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
                 .getInputStream();
         // when
-        Executable executable = () -> blobClient.uploadProductImg(resource, "filename.png", "image/png");
+        Executable executable = () -> blobClient.uploadProductImg(resource, LOGO_SIZE, "filename.png", "image/png");
         // then
         Assertions.assertDoesNotThrow(executable);
+        Mockito.verify(blockBlobMock, Mockito.times(1))
+                .upload(resource, LOGO_SIZE);
+        Mockito.verify(blockBlobMock, Mockito.never())
+                .commitBlockList(Mockito.any());
+        Assertions.assertEquals(MUTABLE_CACHE_CONTROL, blockBlobMock.getProperties().getCacheControl());
+        Assertions.assertNull(blockBlobMock.getProperties().getContentEncoding());
+    }
+
+    @Test
+    void uploadProductLogo_contentAddressed() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = Mockito.mock(CloudBlockBlob.class);
+        Mockito.when(blockBlobMock.getProperties())
+                .thenReturn(new BlobProperties());
+        Mockito.when(blockBlobMock.getUri())
+                .thenReturn(new URI("https://selcdcheckoutsa.z6.web.core.windows.net/" + CONTENT_ADDRESSED_FILE_NAME));
+        CloudBlobContainer blobContainerMock = Mockito.mock(CloudBlobContainer.class);
+        Mockito.when(blobContainerMock.getBlockBlobReference(CONTENT_ADDRESSED_FILE_NAME))
+                .thenReturn(blockBlobMock);
+        mockBlobContainer(blobClient, blobContainerMock);
+        InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
+                .getInputStream();
+        // when
+        blobClient.uploadProductImg(resource, LOGO_SIZE, CONTENT_ADDRESSED_FILE_NAME, "image/png");
+        // then
+        Assertions.assertEquals(CACHE_CONTROL, blockBlobMock.getProperties().getCacheControl());
+    }
+
+    @Test
+    void uploadProductLogo_contentEncoding() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
+                .getInputStream();
+        // when
+        blobClient.uploadProductImg(resource, LOGO_SIZE, "filename.png", "image/svg+xml", "gzip");
+        // then
+        Mockito.verify(blockBlobMock, Mockito.times(1))
+                .upload(resource, LOGO_SIZE);
+        Assertions.assertEquals("image/svg+xml", blockBlobMock.getProperties().getContentType());
+        Assertions.assertEquals("gzip", blockBlobMock.getProperties().getContentEncoding());
+    }
+
+    @Test
+    void findProductImg_found() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        Mockito.when(blockBlobMock.exists())
+                .thenReturn(true);
+        // when
+        Optional<URL> url = blobClient.findProductImg("filename.png");
+        // then
+        Assertions.assertEquals(Optional.of(new URL("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png")), url);
+        Mockito.verify(blockBlobMock, Mockito.never())
+                .upload(Mockito.any(), Mockito.anyLong());
+    }
+
+    @Test
+    void findProductImg_notFound() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        Mockito.when(blockBlobMock.exists())
+                .thenReturn(false);
+        // when
+        Optional<URL> url = blobClient.findProductImg("filename.png");
+        // then
+        Assertions.assertTrue(url.isEmpty());
+    }
+
+    @Test
+    void findProductImg_ko() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        Mockito.doThrow(StorageException.class)
+                .when(blockBlobMock).exists();
+        // when
+        Executable executable = () -> blobClient.findProductImg("filename.png");
+        // then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof StorageException);
+    }
+
+    @Test
+    void uploadProductLogo_blocks() throws Exception {
+        //given
+        int blockSize = 1024;
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", blockSize, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        List<String> uploadedBlockIds = Collections.synchronizedList(new ArrayList<>());
+        List<Long> uploadedLengths = Collections.synchronizedList(new ArrayList<>());
+        Mockito.doAnswer(invocation -> {
+                    uploadedBlockIds.add(invocation.getArgument(0, String.class));
+                    uploadedLengths.add(invocation.getArgument(2, Long.class));
+                    return null;
+                })
+                .when(blockBlobMock).uploadBlock(Mockito.anyString(), Mockito.any(), Mockito.anyLong());
+        InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
+                .getInputStream();
+        // when
+        blobClient.uploadProductImg(resource, LOGO_SIZE, "filename.png", "image/png");
+        // then
+        ArgumentCaptor<Iterable<BlockEntry>> blocksCaptor = ArgumentCaptor.forClass(Iterable.class);
+        Mockito.verify(blockBlobMock, Mockito.times(1))
+                .commitBlockList(blocksCaptor.capture());
+        List<String> committedBlockIds = new ArrayList<>();
+        blocksCaptor.getValue().forEach(block -> committedBlockIds.add(block.getId()));
+        long expectedBlocks = (LOGO_SIZE + blockSize - 1) / blockSize;
+        Assertions.assertEquals(expectedBlocks, committedBlockIds.size());
+        Assertions.assertEquals(Set.copyOf(committedBlockIds), Set.copyOf(uploadedBlockIds));
+        Assertions.assertEquals(LOGO_SIZE, uploadedLengths.stream().mapToLong(Long::longValue).sum());
+        Assertions.assertEquals("image/png", blockBlobMock.getProperties().getContentType());
+        Mockito.verify(blockBlobMock, Mockito.never())
+                .upload(Mockito.any(), Mockito.anyLong());
+    }
+
+    @Test
+    void uploadProductLogo_truncatedStream() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", 1024, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
+                .getInputStream();
+        // when
+        Executable executable = () -> blobClient.uploadProductImg(resource, LOGO_SIZE + 1, "filename.png", "image/png");
+        // then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof EOFException);
+        Mockito.verify(blockBlobMock, Mockito.never())
+                .commitBlockList(Mockito.any());
+    }
+
+    @Test
+    void uploadProductLogo_blockFailure() throws Exception {
+        //given
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", 1024, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlockBlob blockBlobMock = mockBlockBlob(blobClient);
+        Mockito.doThrow(StorageException.class)
+                .when(blockBlobMock).uploadBlock(Mockito.anyString(), Mockito.any(), Mockito.anyLong());
+        InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
+                .getInputStream();
+        // when
+        Executable executable = () -> blobClient.uploadProductImg(resource, LOGO_SIZE, "filename.png", "image/png");
+        // then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof StorageException);
+        Mockito.verify(blockBlobMock, Mockito.never())
+                .commitBlockList(Mockito.any());
+    }
+
+    private CloudBlockBlob mockBlockBlob(AzureBlobClient blobClient) throws Exception {
+        CloudBlockBlob blockBlobMock = Mockito.mock(CloudBlockBlob.class);
+        Mockito.when(blockBlobMock.getProperties())
+                .thenReturn(new BlobProperties());
+        Mockito.when(blockBlobMock.getUri())
+                .thenReturn(new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png"));
+        CloudBlobContainer blobContainerMock = Mockito.mock(CloudBlobContainer.class);
+        Mockito.when(blobContainerMock.getBlockBlobReference("filename.png"))
+                .thenReturn(blockBlobMock);
+        mockBlobContainer(blobClient, blobContainerMock);
+        return blockBlobMock;
     }
 
     @Test
     void uploadProductLogo_ko() throws URISyntaxException, InvalidKeyException, StorageException, IOException, NoSuchFieldException, IllegalAccessException {
         AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
-                "$web", "selcdcheckoutsa.z6.web.core.windows.net");
-        CloudBlobClient blobClientMock = Mockito.mock(CloudBlobClient.class);
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+        CloudBlobContainer blobContainerMock = Mockito.mock(CloudBlobContainer.class);
         Mockito.doThrow(StorageException.class)
-                .when(blobClientMock)
-                .getContainerReference("$web");
-        mockCloudBlobClient(blobClient, blobClientMock);
+                .when(blobContainerMock)
+                .getBlockBlobReference("filename.png");
+        mockBlobContainer(blobClient, blobContainerMock);
         InputStream resource = new ClassPathResource("logo-pagopa-spa.png")
                 .getInputStream();
 
         //when
-        Executable executable = () -> blobClient.uploadProductImg(resource, "filename.png", "image/png");
+        Executable executable = () -> blobClient.uploadProductImg(resource, LOGO_SIZE, "filename.png", "image/png");
         //then
         Assertions.assertThrows(FileUploadException.class, executable);
 
     }
 
-    private void mockCloudBlobClient(AzureBlobClient blobClient, CloudBlobClient blobClientMock) throws NoSuchFieldException, IllegalAccessException {
-        Field field = AzureBlobClient.class.getDeclaredField("blobClient");
+    @Test
+    void uploadProductLogo_metrics() throws Exception {
+        //given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        try {
+            AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                    "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, MUTABLE_CACHE_CONTROL, new BlobRequestOptions());
+            CloudBlockBlob blockBlobMock = Mockito.mock(CloudBlockBlob.class);
+            Mockito.when(blockBlobMock.getProperties())
+                    .thenReturn(new BlobProperties());
+            Mockito.when(blockBlobMock.getUri())
+                    .thenReturn(new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png"));
+            CloudBlobContainer blobContainerMock = Mockito.mock(CloudBlobContainer.class);
+            Mockito.when(blobContainerMock.getBlockBlobReference("filename.png"))
+                    .thenReturn(blockBlobMock);
+            Mockito.when(blobContainerMock.getBlockBlobReference("failure.png"))
+                    .thenThrow(StorageException.class);
+            mockBlobContainer(blobClient, blobContainerMock);
+            //when
+            blobClient.uploadProductImg(new ClassPathResource("logo-pagopa-spa.png").getInputStream(), LOGO_SIZE, "filename.png", "image/png");
+            Assertions.assertThrows(FileUploadException.class,
+                    () -> blobClient.uploadProductImg(new ClassPathResource("logo-pagopa-spa.png").getInputStream(), LOGO_SIZE, "failure.png", "image/png"));
+            //then
+            Timer success = meterRegistry.get("blob.storage.upload").tag("mode", "single").tag("outcome", "success").timer();
+            Assertions.assertEquals(1, success.count());
+            Timer failure = meterRegistry.get("blob.storage.upload").tag("mode", "single").tag("outcome", "failure").timer();
+            Assertions.assertEquals(1, failure.count());
+            DistributionSummary uploadSize = meterRegistry.get("blob.storage.upload.size").summary();
+            Assertions.assertEquals(1, uploadSize.count());
+            Assertions.assertEquals(LOGO_SIZE, uploadSize.totalAmount());
+        } finally {
+            Metrics.removeRegistry(meterRegistry);
+        }
+    }
+
+    @Test
+    void requestOptions() throws Exception {
+        //given
+        BlobRequestOptions requestOptions = new BlobRequestOptions();
+        requestOptions.setConcurrentRequestCount(3);
+        requestOptions.setTimeoutIntervalInMs(1_000);
+        //when
+        AzureBlobClient blobClient = new AzureBlobClient("UseDevelopmentStorage=true;",
+                "$web", "selcdcheckoutsa.z6.web.core.windows.net", BLOCK_SIZE, MAX_CONCURRENCY, CACHE_CONTROL, requestOptions);
+        //then
+        Field field = AzureBlobClient.class.getDeclaredField("blobContainer");
+        field.setAccessible(true);
+        CloudBlobContainer blobContainer = (CloudBlobContainer) field.get(blobClient);
+        Assertions.assertEquals("$web", blobContainer.getName());
+        Assertions.assertSame(requestOptions, blobContainer.getServiceClient().getDefaultRequestOptions());
+    }
+
+    private void mockBlobContainer(AzureBlobClient blobClient, CloudBlobContainer blobContainerMock) throws NoSuchFieldException, IllegalAccessException {
+        Field field = AzureBlobClient.class.getDeclaredField("blobContainer");
         field.setAccessible(true);
-        field.set(blobClient, blobClientMock);
+        field.set(blobClient, blobContainerMock);
     }
 }
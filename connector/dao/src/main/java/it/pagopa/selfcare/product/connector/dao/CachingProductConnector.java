@@ -0,0 +1,333 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.commons.base.utils.InstitutionType;
+import it.pagopa.selfcare.product.connector.api.ProductChangeListener;
+import it.pagopa.selfcare.product.connector.api.ProductConnector;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductOperations;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ProductConnector} decorator serving every read from an in-memory {@link ProductCatalogSnapshot}.
+ * Writes go through to the delegate and then swap in a freshly loaded snapshot.
+ * Callers get a copy of the cached products, so they are free to mutate them.
+ * As a {@link ProductChangeListener} it also applies the changes made by other replicas.
+ */
+@Slf4j
+public class CachingProductConnector implements ProductConnector, ProductChangeListener {
+
+    private final ProductConnector delegate;
+    private final Object reloadLock = new Object();
+    private volatile ProductCatalogSnapshot snapshot;
+
+
+    public CachingProductConnector(ProductConnector delegate) {
+        this.delegate = delegate;
+    }
+
+
+    @Override
+    public ProductOperations insert(ProductOperations entity) {
+        final ProductOperations inserted = delegate.insert(entity);
+        reload();
+        return inserted;
+    }
+
+
+    @Override
+    public ProductOperations save(ProductOperations entity) {
+        final ProductOperations saved = delegate.save(entity);
+        reload();
+        return saved;
+    }
+
+
+    @Override
+    public ProductOperations updateProduct(ProductOperations product) {
+        final ProductOperations updated = delegate.updateProduct(product);
+        apply(updated.getId(), updated);
+        return copyOf(updated);
+    }
+
+
+    @Override
+    public ProductOperations updateLogo(String id, String logo, Map<Integer, String> logoRenditions) {
+        final ProductOperations updated = delegate.updateLogo(id, logo, logoRenditions);
+        apply(updated.getId(), updated);
+        return copyOf(updated);
+    }
+
+
+    @Override
+    public ProductOperations updateDepictImage(String id, String depictImageUrl, Map<Integer, String> depictImageRenditions) {
+        final ProductOperations updated = delegate.updateDepictImage(id, depictImageUrl, depictImageRenditions);
+        apply(updated.getId(), updated);
+        return copyOf(updated);
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findById(String id) {
+        return getSnapshot().findById(id).map(CachingProductConnector::copyOf);
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findById(String id, Collection<String> fields) {
+        return findById(id);
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findByIdWithParent(String id) {
+        final ProductCatalogSnapshot current = getSnapshot();
+        return current.findById(id).map(product -> {
+            final ProductOperations copy = copyOf(product);
+            if (product.getParentId() != null) {
+                current.findById(product.getParentId())
+                        .map(CachingProductConnector::copyOf)
+                        .ifPresent(copy::setProductOperations);
+            }
+            return copy;
+        });
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findRoleMappingsById(String id) {
+        return findById(id);
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findContractTemplatesById(String id, InstitutionType institutionType) {
+        return findById(id);
+    }
+
+
+    @Override
+    public boolean existsById(String id) {
+        return getSnapshot().findById(id).isPresent();
+    }
+
+
+    @Override
+    public boolean existsByIdAndEnabledFalse(String id) {
+        return getSnapshot().findById(id)
+                .filter(product -> !product.isEnabled())
+                .isPresent();
+    }
+
+
+    @Override
+    public boolean existsByIdAndStatus(String id, ProductStatus status) {
+        return getSnapshot().findById(id)
+                .filter(product -> product.getStatus() == status)
+                .isPresent();
+    }
+
+
+    @Override
+    public List<ProductOperations> findAll() {
+        return copyOf(getSnapshot().findAll());
+    }
+
+
+    @Override
+    public List<ProductOperations> findAllById(Collection<String> ids) {
+        final ProductCatalogSnapshot current = getSnapshot();
+        return ids.stream()
+                .distinct()
+                .map(current::findById)
+                .flatMap(Optional::stream)
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public List<ProductOperations> findAllById(Collection<String> ids, Collection<String> fields) {
+        return findAllById(ids);
+    }
+
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+        reload();
+    }
+
+
+    @Override
+    public List<ProductOperations> findByEnabled(boolean enabled) {
+        return getSnapshot().findAll().stream()
+                .filter(product -> product.isEnabled() == enabled)
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public List<ProductOperations> findByParentAndEnabled(String parent, boolean enabled) {
+        return getSnapshot().findByParentId(parent).stream()
+                .filter(product -> product.isEnabled() == enabled)
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public List<ProductOperations> findByParentAndStatusIsNotInactive(String parent) {
+        return getSnapshot().findByParentId(parent).stream()
+                .filter(product -> product.getStatus() != ProductStatus.INACTIVE)
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public List<ProductOperations> findByStatusIsNot(ProductStatus status) {
+        return copyOf(getSnapshot().findByStatusIsNot(status));
+    }
+
+
+    @Override
+    public List<ProductOperations> findByModifiedAtAfter(Instant since) {
+        return getSnapshot().findAll().stream()
+                .filter(product -> isAtOrAfter(product.getModifiedAt(), since) || isAtOrAfter(product.getCreatedAt(), since))
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    private static boolean isAtOrAfter(Instant instant, Instant since) {
+        return instant != null && !instant.isBefore(since);
+    }
+
+
+    @Override
+    public List<ProductTree> findProductTree() {
+        final ProductCatalogSnapshot current = getSnapshot();
+        return current.findByParentId(null).stream()
+                .filter(product -> product.getStatus() != ProductStatus.INACTIVE)
+                .map(root -> new ProductTree(copyOf(root), current.findByParentId(root.getId()).stream()
+                        .filter(child -> child.getStatus() != ProductStatus.INACTIVE)
+                        .map(CachingProductConnector::copyOf)
+                        .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public void disableById(String id) {
+        delegate.disableById(id);
+        reload();
+    }
+
+
+    @Override
+    public void updateProductStatus(String id, ProductStatus status) {
+        delegate.updateProductStatus(id, status);
+        reload();
+    }
+
+
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        return getSnapshot().getCatalogVersion();
+    }
+
+
+    @Override
+    public void onProductChange(ProductChangeEvent event) {
+        log.trace("onProductChange start");
+        log.debug("onProductChange event = {}", event);
+        apply(event.getProductId(), event.getProduct());
+        log.trace("onProductChange end");
+    }
+
+
+    @Override
+    public void onCatalogResync() {
+        reload();
+    }
+
+
+    /**
+     * Replace the current snapshot with a new one loaded from the delegate.
+     * Reloads are serialized, so a snapshot never replaces a more recent one.
+     */
+    public void reload() {
+        log.trace("reload start");
+        synchronized (reloadLock) {
+            snapshot = new ProductCatalogSnapshot(delegate.findAll());
+        }
+        log.debug("reload result = {} products", snapshot.findAll().size());
+        log.trace("reload end");
+    }
+
+
+    private void apply(String id, ProductOperations product) {
+        synchronized (reloadLock) {
+            if (snapshot != null) {
+                snapshot = product == null
+                        ? snapshot.without(id)
+                        : snapshot.with(product);
+            }
+        }
+    }
+
+
+    private ProductCatalogSnapshot getSnapshot() {
+        ProductCatalogSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (reloadLock) {
+                if (snapshot == null) {
+                    snapshot = new ProductCatalogSnapshot(delegate.findAll());
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+
+    private static List<ProductOperations> copyOf(List<ProductOperations> products) {
+        return products.stream()
+                .map(CachingProductConnector::copyOf)
+                .collect(Collectors.toList());
+    }
+
+
+    static ProductOperations copyOf(ProductOperations product) {
+        final ProductEntity copy = new ProductEntity(product);
+        copy.setNew(false);
+        copy.setDelegable(product.isDelegable());
+        copy.setRoleManagementURL(product.getRoleManagementURL());
+        if (product.getInstitutionContractMappings() != null) {
+            final Map<InstitutionType, ProductEntity.EntityContract> contractMappings = new HashMap<>();
+            product.getInstitutionContractMappings().forEach((institutionType, contract) -> {
+                final ProductEntity.EntityContract contractCopy = new ProductEntity.EntityContract();
+                contractCopy.setContractTemplatePath(contract.getContractTemplatePath());
+                contractCopy.setContractTemplateVersion(contract.getContractTemplateVersion());
+                contractCopy.setContractTemplateUpdatedAt(contract.getContractTemplateUpdatedAt());
+                contractMappings.put(institutionType, contractCopy);
+            });
+            copy.setInstitutionContractMappings(contractMappings);
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,46 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.api.ImageUploadOperationConnector;
+import it.pagopa.selfcare.product.connector.dao.model.ImageUploadOperationEntity;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Slf4j
+@Service
+public class ImageUploadOperationConnectorImpl implements ImageUploadOperationConnector {
+
+    private final MongoTemplate mongoTemplate;
+
+
+    @Autowired
+    public ImageUploadOperationConnectorImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+
+    @Override
+    public void save(ImageUploadOperation operation) {
+        log.trace("save start");
+        log.debug("save operation = {}", operation);
+        mongoTemplate.save(new ImageUploadOperationEntity(operation));
+        log.trace("save end");
+    }
+
+
+    @Override
+    public Optional<ImageUploadOperation> findById(String id) {
+        log.trace("findById start");
+        log.debug("findById id = {}", id);
+        final Optional<ImageUploadOperation> operation = Optional.ofNullable(mongoTemplate.findById(id, ImageUploadOperationEntity.class))
+                .map(ImageUploadOperationEntity::toOperation);
+        log.debug("findById result = {}", operation);
+        log.trace("findById end");
+        return operation;
+    }
+
+}
@@ -0,0 +1,106 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.connector.model.ProductOperations;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable view of the whole products collection, indexed by id, by parentId and by status.
+ * Lists preserve the natural order in which the products have been read from the collection.
+ */
+final class ProductCatalogSnapshot {
+
+    private final List<ProductOperations> products;
+    private final Map<String, ProductOperations> byId;
+    private final Map<String, List<ProductOperations>> byParentId;
+    private final Map<ProductStatus, List<ProductOperations>> byStatusIsNot;
+    private final CatalogVersion catalogVersion;
+
+
+    ProductCatalogSnapshot(Collection<? extends ProductOperations> products) {
+        this.products = List.copyOf(products);
+        final Map<String, ProductOperations> idIndex = new LinkedHashMap<>();
+        final Map<String, List<ProductOperations>> parentIndex = new HashMap<>();
+        this.products.forEach(product -> {
+            idIndex.put(product.getId(), product);
+            parentIndex.computeIfAbsent(product.getParentId(), key -> new ArrayList<>()).add(product);
+        });
+        final Map<ProductStatus, List<ProductOperations>> statusIsNotIndex = new EnumMap<>(ProductStatus.class);
+        for (ProductStatus status : ProductStatus.values()) {
+            final List<ProductOperations> others = new ArrayList<>();
+            this.products.forEach(product -> {
+                if (product.getStatus() != status) {
+                    others.add(product);
+                }
+            });
+            statusIsNotIndex.put(status, Collections.unmodifiableList(others));
+        }
+        parentIndex.replaceAll((parentId, children) -> Collections.unmodifiableList(children));
+        this.byId = Collections.unmodifiableMap(idIndex);
+        this.byParentId = Collections.unmodifiableMap(parentIndex);
+        this.byStatusIsNot = Collections.unmodifiableMap(statusIsNotIndex);
+        this.catalogVersion = CatalogVersion.of(this.products);
+    }
+
+
+    Optional<ProductOperations> findById(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+
+    List<ProductOperations> findAll() {
+        return products;
+    }
+
+
+    List<ProductOperations> findByParentId(String parentId) {
+        return byParentId.getOrDefault(parentId, List.of());
+    }
+
+
+    List<ProductOperations> findByStatusIsNot(ProductStatus status) {
+        return status == null
+                ? products.stream().filter(product -> product.getStatus() != null).collect(Collectors.toUnmodifiableList())
+                : byStatusIsNot.get(status);
+    }
+
+
+    CatalogVersion getCatalogVersion() {
+        return catalogVersion;
+    }
+
+
+    /**
+     * @return a new snapshot where the product with the same id is replaced, or the given one is appended
+     */
+    ProductCatalogSnapshot with(ProductOperations product) {
+        final List<ProductOperations> updated = new ArrayList<>(products.size() + 1);
+        boolean replaced = false;
+        for (ProductOperations current : products) {
+            if (current.getId().equals(product.getId())) {
+                updated.add(product);
+                replaced = true;
+            } else {
+                updated.add(current);
+            }
+        }
+        if (!replaced) {
+            updated.add(product);
+        }
+        return new ProductCatalogSnapshot(updated);
+    }
+
+
+    /**
+     * @return a new snapshot without the product with the given id
+     */
+    ProductCatalogSnapshot without(String id) {
+        return new ProductCatalogSnapshot(products.stream()
+                .filter(product -> !product.getId().equals(id))
+                .collect(Collectors.toList()));
+    }
+
+}
@@ -0,0 +1,209 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.UpdateDescription;
+import it.pagopa.selfcare.product.connector.api.ProductChangeListener;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the products collection through a MongoDB change stream and forwards every insert, update, status change
+ * and delete to the registered {@link ProductChangeListener}s.
+ * The last resume token is kept in memory, so the stream can be resumed without gaps after an error;
+ * when resuming is not possible, as after a restart, the listeners are asked to resync the whole catalog.
+ * <p>
+ * The token is not shared with the other replicas on purpose: a replica resuming from a token saved by another one
+ * would skip the changes the latter has seen, but it has not.
+ */
+@Slf4j
+public class ProductChangeStreamListener implements SmartLifecycle {
+
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+    private static final Set<Integer> UNRESUMABLE_ERROR_CODES = Set.of(
+            260, // InvalidResumeToken
+            280, // ChangeStreamFatalError
+            286  // ChangeStreamHistoryLost
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectProvider<ProductChangeListener> listeners;
+    private final Duration retryDelay;
+    private volatile boolean running;
+    private volatile BsonDocument resumeToken;
+    private Thread worker;
+
+
+    public ProductChangeStreamListener(MongoTemplate mongoTemplate,
+                                       ObjectProvider<ProductChangeListener> listeners,
+                                       Duration retryDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.listeners = listeners;
+        this.retryDelay = retryDelay;
+    }
+
+
+    @Override
+    public synchronized void start() {
+        log.trace("start start");
+        running = true;
+        worker = new Thread(this::watch, "product-change-stream");
+        worker.setDaemon(true);
+        worker.start();
+        log.trace("start end");
+    }
+
+
+    @Override
+    public synchronized void stop() {
+        log.trace("stop start");
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(STOP_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        log.trace("stop end");
+    }
+
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private void watch() {
+        while (running) {
+            try {
+                final BsonDocument resumeToken = this.resumeToken;
+                final MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(ProductEntity.class));
+                try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = (resumeToken == null
+                        ? collection.watch()
+                        : collection.watch().resumeAfter(resumeToken))
+                        .fullDocument(FullDocument.UPDATE_LOOKUP)
+                        .cursor()) {
+                    if (resumeToken == null) {
+                        log.info("Product change stream started without a resume token, resyncing listeners");
+                        listeners.orderedStream().forEach(ProductChangeListener::onCatalogResync);
+                    }
+                    while (running) {
+                        final ChangeStreamDocument<Document> change = cursor.tryNext();
+                        if (change != null && running) {
+                            if (handle(change)) {
+                                this.resumeToken = cursor.getResumeToken();
+                            } else {
+                                this.resumeToken = null;
+                                break;
+                            }
+                        }
+                    }
+                }
+            } catch (MongoException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Product change stream failed: {}", e.toString());
+                if (UNRESUMABLE_ERROR_CODES.contains(e.getCode())) {
+                    this.resumeToken = null;
+                }
+                pause();
+            } catch (RuntimeException e) {
+                log.error("Product change stream listener failed", e);
+                pause();
+            }
+        }
+    }
+
+
+    /**
+     * @return {@code false} when the stream has been invalidated and must be reopened from scratch
+     */
+    boolean handle(ChangeStreamDocument<Document> change) {
+        log.trace("handle start");
+        log.debug("handle operationType = {}, documentKey = {}", change.getOperationType(), change.getDocumentKey());
+        boolean valid = true;
+        switch (change.getOperationType()) {
+            case INSERT:
+                notifyListeners(ProductChangeType.CREATE, change);
+                break;
+            case UPDATE:
+                notifyListeners(toUpdateType(change.getUpdateDescription()), change);
+                break;
+            case REPLACE:
+                notifyListeners(ProductChangeType.UPDATE, change);
+                break;
+            case DELETE:
+                notifyListeners(ProductChangeType.DELETE, change);
+                break;
+            case DROP:
+            case RENAME:
+            case DROP_DATABASE:
+            case INVALIDATE:
+                valid = false;
+                break;
+            default:
+                break;
+        }
+        log.trace("handle end");
+        return valid;
+    }
+
+
+    /**
+     * An update of the status is a status change, or a delete when the product has been disabled, as notified by the service
+     */
+    static ProductChangeType toUpdateType(UpdateDescription updateDescription) {
+        final BsonDocument updatedFields = updateDescription == null ? null : updateDescription.getUpdatedFields();
+        if (updatedFields == null || !updatedFields.isString(ProductEntity.Fields.status)) {
+            return ProductChangeType.UPDATE;
+        }
+        return ProductStatus.INACTIVE.name().equals(updatedFields.getString(ProductEntity.Fields.status).getValue())
+                ? ProductChangeType.DELETE
+                : ProductChangeType.STATUS_CHANGE;
+    }
+
+
+    private void notifyListeners(ProductChangeType type, ChangeStreamDocument<Document> change) {
+        final String id = change.getDocumentKey() == null
+                ? null
+                : change.getDocumentKey().getString(ProductEntity.Fields.id).getValue();
+        final ProductEntity product = change.getFullDocument() == null
+                ? null
+                : mongoTemplate.getConverter().read(ProductEntity.class, change.getFullDocument());
+        final ProductChangeEvent event = new ProductChangeEvent(type, id, product,
+                change.getClusterTime() == null ? null : change.getClusterTime().getValue());
+        listeners.orderedStream().forEach(listener -> listener.onProductChange(event));
+    }
+
+
+
+    private void pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(retryDelay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+}
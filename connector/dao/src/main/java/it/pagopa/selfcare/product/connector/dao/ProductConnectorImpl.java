@@ -1,17 +1,30 @@
 package it.pagopa.selfcare.product.connector.dao;
 
 import com.mongodb.client.result.UpdateResult;
+import it.pagopa.selfcare.commons.base.utils.InstitutionType;
 import it.pagopa.selfcare.product.connector.api.ProductConnector;
 import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
 import it.pagopa.selfcare.product.connector.exception.ResourceAlreadyExistsException;
+import it.pagopa.selfcare.product.connector.exception.ResourceConflictException;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -19,14 +32,25 @@ import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ProductConnectorImpl implements ProductConnector {
 
+    private static final String CHILDREN_FIELD = "children";
+    private static final String CHILD_VARIABLE = "child";
+    private static final String PARENT_FIELD = "parent";
+    private static final String SET_STAGE = "$set";
+    private static final String NOW_VARIABLE = "$$NOW";
+    private static final String REMOVE_VARIABLE = "$$REMOVE";
+
     private final ProductRepository repository;
     private final MongoTemplate mongoTemplate;
     private final AuditorAware<String> auditorAware;
@@ -67,12 +91,240 @@ public class ProductConnectorImpl implements ProductConnector {
     }
 
 
+    @Override
+    public ProductOperations updateProduct(ProductOperations product) {
+        log.trace("updateProduct start");
+        log.debug("updateProduct product = {}", product);
+        final Criteria criteria = Criteria.where(ProductEntity.Fields.id).is(product.getId())
+                .and(ProductEntity.Fields.status).ne(ProductStatus.INACTIVE);
+        if (product.getVersion() != null) {
+            criteria.and(ProductEntity.Fields.version).is(product.getVersion());
+        }
+        final Document updatedFields = toUpdatedFields(product);
+        final AggregationOperation setStage = context -> new Document(SET_STAGE, updatedFields);
+        final ProductEntity updatedProduct = mongoTemplate.findAndModify(Query.query(criteria),
+                AggregationUpdate.from(List.of(setStage)),
+                FindAndModifyOptions.options().returnNew(true),
+                ProductEntity.class);
+        if (updatedProduct == null) {
+            if (product.getVersion() != null
+                    && mongoTemplate.exists(Query.query(Criteria.where(ProductEntity.Fields.id).is(product.getId())
+                    .and(ProductEntity.Fields.status).ne(ProductStatus.INACTIVE)), ProductEntity.class)) {
+                throw new ResourceConflictException(String.format("Product id = %s has been modified concurrently", product.getId()));
+            }
+            throw new ResourceNotFoundException();
+        }
+        log.debug("updateProduct result = {}", updatedProduct);
+        log.trace("updateProduct end");
+        return updatedProduct;
+    }
+
+
+    /**
+     * The update is a pipeline, so that the contract templates updatedAt can be compared with the stored versions
+     * in the same round-trip: the given values are wrapped in {@code $literal}, otherwise a string starting with {@code $}
+     * would be taken as a field path and an embedded document would be merged into the stored one.
+     * The editable fields are replaced as a whole, the ones not given are removed as a save of the product would do.
+     */
+    private Document toUpdatedFields(ProductOperations product) {
+        final Document fields = new Document();
+        putReplaced(fields, ProductEntity.Fields.title, product.getTitle());
+        putReplaced(fields, ProductEntity.Fields.description, product.getDescription());
+        putReplaced(fields, ProductEntity.Fields.logoBgColor, product.getLogoBgColor());
+        putReplaced(fields, ProductEntity.Fields.urlPublic, product.getUrlPublic());
+        putReplaced(fields, ProductEntity.Fields.urlBO, product.getUrlBO());
+        putReplaced(fields, ProductEntity.Fields.roleMappings, product.getRoleMappings());
+        putReplaced(fields, ProductEntity.Fields.identityTokenAudience, product.getIdentityTokenAudience());
+        putReplaced(fields, ProductEntity.Fields.backOfficeEnvironmentConfigurations, product.getBackOfficeEnvironmentConfigurations());
+        putReplaced(fields, ProductEntity.Fields.contractTemplatePath, product.getContractTemplatePath());
+        if (product.getContractTemplateVersion() != null) {
+            fields.put(ProductEntity.Fields.contractTemplateUpdatedAt,
+                    updatedAtOnVersionChange(ProductEntity.Fields.contractTemplateUpdatedAt,
+                            ProductEntity.Fields.contractTemplateVersion,
+                            product.getContractTemplateVersion()));
+        }
+        putReplaced(fields, ProductEntity.Fields.contractTemplateVersion, product.getContractTemplateVersion());
+        if (product.getInstitutionContractMappings() != null) {
+            final Document contracts = (Document) toMongoType(ProductEntity.Fields.institutionContractMappings,
+                    product.getInstitutionContractMappings());
+            final Document mappings = new Document();
+            contracts.forEach((institutionType, value) -> {
+                final String contractPath = ProductEntity.Fields.institutionContractMappings + "." + institutionType + ".";
+                final Document contract = new Document();
+                ((Document) value).forEach((field, fieldValue) -> contract.put(field, literal(fieldValue)));
+                contract.put(ProductEntity.Fields.contractTemplateUpdatedAt,
+                        updatedAtOnVersionChange(contractPath + ProductEntity.Fields.contractTemplateUpdatedAt,
+                                contractPath + ProductEntity.Fields.contractTemplateVersion,
+                                ((Document) value).get(ProductEntity.Fields.contractTemplateVersion)));
+                mappings.put(institutionType, contract);
+            });
+            fields.put(ProductEntity.Fields.institutionContractMappings, mappings);
+        }
+        fields.put(ProductEntity.Fields.modifiedBy, literal(auditorAware.getCurrentAuditor().orElse(null)));
+        fields.put(ProductEntity.Fields.modifiedAt, NOW_VARIABLE);
+        fields.put(ProductEntity.Fields.version, new Document("$add",
+                List.of(new Document("$ifNull", Arrays.asList("$" + ProductEntity.Fields.version, 0L)), 1L)));
+        return fields;
+    }
+
+
+    private void putReplaced(Document fields, String field, Object value) {
+        fields.put(field, value == null ? REMOVE_VARIABLE : literal(toMongoType(field, value)));
+    }
+
+
+    /**
+     * @return the value as the mapping converter would write it into the given field of a product
+     */
+    private Object toMongoType(String field, Object value) {
+        final MongoPersistentProperty property = mongoTemplate.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(ProductEntity.class)
+                .getRequiredPersistentProperty(field);
+        return mongoTemplate.getConverter().convertToMongoType(value, property.getTypeInformation());
+    }
+
+
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
+    }
+
+
+    /**
+     * @return an expression evaluating to the current time if the stored version differs from the given one,
+     * to the stored updatedAt otherwise
+     */
+    private static Document updatedAtOnVersionChange(String updatedAtPath, String versionPath, Object version) {
+        return new Document("$cond", Arrays.asList(
+                new Document("$eq", Arrays.asList("$" + versionPath, literal(version))),
+                "$" + updatedAtPath,
+                NOW_VARIABLE));
+    }
+
+
+    @Override
+    public ProductOperations updateLogo(String id, String logo, Map<Integer, String> logoRenditions) {
+        log.trace("updateLogo start");
+        log.debug("updateLogo id = {}, logo = {}, logoRenditions = {}", id, logo, logoRenditions);
+        final ProductEntity updatedProduct = updateImage(id,
+                ProductEntity.Fields.logo, logo,
+                ProductEntity.Fields.logoRenditions, logoRenditions);
+        log.debug("updateLogo result = {}", updatedProduct);
+        log.trace("updateLogo end");
+        return updatedProduct;
+    }
+
+
+    @Override
+    public ProductOperations updateDepictImage(String id, String depictImageUrl, Map<Integer, String> depictImageRenditions) {
+        log.trace("updateDepictImage start");
+        log.debug("updateDepictImage id = {}, depictImageUrl = {}, depictImageRenditions = {}", id, depictImageUrl, depictImageRenditions);
+        final ProductEntity updatedProduct = updateImage(id,
+                ProductEntity.Fields.depictImageUrl, depictImageUrl,
+                ProductEntity.Fields.depictImageRenditions, depictImageRenditions);
+        log.debug("updateDepictImage result = {}", updatedProduct);
+        log.trace("updateDepictImage end");
+        return updatedProduct;
+    }
+
+
+    private ProductEntity updateImage(String id, String urlField, String url, String renditionsField, Map<Integer, String> renditions) {
+        final ProductEntity updatedProduct = mongoTemplate.findAndModify(
+                Query.query(Criteria.where(ProductEntity.Fields.id).is(id)
+                        .and(ProductEntity.Fields.status).ne(ProductStatus.INACTIVE)),
+                Update.update(urlField, url)
+                        .set(renditionsField, renditions)
+                        .set(ProductEntity.Fields.modifiedBy, auditorAware.getCurrentAuditor().orElse(null))
+                        .currentDate(ProductEntity.Fields.modifiedAt)
+                        .inc(ProductEntity.Fields.version, 1),
+                FindAndModifyOptions.options().returnNew(true),
+                ProductEntity.class);
+        if (updatedProduct == null) {
+            throw new ResourceNotFoundException();
+        }
+        return updatedProduct;
+    }
+
+
     @Override
     public Optional<ProductOperations> findById(String id) {
         return repository.findById(id).map(Function.identity());
     }
 
 
+    @Override
+    public Optional<ProductOperations> findById(String id, Collection<String> fields) {
+        log.trace("findById start");
+        log.debug("findById id = {}, fields = {}", id, fields);
+        final Query query = projectedQuery(Criteria.where(ProductEntity.Fields.id).is(id), fields);
+        final Optional<ProductOperations> product = Optional.ofNullable(mongoTemplate.findOne(query, ProductEntity.class))
+                .map(Function.identity());
+        log.debug("findById result = {}", product);
+        log.trace("findById end");
+        return product;
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findByIdWithParent(String id) {
+        log.trace("findByIdWithParent start");
+        log.debug("findByIdWithParent id = {}", id);
+        final Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(ProductEntity.Fields.id).is(id)),
+                Aggregation.lookup(mongoTemplate.getCollectionName(ProductEntity.class),
+                        ProductEntity.Fields.parentId,
+                        ProductEntity.Fields.id,
+                        PARENT_FIELD));
+        final Optional<ProductOperations> product = Optional.ofNullable(mongoTemplate.aggregate(aggregation, ProductEntity.class, Document.class)
+                        .getUniqueMappedResult())
+                .map(this::toProductWithParent);
+        log.debug("findByIdWithParent result = {}", product);
+        log.trace("findByIdWithParent end");
+        return product;
+    }
+
+
+    private ProductOperations toProductWithParent(Document document) {
+        final List<Document> parents = document.getList(PARENT_FIELD, Document.class, List.of());
+        document.remove(PARENT_FIELD);
+        final ProductEntity product = mongoTemplate.getConverter().read(ProductEntity.class, document);
+        product.setNew(false);
+        if (!parents.isEmpty()) {
+            product.setProductOperations(mongoTemplate.getConverter().read(ProductEntity.class, parents.get(0)));
+        }
+        return product;
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findRoleMappingsById(String id) {
+        return repository.findRoleMappingsById(id).map(Function.identity());
+    }
+
+
+    @Override
+    public Optional<ProductOperations> findContractTemplatesById(String id, InstitutionType institutionType) {
+        log.trace("findContractTemplatesById start");
+        log.debug("findContractTemplatesById id = {}, institutionType = {}", id, institutionType);
+        final Query query = Query.query(Criteria.where(ProductEntity.Fields.id).is(id));
+        query.fields()
+                .include(ProductEntity.Fields.status)
+                .include(ProductEntity.Fields.version)
+                .include(ProductEntity.Fields.createdAt)
+                .include(ProductEntity.Fields.contractTemplatePath)
+                .include(ProductEntity.Fields.contractTemplateVersion)
+                .include(ProductEntity.Fields.contractTemplateUpdatedAt);
+        if (institutionType != null) {
+            query.fields().include(ProductEntity.Fields.institutionContractMappings + "." + institutionType.name());
+        }
+        final Optional<ProductOperations> product = Optional.ofNullable(mongoTemplate.findOne(query, ProductEntity.class))
+                .map(Function.identity());
+        log.debug("findContractTemplatesById result = {}", product);
+        log.trace("findContractTemplatesById end");
+        return product;
+    }
+
+
     @Override
     public boolean existsById(String id) {
         return repository.existsById(id);
@@ -96,6 +348,47 @@ public class ProductConnectorImpl implements ProductConnector {
     }
 
 
+    @Override
+    public List<ProductOperations> findAllById(Collection<String> ids) {
+        final List<ProductOperations> products = new ArrayList<>();
+        repository.findAllById(ids).forEach(products::add);
+        return products;
+    }
+
+
+    @Override
+    public List<ProductOperations> findAllById(Collection<String> ids, Collection<String> fields) {
+        log.trace("findAllById start");
+        log.debug("findAllById ids = {}, fields = {}", ids, fields);
+        final Query query = projectedQuery(Criteria.where(ProductEntity.Fields.id).in(ids), fields);
+        final List<ProductOperations> products = new ArrayList<>(mongoTemplate.find(query, ProductEntity.class));
+        log.debug("findAllById result = {}", products);
+        log.trace("findAllById end");
+        return products;
+    }
+
+
+    /**
+     * @return a query projecting the id, the status, the version, the creation date and the given fields of the products,
+     * ignoring the fields that are not persisted
+     */
+    private Query projectedQuery(Criteria criteria, Collection<String> fields) {
+        final MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter()
+                .getMappingContext()
+                .getRequiredPersistentEntity(ProductEntity.class);
+        final Query query = Query.query(criteria);
+        query.fields()
+                .include(ProductEntity.Fields.id)
+                .include(ProductEntity.Fields.status)
+                .include(ProductEntity.Fields.version)
+                .include(ProductEntity.Fields.createdAt);
+        fields.stream()
+                .filter(field -> persistentEntity.getPersistentProperty(field) != null)
+                .forEach(query.fields()::include);
+        return query;
+    }
+
+
     @Override
     public void deleteById(String id) {
         repository.deleteById(id);
@@ -123,6 +416,56 @@ public class ProductConnectorImpl implements ProductConnector {
         return new ArrayList<>(repository.findByStatusIsNot(status));
     }
 
+
+    @Override
+    public List<ProductOperations> findByModifiedAtAfter(Instant since) {
+        log.trace("findByModifiedAtAfter start");
+        log.debug("findByModifiedAtAfter since = {}", since);
+        final Query query = Query.query(new Criteria().orOperator(
+                Criteria.where(ProductEntity.Fields.modifiedAt).gte(since),
+                Criteria.where(ProductEntity.Fields.createdAt).gte(since)));
+        final List<ProductOperations> products = new ArrayList<>(mongoTemplate.find(query, ProductEntity.class));
+        log.debug("findByModifiedAtAfter result = {}", products);
+        log.trace("findByModifiedAtAfter end");
+        return products;
+    }
+
+    @Override
+    public List<ProductTree> findProductTree() {
+        log.trace("findProductTree start");
+        final Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(ProductEntity.Fields.parentId).is(null)
+                        .and(ProductEntity.Fields.status).ne(ProductStatus.INACTIVE)),
+                Aggregation.lookup(mongoTemplate.getCollectionName(ProductEntity.class),
+                        ProductEntity.Fields.id,
+                        ProductEntity.Fields.parentId,
+                        CHILDREN_FIELD),
+                Aggregation.addFields()
+                        .addFieldWithValue(CHILDREN_FIELD, ArrayOperators.Filter.filter(CHILDREN_FIELD)
+                                .as(CHILD_VARIABLE)
+                                .by(ComparisonOperators.Ne.valueOf(CHILD_VARIABLE + "." + ProductEntity.Fields.status)
+                                        .notEqualToValue(ProductStatus.INACTIVE.name())))
+                        .build());
+        final List<ProductTree> productTree = mongoTemplate.aggregate(aggregation, ProductEntity.class, Document.class)
+                .getMappedResults()
+                .stream()
+                .map(this::toProductTree)
+                .collect(Collectors.toList());
+        log.debug("findProductTree result = {}", productTree);
+        log.trace("findProductTree end");
+        return productTree;
+    }
+
+
+    private ProductTree toProductTree(Document document) {
+        final List<Document> children = document.getList(CHILDREN_FIELD, Document.class, List.of());
+        document.remove(CHILDREN_FIELD);
+        return new ProductTree(mongoTemplate.getConverter().read(ProductEntity.class, document),
+                children.stream()
+                        .map(child -> (ProductOperations) mongoTemplate.getConverter().read(ProductEntity.class, child))
+                        .collect(Collectors.toList()));
+    }
+
     @Override
     public void disableById(String id) {
         log.trace("disableById start");
@@ -132,7 +475,8 @@ public class ProductConnectorImpl implements ProductConnector {
                         .and(ProductEntity.Fields.status).not().in(ProductStatus.INACTIVE)),
                 Update.update(ProductEntity.Fields.status, ProductStatus.INACTIVE)
                         .set(ProductEntity.Fields.modifiedBy, auditorAware.getCurrentAuditor().orElse(null))
-                        .currentDate(ProductEntity.Fields.modifiedAt),
+                        .currentDate(ProductEntity.Fields.modifiedAt)
+                        .inc(ProductEntity.Fields.version, 1),
                 ProductEntity.class);
         if (updateResult.getMatchedCount() == 0) {
             throw new ResourceNotFoundException();
@@ -148,7 +492,8 @@ public class ProductConnectorImpl implements ProductConnector {
                 Query.query(Criteria.where(ProductEntity.Fields.id).is(id)),
                 Update.update(ProductEntity.Fields.status, status)
                         .set(ProductEntity.Fields.modifiedBy, auditorAware.getCurrentAuditor().orElse(null))
-                        .currentDate(ProductEntity.Fields.modifiedAt),
+                        .currentDate(ProductEntity.Fields.modifiedAt)
+                        .inc(ProductEntity.Fields.version, 1),
                 ProductEntity.class);
         if (updateResult.getMatchedCount() == 0) {
             throw new ResourceNotFoundException();
@@ -156,4 +501,22 @@ public class ProductConnectorImpl implements ProductConnector {
         log.trace("updateProductStatus end");
     }
 
+    /**
+     * The version is digested from the id, version and creation date of every product,
+     * read in a single round-trip that projects only those fields
+     */
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        log.trace("getCatalogVersion start");
+        final Query query = new Query();
+        query.fields()
+                .include(ProductEntity.Fields.id)
+                .include(ProductEntity.Fields.version)
+                .include(ProductEntity.Fields.createdAt);
+        final CatalogVersion catalogVersion = CatalogVersion.of(mongoTemplate.find(query, ProductEntity.class));
+        log.debug("getCatalogVersion result = {}", catalogVersion);
+        log.trace("getCatalogVersion end");
+        return catalogVersion;
+    }
+
 }
@@ -3,8 +3,10 @@ package it.pagopa.selfcare.product.connector.dao;
 import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductRepository extends MongoRepository<ProductEntity, String> {
 
@@ -34,4 +36,7 @@ public interface ProductRepository extends MongoRepository<ProductEntity, String
     boolean existsByIdAndEnabledFalse(String id);
 
     boolean existsByIdAndStatus(String id, ProductStatus status);
+
+    @Query(value = "{'_id': ?0}", fields = "{'roleMappings': 1, 'status': 1, 'version': 1, 'createdAt': 1}")
+    Optional<ProductEntity> findRoleMappingsById(String id);
 }
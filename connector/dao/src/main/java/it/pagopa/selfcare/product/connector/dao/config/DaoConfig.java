@@ -1,12 +1,33 @@
 package it.pagopa.selfcare.product.connector.dao.config;
 
+import it.pagopa.selfcare.product.connector.api.ProductChangeListener;
+import it.pagopa.selfcare.product.connector.dao.CachingProductConnector;
+import it.pagopa.selfcare.product.connector.dao.ProductChangeStreamListener;
+import it.pagopa.selfcare.product.connector.dao.ProductConnectorImpl;
 import it.pagopa.selfcare.product.connector.dao.auditing.SpringSecurityAuditorAware;
+import it.pagopa.selfcare.product.connector.dao.model.ImageUploadOperationEntity;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.domain.AuditorAware;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 
+import java.time.Duration;
+
+@Slf4j
 @Configuration
 @EnableMongoAuditing(modifyOnCreate = false)
 @PropertySource("classpath:config/dao-config.properties")
@@ -17,4 +38,68 @@ class DaoConfig {
         return new SpringSecurityAuditorAware();
     }
 
+
+    /**
+     * Creates the indexes declared on {@link ProductEntity}, since index auto creation is disabled.
+     * Creating an index that already exists with the same definition is a no-op, so it runs at every startup;
+     * a failure is logged index by index, so it neither skips the other indexes nor prevents the application from starting.
+     */
+    @Bean
+    public SmartInitializingSingleton productIndexesInitializer(MongoTemplate mongoTemplate, MongoMappingContext mappingContext) {
+        return () -> {
+            log.trace("productIndexesInitializer start");
+            final IndexOperations indexOperations = mongoTemplate.indexOps(ProductEntity.class);
+            new MongoPersistentEntityIndexResolver(mappingContext)
+                    .resolveIndexFor(ProductEntity.class)
+                    .forEach(indexDefinition -> {
+                        log.debug("productIndexesInitializer index = {}", indexDefinition.getIndexKeys());
+                        try {
+                            indexOperations.ensureIndex(indexDefinition);
+                        } catch (RuntimeException e) {
+                            log.warn("Unable to create the products index {}: {}", indexDefinition.getIndexKeys(), e.toString());
+                        }
+                    });
+            log.trace("productIndexesInitializer end");
+        };
+    }
+
+
+    /**
+     * Creates the TTL index that removes an image upload operation once the retention has elapsed since its last update.
+     */
+    @Bean
+    public SmartInitializingSingleton imageUploadOperationIndexesInitializer(MongoTemplate mongoTemplate,
+                                                                            @Value("${product.img.upload.operation-retention}") Duration operationRetention) {
+        return () -> {
+            log.trace("imageUploadOperationIndexesInitializer start");
+            log.debug("imageUploadOperationIndexesInitializer operationRetention = {}", operationRetention);
+            try {
+                mongoTemplate.indexOps(ImageUploadOperationEntity.class)
+                        .ensureIndex(new Index(ImageUploadOperationEntity.Fields.updatedAt, Sort.Direction.ASC)
+                                .named(ImageUploadOperationEntity.UPDATED_AT_TTL_INDEX)
+                                .expire(operationRetention));
+            } catch (RuntimeException e) {
+                log.warn("Unable to create the image upload operations index {}: {}", ImageUploadOperationEntity.UPDATED_AT_TTL_INDEX, e.toString());
+            }
+            log.trace("imageUploadOperationIndexesInitializer end");
+        };
+    }
+
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(value = "product.cache.enabled", havingValue = "true")
+    public CachingProductConnector cachingProductConnector(ProductConnectorImpl productConnector) {
+        return new CachingProductConnector(productConnector);
+    }
+
+
+    @Bean
+    @ConditionalOnProperty(value = "product.change-stream.enabled", havingValue = "true")
+    public ProductChangeStreamListener productChangeStreamListener(MongoTemplate mongoTemplate,
+                                                                   ObjectProvider<ProductChangeListener> listeners,
+                                                                   @Value("${product.change-stream.retry-delay}") Duration retryDelay) {
+        return new ProductChangeStreamListener(mongoTemplate, listeners, retryDelay);
+    }
+
 }
@@ -0,0 +1,47 @@
+package it.pagopa.selfcare.product.connector.dao.model;
+
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldNameConstants;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@Document("imageUploadOperations")
+@FieldNameConstants(onlyExplicitlyIncluded = true)
+public class ImageUploadOperationEntity {
+
+    public static final String UPDATED_AT_TTL_INDEX = "updatedAt_ttl";
+
+    @Id
+    private String id;
+    private String productId;
+    private ProductImageType imageType;
+    private ImageUploadOperation.Status status;
+    private String error;
+    private Instant createdAt;
+    @FieldNameConstants.Include
+    private Instant updatedAt;
+
+    public ImageUploadOperationEntity(ImageUploadOperation operation) {
+        this();
+        id = operation.getId();
+        productId = operation.getProductId();
+        imageType = operation.getImageType();
+        status = operation.getStatus();
+        error = operation.getError();
+        createdAt = operation.getCreatedAt();
+        updatedAt = operation.getUpdatedAt();
+    }
+
+
+    public ImageUploadOperation toOperation() {
+        return new ImageUploadOperation(id, productId, imageType, status, error, createdAt, updatedAt);
+    }
+
+}
@@ -9,6 +9,8 @@ import lombok.NoArgsConstructor;
 import lombok.experimental.FieldNameConstants;
 import org.springframework.data.annotation.*;
 import org.springframework.data.domain.Persistable;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -20,46 +22,77 @@ import java.util.Map;
 @NoArgsConstructor
 @EqualsAndHashCode(of = "id")
 @Document("products")
+@CompoundIndex(name = ProductEntity.PARENT_ID_STATUS_INDEX, def = "{'parentId': 1, 'status': 1}")
 @FieldNameConstants(onlyExplicitlyIncluded = true)
 public class ProductEntity implements ProductOperations, Persistable<String> {
 
+    public static final String PARENT_ID_STATUS_INDEX = "parentId_status";
+    public static final String STATUS_INDEX = "status";
+    public static final String CREATED_AT_INDEX = "createdAt";
+    public static final String MODIFIED_AT_INDEX = "modifiedAt";
+
     @Id
     private String id;
+    @FieldNameConstants.Include
     private String logo;
+    @FieldNameConstants.Include
     private String depictImageUrl;
+    @FieldNameConstants.Include
+    private Map<Integer, String> logoRenditions;
+    @FieldNameConstants.Include
+    private Map<Integer, String> depictImageRenditions;
+    @FieldNameConstants.Include
     private String title;
+    @FieldNameConstants.Include
     private String logoBgColor;
+    @FieldNameConstants.Include
     private String description;
+    @FieldNameConstants.Include
     private String urlPublic;
+    @FieldNameConstants.Include
     private String urlBO;
     @CreatedDate
+    @FieldNameConstants.Include
+    @Indexed(name = CREATED_AT_INDEX)
     private Instant createdAt;
     @CreatedBy
     private String createdBy;
     @LastModifiedDate
     @FieldNameConstants.Include
+    @Indexed(name = MODIFIED_AT_INDEX)
     private Instant modifiedAt;
     @LastModifiedBy
     @FieldNameConstants.Include
     private String modifiedBy;
+    @FieldNameConstants.Include
     private EnumMap<PartyRole, ? extends ProductRoleInfoOperations> roleMappings;
     private String roleManagementURL;
+    @FieldNameConstants.Include
     private Instant contractTemplateUpdatedAt;
+    @FieldNameConstants.Include
     private String contractTemplatePath;
+    @FieldNameConstants.Include
     private String contractTemplateVersion;
+    @FieldNameConstants.Include
     private Map<InstitutionType, ? extends ContractOperations> institutionContractMappings;
     @FieldNameConstants.Include
     private boolean enabled = true;
     private boolean delegable;
     @FieldNameConstants.Include
+    @Indexed(name = STATUS_INDEX)
     private ProductStatus status;
+    @FieldNameConstants.Include
     private String parentId;
+    @FieldNameConstants.Include
     private String identityTokenAudience;
+    @FieldNameConstants.Include
     private Map<String, ? extends BackOfficeConfigurations> backOfficeEnvironmentConfigurations;
     @Transient
     private boolean isNew = true;
     private ProductOperations productOperations;
     private boolean invoiceable;
+    @FieldNameConstants.Include
+    private Long version;
 
     @Override
     public ProductOperations getProductOperations() {
@@ -107,6 +140,8 @@ public class ProductEntity implements ProductOperations, Persistable<String> {
         logo = product.getLogo();
         logoBgColor = product.getLogoBgColor();
         depictImageUrl = product.getDepictImageUrl();
+        logoRenditions = product.getLogoRenditions();
+        depictImageRenditions = product.getDepictImageRenditions();
         title = product.getTitle();
         description = product.getDescription();
         urlPublic = product.getUrlPublic();
@@ -126,6 +161,7 @@ public class ProductEntity implements ProductOperations, Persistable<String> {
         identityTokenAudience = product.getIdentityTokenAudience();
         backOfficeEnvironmentConfigurations = product.getBackOfficeEnvironmentConfigurations();
         invoiceable = product.isInvoiceable();
+        version = product.getVersion();
     }
 
 
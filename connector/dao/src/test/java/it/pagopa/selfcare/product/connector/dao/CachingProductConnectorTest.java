@@ -0,0 +1,500 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.commons.base.utils.InstitutionType;
+import it.pagopa.selfcare.product.connector.api.ProductConnector;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
+import it.pagopa.selfcare.product.connector.model.ProductOperations;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CachingProductConnectorTest {
+
+    private final ProductConnector delegateMock;
+    private final CachingProductConnector productConnector;
+
+
+    public CachingProductConnectorTest() {
+        this.delegateMock = Mockito.mock(ProductConnector.class);
+        this.productConnector = new CachingProductConnector(delegateMock);
+    }
+
+
+    @Test
+    void findById_servedFromSnapshot() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity(), "setParentId");
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        // when
+        Optional<ProductOperations> first = productConnector.findById(entity.getId());
+        Optional<ProductOperations> second = productConnector.findById(entity.getId());
+        // then
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals(entity.getId(), first.get().getId());
+        assertEquals(entity.getTitle(), first.get().getTitle());
+        assertEquals(entity.getStatus(), first.get().getStatus());
+        assertEquals(entity.isDelegable(), first.get().isDelegable());
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void findById_returnsCopy() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity(), "setParentId");
+        ProductEntity.EntityContract contract = mockInstance(new ProductEntity.EntityContract());
+        entity.setInstitutionContractMappings(Map.of(InstitutionType.PA, contract));
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        // when
+        ProductOperations found = productConnector.findById(entity.getId()).orElseThrow();
+        found.setTitle("changed");
+        found.getInstitutionContractMappings().get(InstitutionType.PA).setContractTemplateVersion("changed");
+        // then
+        ProductOperations foundAgain = productConnector.findById(entity.getId()).orElseThrow();
+        assertEquals(entity.getTitle(), foundAgain.getTitle());
+        assertEquals(contract.getContractTemplateVersion(), foundAgain.getInstitutionContractMappings().get(InstitutionType.PA).getContractTemplateVersion());
+    }
+
+
+    @Test
+    void findById_notFound() {
+        // given
+        when(delegateMock.findAll())
+                .thenReturn(List.of());
+        // when
+        Optional<ProductOperations> found = productConnector.findById("id");
+        // then
+        assertTrue(found.isEmpty());
+    }
+
+
+    @Test
+    void findByIdWithParent() {
+        // given
+        ProductEntity parent = mockInstance(new ProductEntity(), 1, "setParentId");
+        ProductEntity child = mockInstance(new ProductEntity(), 2);
+        child.setParentId(parent.getId());
+        when(delegateMock.findAll())
+                .thenReturn(List.of(parent, child));
+        // when
+        Optional<ProductOperations> foundChild = productConnector.findByIdWithParent(child.getId());
+        Optional<ProductOperations> foundParent = productConnector.findByIdWithParent(parent.getId());
+        // then
+        assertTrue(foundChild.isPresent());
+        assertNotSame(child, foundChild.get());
+        assertNotNull(foundChild.get().getProductOperations());
+        assertEquals(parent.getId(), foundChild.get().getProductOperations().getId());
+        assertNotSame(parent, foundChild.get().getProductOperations());
+        assertTrue(foundParent.isPresent());
+        assertNull(foundParent.get().getProductOperations());
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void findAllById() {
+        // given
+        ProductEntity first = mockInstance(new ProductEntity(), 1);
+        ProductEntity second = mockInstance(new ProductEntity(), 2);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(first, second));
+        // when
+        List<ProductOperations> found = productConnector.findAllById(List.of(second.getId(), "unknown", first.getId(), second.getId()));
+        // then
+        assertEquals(2, found.size());
+        assertEquals(second.getId(), found.get(0).getId());
+        assertEquals(first.getId(), found.get(1).getId());
+        assertNotSame(second, found.get(0));
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void findById_fieldsServedFromSnapshot() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity(), "setParentId");
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        // when
+        Optional<ProductOperations> found = productConnector.findById(entity.getId(), List.of(ProductEntity.Fields.title));
+        List<ProductOperations> foundAll = productConnector.findAllById(List.of(entity.getId()), List.of(ProductEntity.Fields.title));
+        // then
+        assertTrue(found.isPresent());
+        assertEquals(entity.getTitle(), found.get().getTitle());
+        assertEquals(1, foundAll.size());
+        assertEquals(entity.getTitle(), foundAll.get(0).getTitle());
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void existsByIdAndStatus() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        entity.setStatus(ProductStatus.INACTIVE);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        // when
+        boolean inactive = productConnector.existsByIdAndStatus(entity.getId(), ProductStatus.INACTIVE);
+        boolean active = productConnector.existsByIdAndStatus(entity.getId(), ProductStatus.ACTIVE);
+        // then
+        assertTrue(inactive);
+        assertFalse(active);
+    }
+
+
+    @Test
+    void findByParentAndStatusIsNotInactive_rootOnly() {
+        // given
+        ProductEntity root = mockInstance(new ProductEntity(), 1, "setParentId", "setStatus");
+        root.setStatus(ProductStatus.ACTIVE);
+        ProductEntity inactiveRoot = mockInstance(new ProductEntity(), 2, "setParentId", "setStatus");
+        inactiveRoot.setStatus(ProductStatus.INACTIVE);
+        ProductEntity child = mockInstance(new ProductEntity(), 3, "setStatus");
+        child.setParentId(root.getId());
+        child.setStatus(ProductStatus.ACTIVE);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(root, inactiveRoot, child));
+        // when
+        List<ProductOperations> roots = productConnector.findByParentAndStatusIsNotInactive(null);
+        List<ProductOperations> children = productConnector.findByParentAndStatusIsNotInactive(root.getId());
+        // then
+        assertEquals(1, roots.size());
+        assertEquals(root.getId(), roots.get(0).getId());
+        assertEquals(1, children.size());
+        assertEquals(child.getId(), children.get(0).getId());
+    }
+
+
+    @Test
+    void findProductTree() {
+        // given
+        ProductEntity root = mockInstance(new ProductEntity(), 1, "setParentId", "setStatus");
+        root.setStatus(ProductStatus.ACTIVE);
+        ProductEntity inactiveRoot = mockInstance(new ProductEntity(), 2, "setParentId", "setStatus");
+        inactiveRoot.setStatus(ProductStatus.INACTIVE);
+        ProductEntity child = mockInstance(new ProductEntity(), 3, "setStatus");
+        child.setParentId(root.getId());
+        child.setStatus(ProductStatus.ACTIVE);
+        ProductEntity inactiveChild = mockInstance(new ProductEntity(), 4, "setStatus");
+        inactiveChild.setParentId(root.getId());
+        inactiveChild.setStatus(ProductStatus.INACTIVE);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(root, inactiveRoot, child, inactiveChild));
+        // when
+        List<ProductTree> productTree = productConnector.findProductTree();
+        // then
+        assertEquals(1, productTree.size());
+        assertEquals(root.getId(), productTree.get(0).getNode().getId());
+        assertEquals(1, productTree.get(0).getChildren().size());
+        assertEquals(child.getId(), productTree.get(0).getChildren().get(0).getId());
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void findByStatusIsNot_preservesOrder() {
+        // given
+        List<ProductEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ProductEntity entity = mockInstance(new ProductEntity(), i, "setStatus");
+            entity.setStatus(i % 2 == 0 ? ProductStatus.ACTIVE : ProductStatus.INACTIVE);
+            entities.add(entity);
+        }
+        when(delegateMock.findAll())
+                .thenReturn(new ArrayList<>(entities));
+        // when
+        List<ProductOperations> found = productConnector.findByStatusIsNot(ProductStatus.INACTIVE);
+        // then
+        assertEquals(3, found.size());
+        assertEquals(entities.get(0).getId(), found.get(0).getId());
+        assertEquals(entities.get(2).getId(), found.get(1).getId());
+        assertEquals(entities.get(4).getId(), found.get(2).getId());
+    }
+
+
+    @Test
+    void findByModifiedAtAfter() {
+        // given
+        Instant since = Instant.parse("2023-01-01T00:00:00Z");
+        ProductEntity created = mockInstance(new ProductEntity(), 1, "setCreatedAt", "setModifiedAt");
+        created.setCreatedAt(since.plusSeconds(1));
+        ProductEntity disabled = mockInstance(new ProductEntity(), 2, "setCreatedAt", "setModifiedAt", "setStatus");
+        disabled.setCreatedAt(since.minusSeconds(10));
+        disabled.setModifiedAt(since);
+        disabled.setStatus(ProductStatus.INACTIVE);
+        ProductEntity unchanged = mockInstance(new ProductEntity(), 3, "setCreatedAt", "setModifiedAt");
+        unchanged.setCreatedAt(since.minusSeconds(10));
+        unchanged.setModifiedAt(since.minusMillis(1));
+        when(delegateMock.findAll())
+                .thenReturn(List.of(created, disabled, unchanged));
+        // when
+        List<ProductOperations> found = productConnector.findByModifiedAtAfter(since);
+        // then
+        assertEquals(2, found.size());
+        assertEquals(created.getId(), found.get(0).getId());
+        assertEquals(disabled.getId(), found.get(1).getId());
+        assertEquals(ProductStatus.INACTIVE, found.get(1).getStatus());
+        assertNotSame(disabled, found.get(1));
+    }
+
+
+    @Test
+    void insert_reloadsSnapshot() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        when(delegateMock.findAll())
+                .thenReturn(List.of())
+                .thenReturn(List.of(entity));
+        when(delegateMock.insert(any()))
+                .thenReturn(entity);
+        assertFalse(productConnector.existsById(entity.getId()));
+        // when
+        ProductOperations inserted = productConnector.insert(entity);
+        // then
+        assertEquals(entity, inserted);
+        assertTrue(productConnector.existsById(entity.getId()));
+        verify(delegateMock, times(1))
+                .insert(entity);
+        verify(delegateMock, times(2))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void updateProductStatus_reloadsSnapshot() {
+        // given
+        String id = "id";
+        // when
+        productConnector.updateProductStatus(id, ProductStatus.PHASE_OUT);
+        // then
+        verify(delegateMock, times(1))
+                .updateProductStatus(id, ProductStatus.PHASE_OUT);
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void updateProduct_appliedToSnapshot() {
+        // given
+        ProductEntity existing = mockInstance(new ProductEntity());
+        ProductEntity updated = mockInstance(new ProductEntity());
+        updated.setTitle("updated");
+        updated.setVersion(existing.getVersion() + 1);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(existing));
+        when(delegateMock.updateProduct(any()))
+                .thenReturn(updated);
+        assertTrue(productConnector.existsById(existing.getId()));
+        // when
+        ProductOperations result = productConnector.updateProduct(existing);
+        // then
+        assertNotSame(updated, result);
+        assertEquals(updated.getVersion(), result.getVersion());
+        Optional<ProductOperations> found = productConnector.findById(existing.getId());
+        assertTrue(found.isPresent());
+        assertEquals("updated", found.get().getTitle());
+        assertEquals(updated.getVersion(), found.get().getVersion());
+        verify(delegateMock, times(1))
+                .updateProduct(existing);
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void updateLogo_appliedToSnapshot() {
+        // given
+        ProductEntity existing = mockInstance(new ProductEntity());
+        ProductEntity updated = mockInstance(new ProductEntity());
+        updated.setId(existing.getId());
+        updated.setLogo("logo");
+        updated.setLogoRenditions(Map.of(64, "logo-64"));
+        when(delegateMock.findAll())
+                .thenReturn(List.of(existing));
+        when(delegateMock.updateLogo(any(), any(), any()))
+                .thenReturn(updated);
+        assertTrue(productConnector.existsById(existing.getId()));
+        // when
+        ProductOperations result = productConnector.updateLogo(existing.getId(), "logo", Map.of(64, "logo-64"));
+        // then
+        assertNotSame(updated, result);
+        Optional<ProductOperations> found = productConnector.findById(existing.getId());
+        assertTrue(found.isPresent());
+        assertEquals("logo", found.get().getLogo());
+        assertEquals(Map.of(64, "logo-64"), found.get().getLogoRenditions());
+        verify(delegateMock, times(1))
+                .updateLogo(existing.getId(), "logo", Map.of(64, "logo-64"));
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void disableById_failureKeepsSnapshot() {
+        // given
+        String id = "id";
+        doThrow(RuntimeException.class)
+                .when(delegateMock)
+                .disableById(any());
+        // when
+        assertThrows(RuntimeException.class, () -> productConnector.disableById(id));
+        // then
+        verify(delegateMock, times(1))
+                .disableById(id);
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void onProductChange_upsert() {
+        // given
+        ProductEntity existing = mockInstance(new ProductEntity(), 1);
+        ProductEntity created = mockInstance(new ProductEntity(), 2);
+        ProductEntity updated = mockInstance(new ProductEntity(), 1);
+        updated.setTitle("updated");
+        when(delegateMock.findAll())
+                .thenReturn(List.of(existing));
+        assertTrue(productConnector.existsById(existing.getId()));
+        // when
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.CREATE, created.getId(), created));
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.UPDATE, updated.getId(), updated));
+        // then
+        List<ProductOperations> found = productConnector.findAll();
+        assertEquals(2, found.size());
+        assertEquals(existing.getId(), found.get(0).getId());
+        assertEquals("updated", found.get(0).getTitle());
+        assertEquals(created.getId(), found.get(1).getId());
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void onProductChange_delete() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        assertTrue(productConnector.existsById(entity.getId()));
+        // when
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.DELETE, entity.getId(), null));
+        // then
+        assertFalse(productConnector.existsById(entity.getId()));
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void onProductChange_snapshotNotLoaded() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        // when
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.CREATE, entity.getId(), entity));
+        // then
+        verifyNoInteractions(delegateMock);
+    }
+
+
+    @Test
+    void onCatalogResync() {
+        // when
+        productConnector.onCatalogResync();
+        // then
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void getCatalogVersion() {
+        // given
+        ProductEntity first = mockInstance(new ProductEntity(), 1);
+        first.setCreatedAt(Instant.ofEpochMilli(1_000));
+        first.setModifiedAt(Instant.ofEpochMilli(3_000));
+        ProductEntity second = mockInstance(new ProductEntity(), 2);
+        second.setCreatedAt(Instant.ofEpochMilli(2_000));
+        second.setModifiedAt(null);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(first, second));
+        // when
+        CatalogVersion catalogVersion = productConnector.getCatalogVersion();
+        // then
+        assertEquals(CatalogVersion.of(List.of(second, first)), catalogVersion);
+        verify(delegateMock, times(1))
+                .findAll();
+        verifyNoMoreInteractions(delegateMock);
+    }
+
+
+    @Test
+    void getCatalogVersion_changesOnRemoval() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        CatalogVersion before = productConnector.getCatalogVersion();
+        // when
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.DELETE, entity.getId(), null));
+        // then
+        assertNotEquals(before, productConnector.getCatalogVersion());
+    }
+
+
+    @Test
+    void getCatalogVersion_changesOnUpdateInSameMillisecond() {
+        // given
+        ProductEntity entity = mockInstance(new ProductEntity());
+        entity.setVersion(1L);
+        when(delegateMock.findAll())
+                .thenReturn(List.of(entity));
+        CatalogVersion before = productConnector.getCatalogVersion();
+        ProductEntity updated = mockInstance(new ProductEntity());
+        updated.setVersion(2L);
+        updated.setModifiedAt(entity.getModifiedAt());
+        // when
+        productConnector.onProductChange(new ProductChangeEvent(ProductChangeType.UPDATE, updated.getId(), updated));
+        // then
+        CatalogVersion after = productConnector.getCatalogVersion();
+        assertEquals(before.getCount(), after.getCount());
+        assertNotEquals(before, after);
+    }
+
+}
@@ -0,0 +1,85 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.dao.config.DaoTestConfig;
+import it.pagopa.selfcare.product.connector.dao.model.ImageUploadOperationEntity;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {ImageUploadOperationEntity.class, ImageUploadOperationConnectorImpl.class, DaoTestConfig.class})
+class ImageUploadOperationConnectorImplTest {
+
+    @Autowired
+    private ImageUploadOperationConnectorImpl operationConnector;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    @Qualifier("imageUploadOperationIndexesInitializer")
+    private SmartInitializingSingleton imageUploadOperationIndexesInitializer;
+
+
+    @AfterEach
+    void clear() {
+        mongoTemplate.dropCollection(ImageUploadOperationEntity.class);
+    }
+
+
+    @Test
+    void save() {
+        // given
+        ImageUploadOperation pending = ImageUploadOperation.pending("operationId", "productId", ProductImageType.LOGO);
+        operationConnector.save(pending);
+        // when
+        operationConnector.save(pending.withStatus(ImageUploadOperation.Status.FAILED, "error"));
+        // then
+        Optional<ImageUploadOperation> found = operationConnector.findById(pending.getId());
+        assertTrue(found.isPresent());
+        assertEquals(pending.getProductId(), found.get().getProductId());
+        assertEquals(pending.getImageType(), found.get().getImageType());
+        assertEquals(ImageUploadOperation.Status.FAILED, found.get().getStatus());
+        assertEquals("error", found.get().getError());
+        assertEquals(1, mongoTemplate.count(new Query(), ImageUploadOperationEntity.class));
+    }
+
+
+    @Test
+    void findById_notFound() {
+        // when
+        Optional<ImageUploadOperation> found = operationConnector.findById("operationId");
+        // then
+        assertTrue(found.isEmpty());
+    }
+
+
+    @Test
+    void indexesCreated() {
+        // when
+        imageUploadOperationIndexesInitializer.afterSingletonsInstantiated();
+        // then
+        IndexInfo ttlIndex = mongoTemplate.indexOps(ImageUploadOperationEntity.class).getIndexInfo().stream()
+                .filter(index -> ImageUploadOperationEntity.UPDATED_AT_TTL_INDEX.equals(index.getName()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(Optional.of(Duration.ofHours(1)), ttlIndex.getExpireAfter());
+    }
+
+}
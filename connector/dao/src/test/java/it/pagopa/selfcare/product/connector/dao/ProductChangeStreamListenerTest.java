@@ -0,0 +1,253 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import com.mongodb.client.model.changestream.UpdateDescription;
+import it.pagopa.selfcare.product.connector.api.ProductChangeListener;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@EnableAutoConfiguration
+@TestPropertySource(properties = "spring.mongodb.embedded.storage.repl-set-name=rs0")
+@ContextConfiguration(classes = {ProductEntity.class, ProductRepository.class})
+class ProductChangeStreamListenerTest {
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private RecordingListener recorder;
+    private ProductChangeStreamListener listener;
+
+
+    @BeforeEach
+    void init() {
+        // change streams are only available once the embedded replica set has elected its primary
+        await(() -> Boolean.TRUE.equals(mongoTemplate.executeCommand(new Document("isMaster", 1)).getBoolean("ismaster")));
+        recorder = new RecordingListener();
+        listener = newListener(recorder);
+    }
+
+
+    @AfterEach
+    void clear() {
+        listener.stop();
+        mongoTemplate.dropCollection(ProductEntity.class);
+    }
+
+
+    @Test
+    void start_withoutResumeToken() throws InterruptedException {
+        // when
+        listener.start();
+        // then
+        await(() -> recorder.resyncs.get() == 1);
+        ProductEntity product = insertProduct("prod-1");
+        ProductChangeEvent event = recorder.next();
+        assertEquals(ProductChangeType.CREATE, event.getType());
+        assertEquals(product.getId(), event.getProductId());
+        assertEquals(product.getTitle(), event.getProduct().getTitle());
+        assertNotNull(event.getClusterTime());
+    }
+
+
+    @Test
+    void handle_statusUpdates() throws InterruptedException {
+        // given
+        listener.start();
+        await(() -> recorder.resyncs.get() == 1);
+        ProductEntity product = insertProduct("prod-1");
+        assertEquals(ProductChangeType.CREATE, recorder.next().getType());
+        // when
+        updateStatus(product.getId(), ProductStatus.PHASE_OUT);
+        updateStatus(product.getId(), ProductStatus.INACTIVE);
+        mongoTemplate.remove(Query.query(Criteria.where(ProductEntity.Fields.id).is(product.getId())), ProductEntity.class);
+        // then
+        ProductChangeEvent statusChange = recorder.next();
+        assertEquals(ProductChangeType.STATUS_CHANGE, statusChange.getType());
+        assertEquals(ProductStatus.PHASE_OUT, statusChange.getProduct().getStatus());
+        ProductChangeEvent disabled = recorder.next();
+        assertEquals(ProductChangeType.DELETE, disabled.getType());
+        assertEquals(ProductStatus.INACTIVE, disabled.getProduct().getStatus());
+        ProductChangeEvent removed = recorder.next();
+        assertEquals(ProductChangeType.DELETE, removed.getType());
+        assertEquals(product.getId(), removed.getProductId());
+        assertNull(removed.getProduct());
+    }
+
+
+    @Test
+    void start_resumesAfterStop() throws InterruptedException {
+        // given
+        listener.start();
+        await(() -> recorder.resyncs.get() == 1);
+        insertProduct("prod-1");
+        assertEquals("prod-1", recorder.next().getProductId());
+        listener.stop();
+        ProductEntity missed = insertProduct("prod-2");
+        // when
+        listener.start();
+        // then
+        ProductChangeEvent event = recorder.next();
+        assertEquals(ProductChangeType.CREATE, event.getType());
+        assertEquals(missed.getId(), event.getProductId());
+        assertEquals(1, recorder.resyncs.get());
+    }
+
+
+    @Test
+    void start_otherInstanceResyncs() throws InterruptedException {
+        // given
+        listener.start();
+        await(() -> recorder.resyncs.get() == 1);
+        insertProduct("prod-1");
+        assertEquals("prod-1", recorder.next().getProductId());
+        RecordingListener otherRecorder = new RecordingListener();
+        ProductChangeStreamListener other = newListener(otherRecorder);
+        try {
+            // when
+            other.start();
+            // then
+            await(() -> otherRecorder.resyncs.get() == 1);
+        } finally {
+            other.stop();
+        }
+    }
+
+
+    @Test
+    void toUpdateType_update() {
+        // given
+        UpdateDescription updateDescription = new UpdateDescription(List.of(),
+                new BsonDocument(ProductEntity.Fields.title, new BsonString("title")));
+        // when
+        ProductChangeType type = ProductChangeStreamListener.toUpdateType(updateDescription);
+        // then
+        assertEquals(ProductChangeType.UPDATE, type);
+    }
+
+
+    @Test
+    void toUpdateType_statusChange() {
+        // given
+        UpdateDescription updateDescription = new UpdateDescription(List.of(),
+                new BsonDocument(ProductEntity.Fields.status, new BsonString(ProductStatus.PHASE_OUT.name()))
+                        .append(ProductEntity.Fields.modifiedBy, new BsonString("user")));
+        // when
+        ProductChangeType type = ProductChangeStreamListener.toUpdateType(updateDescription);
+        // then
+        assertEquals(ProductChangeType.STATUS_CHANGE, type);
+    }
+
+
+    @Test
+    void toUpdateType_disabled() {
+        // given
+        UpdateDescription updateDescription = new UpdateDescription(List.of(),
+                new BsonDocument(ProductEntity.Fields.status, new BsonString(ProductStatus.INACTIVE.name())));
+        // when
+        ProductChangeType type = ProductChangeStreamListener.toUpdateType(updateDescription);
+        // then
+        assertEquals(ProductChangeType.DELETE, type);
+    }
+
+
+    @Test
+    void toUpdateType_noDescription() {
+        // when
+        ProductChangeType type = ProductChangeStreamListener.toUpdateType(null);
+        // then
+        assertEquals(ProductChangeType.UPDATE, type);
+    }
+
+
+    private ProductChangeStreamListener newListener(ProductChangeListener changeListener) {
+        return new ProductChangeStreamListener(mongoTemplate,
+                new StaticListableBeanFactory(Map.of("changeListener", changeListener)).getBeanProvider(ProductChangeListener.class),
+                Duration.ofMillis(100));
+    }
+
+
+    private ProductEntity insertProduct(String id) {
+        ProductEntity product = mockInstance(new ProductEntity(), "setRoleMappings", "setInstitutionContractMappings", "setBackOfficeEnvironmentConfigurations", "setProductOperations");
+        product.setId(id);
+        product.setStatus(ProductStatus.ACTIVE);
+        return mongoTemplate.insert(product);
+    }
+
+
+    private void updateStatus(String id, ProductStatus status) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where(ProductEntity.Fields.id).is(id)),
+                Update.update(ProductEntity.Fields.status, status),
+                ProductEntity.class);
+    }
+
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+
+    private static final class RecordingListener implements ProductChangeListener {
+
+        private final BlockingQueue<ProductChangeEvent> events = new LinkedBlockingQueue<>();
+        private final AtomicInteger resyncs = new AtomicInteger();
+
+        @Override
+        public void onProductChange(ProductChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onCatalogResync() {
+            resyncs.incrementAndGet();
+        }
+
+        private ProductChangeEvent next() throws InterruptedException {
+            ProductChangeEvent event = events.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            assertNotNull(event, "no product change received in time");
+            return event;
+        }
+
+    }
+
+}
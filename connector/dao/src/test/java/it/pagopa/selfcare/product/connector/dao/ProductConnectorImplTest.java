@@ -1,11 +1,14 @@
 package it.pagopa.selfcare.product.connector.dao;
 
 import com.mongodb.client.result.UpdateResult;
+import it.pagopa.selfcare.commons.base.utils.InstitutionType;
 import it.pagopa.selfcare.commons.base.security.SelfCareUser;
 import it.pagopa.selfcare.product.connector.dao.auditing.SpringSecurityAuditorAware;
 import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
 import it.pagopa.selfcare.product.connector.exception.ResourceAlreadyExistsException;
+import it.pagopa.selfcare.product.connector.exception.ResourceConflictException;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
 import org.bson.BsonValue;
@@ -16,15 +19,25 @@ import org.junit.jupiter.api.function.Executable;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
 import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.test.context.TestSecurityContextHolder;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
 import static org.junit.jupiter.api.Assertions.*;
@@ -132,6 +145,194 @@ class ProductConnectorImplTest {
     }
 
 
+    @Test
+    void updateProduct() {
+        // given
+        ProductEntity product = mockInstance(new ProductEntity());
+        product.setVersion(3L);
+        ProductEntity.EntityContract contract = mockInstance(new ProductEntity.EntityContract());
+        product.setInstitutionContractMappings(Map.of(InstitutionType.PA, contract));
+        ProductEntity updatedProduct = mockInstance(new ProductEntity());
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(ProductEntity.class)))
+                .thenReturn(updatedProduct);
+        // when
+        ProductOperations result = productConnector.updateProduct(product);
+        // then
+        assertSame(updatedProduct, result);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        ArgumentCaptor<FindAndModifyOptions> optionsCaptor = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(queryCaptor.capture(), updateCaptor.capture(), optionsCaptor.capture(), eq(ProductEntity.class));
+        verify(mongoTemplateMock, atLeastOnce())
+                .getConverter();
+        Document query = queryCaptor.getValue().getQueryObject();
+        assertEquals(product.getId(), query.get(ProductEntity.Fields.id));
+        assertEquals(new Document("$ne", ProductStatus.INACTIVE), query.get(ProductEntity.Fields.status));
+        assertEquals(3L, query.get(ProductEntity.Fields.version));
+        List<Document> pipeline = ((AggregationUpdate) updateCaptor.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(1, pipeline.size());
+        Document set = pipeline.get(0).get("$set", Document.class);
+        assertEquals(new Document("$literal", product.getTitle()), set.get(ProductEntity.Fields.title));
+        assertEquals(new Document("$literal", product.getDescription()), set.get(ProductEntity.Fields.description));
+        assertEquals(new Document("$literal", product.getContractTemplateVersion()), set.get(ProductEntity.Fields.contractTemplateVersion));
+        assertTrue(set.get(ProductEntity.Fields.contractTemplateUpdatedAt, Document.class).containsKey("$cond"));
+        Document paContract = set.get(ProductEntity.Fields.institutionContractMappings, Document.class).get(InstitutionType.PA.name(), Document.class);
+        assertEquals(new Document("$literal", contract.getContractTemplateVersion()), paContract.get(ProductEntity.Fields.contractTemplateVersion));
+        assertTrue(paContract.get(ProductEntity.Fields.contractTemplateUpdatedAt, Document.class).containsKey("$cond"));
+        assertEquals(new Document("$literal", selfCareUser.getId()), set.get(ProductEntity.Fields.modifiedBy));
+        assertEquals("$$NOW", set.get(ProductEntity.Fields.modifiedAt));
+        assertTrue(set.get(ProductEntity.Fields.version, Document.class).containsKey("$add"));
+        assertFalse(set.containsKey(ProductEntity.Fields.logo));
+        assertFalse(set.containsKey(ProductEntity.Fields.status));
+        assertTrue(optionsCaptor.getValue().isReturnNew());
+        verifyNoMoreInteractions(mongoTemplateMock);
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void updateProduct_missingFieldsRemoved() {
+        // given
+        ProductEntity product = new ProductEntity();
+        product.setId("id");
+        product.setTitle("$title");
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(ProductEntity.class)))
+                .thenReturn(mockInstance(new ProductEntity()));
+        // when
+        productConnector.updateProduct(product);
+        // then
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updateCaptor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(queryCaptor.capture(), updateCaptor.capture(), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        assertFalse(queryCaptor.getValue().getQueryObject().containsKey(ProductEntity.Fields.version));
+        Document set = ((AggregationUpdate) updateCaptor.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT)
+                .get(0)
+                .get("$set", Document.class);
+        assertEquals(new Document("$literal", "$title"), set.get(ProductEntity.Fields.title));
+        assertEquals("$$REMOVE", set.get(ProductEntity.Fields.description));
+        assertEquals("$$REMOVE", set.get(ProductEntity.Fields.urlPublic));
+        assertEquals("$$REMOVE", set.get(ProductEntity.Fields.roleMappings));
+        assertEquals("$$REMOVE", set.get(ProductEntity.Fields.backOfficeEnvironmentConfigurations));
+        assertEquals("$$REMOVE", set.get(ProductEntity.Fields.contractTemplateVersion));
+        assertFalse(set.containsKey(ProductEntity.Fields.contractTemplateUpdatedAt));
+        assertFalse(set.containsKey(ProductEntity.Fields.institutionContractMappings));
+    }
+
+
+    @Test
+    void updateProduct_conflict() {
+        // given
+        ProductEntity product = mockInstance(new ProductEntity());
+        product.setVersion(3L);
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.exists(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(true);
+        // when
+        Executable executable = () -> productConnector.updateProduct(product);
+        // then
+        assertThrows(ResourceConflictException.class, executable);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        verify(mongoTemplateMock, times(1))
+                .exists(any(Query.class), eq(ProductEntity.class));
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void updateProduct_notFound() {
+        // given
+        ProductEntity product = mockInstance(new ProductEntity());
+        product.setVersion(3L);
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.exists(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(false);
+        // when
+        Executable executable = () -> productConnector.updateProduct(product);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        verify(mongoTemplateMock, times(1))
+                .exists(any(Query.class), eq(ProductEntity.class));
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void updateProduct_notFoundWithoutVersion() {
+        // given
+        ProductEntity product = mockInstance(new ProductEntity());
+        product.setVersion(null);
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        // when
+        Executable executable = () -> productConnector.updateProduct(product);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        verify(mongoTemplateMock, never())
+                .exists(any(Query.class), eq(ProductEntity.class));
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void updateLogo() {
+        // given
+        String id = "id";
+        Map<Integer, String> renditions = Map.of(64, "logo-64");
+        ProductEntity updatedProduct = mockInstance(new ProductEntity());
+        when(mongoTemplateMock.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(ProductEntity.class)))
+                .thenReturn(updatedProduct);
+        // when
+        ProductOperations result = productConnector.updateLogo(id, "logo", renditions);
+        // then
+        assertSame(updatedProduct, result);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(queryCaptor.capture(), updateCaptor.capture(), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        Document query = queryCaptor.getValue().getQueryObject();
+        assertEquals(id, query.get(ProductEntity.Fields.id));
+        assertEquals(new Document("$ne", ProductStatus.INACTIVE), query.get(ProductEntity.Fields.status));
+        Document update = updateCaptor.getValue().getUpdateObject();
+        Map<String, Object> set = (Map<String, Object>) update.get("$set");
+        assertEquals(Set.of(ProductEntity.Fields.logo, ProductEntity.Fields.logoRenditions, ProductEntity.Fields.modifiedBy), set.keySet());
+        assertEquals("logo", set.get(ProductEntity.Fields.logo));
+        assertEquals(renditions, set.get(ProductEntity.Fields.logoRenditions));
+        assertTrue(((Map<String, Object>) update.get("$currentDate")).containsKey(ProductEntity.Fields.modifiedAt));
+        assertEquals(1, ((Map<String, Object>) update.get("$inc")).get(ProductEntity.Fields.version));
+        verifyNoMoreInteractions(mongoTemplateMock);
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void updateDepictImage_notFound() {
+        // given
+        String id = "id";
+        // when
+        Executable executable = () -> productConnector.updateDepictImage(id, "depict-image", null);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplateMock, times(1))
+                .findAndModify(any(Query.class), updateCaptor.capture(), any(FindAndModifyOptions.class), eq(ProductEntity.class));
+        assertEquals("depict-image", ((Map<String, Object>) updateCaptor.getValue().getUpdateObject().get("$set")).get(ProductEntity.Fields.depictImageUrl));
+        verifyNoMoreInteractions(mongoTemplateMock);
+    }
+
+
     @Test
     void findById() {
         // given
@@ -149,6 +350,148 @@ class ProductConnectorImplTest {
     }
 
 
+    @Test
+    void findByIdWithParent() {
+        // given
+        String id = "prod-io-premium";
+        String parentId = "prod-io";
+        Document rawResult = new Document(ProductEntity.Fields.id, id)
+                .append(ProductEntity.Fields.parentId, parentId)
+                .append(ProductEntity.Fields.status, ProductStatus.ACTIVE.name())
+                .append("parent", List.of(new Document(ProductEntity.Fields.id, parentId)
+                        .append(ProductEntity.Fields.status, ProductStatus.PHASE_OUT.name())));
+        when(mongoTemplateMock.getCollectionName(ProductEntity.class))
+                .thenReturn("products");
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.aggregate(any(Aggregation.class), eq(ProductEntity.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(rawResult), new Document()));
+        // when
+        Optional<ProductOperations> found = productConnector.findByIdWithParent(id);
+        // then
+        assertTrue(found.isPresent());
+        assertEquals(id, found.get().getId());
+        assertEquals(ProductStatus.ACTIVE, found.get().getStatus());
+        assertNotNull(found.get().getProductOperations());
+        assertEquals(parentId, found.get().getProductOperations().getId());
+        assertEquals(ProductStatus.PHASE_OUT, found.get().getProductOperations().getStatus());
+        ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplateMock, times(1))
+                .aggregate(aggregationCaptor.capture(), eq(ProductEntity.class), eq(Document.class));
+        List<Document> pipeline = aggregationCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(2, pipeline.size());
+        assertEquals(new Document(ProductEntity.Fields.id, id), pipeline.get(0).get("$match"));
+        assertEquals(ProductEntity.Fields.parentId, ((Document) pipeline.get(1).get("$lookup")).get("localField"));
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findByIdWithParent_notFound() {
+        // given
+        String id = "id";
+        when(mongoTemplateMock.aggregate(any(Aggregation.class), eq(ProductEntity.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+        // when
+        Optional<ProductOperations> found = productConnector.findByIdWithParent(id);
+        // then
+        assertTrue(found.isEmpty());
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findRoleMappingsById() {
+        // given
+        String id = "id";
+        Optional<ProductEntity> entity = Optional.of(mockInstance(new ProductEntity()));
+        when(repositoryMock.findRoleMappingsById(any()))
+                .thenReturn(entity);
+        // when
+        Optional<ProductOperations> found = productConnector.findRoleMappingsById(id);
+        // then
+        assertEquals(entity, found);
+        verify(repositoryMock, times(1))
+                .findRoleMappingsById(id);
+        verifyNoMoreInteractions(repositoryMock);
+        verifyNoInteractions(mongoTemplateMock);
+    }
+
+
+    @Test
+    void findContractTemplatesById() {
+        // given
+        String id = "id";
+        ProductEntity entity = mockInstance(new ProductEntity());
+        when(mongoTemplateMock.findOne(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(entity);
+        // when
+        Optional<ProductOperations> found = productConnector.findContractTemplatesById(id, InstitutionType.PA);
+        // then
+        assertEquals(Optional.of(entity), found);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .findOne(queryCaptor.capture(), eq(ProductEntity.class));
+        Query query = queryCaptor.getValue();
+        assertEquals(id, query.getQueryObject().get(ProductEntity.Fields.id));
+        assertEquals(new Document(ProductEntity.Fields.status, 1)
+                        .append(ProductEntity.Fields.version, 1)
+                        .append(ProductEntity.Fields.createdAt, 1)
+                        .append(ProductEntity.Fields.contractTemplatePath, 1)
+                        .append(ProductEntity.Fields.contractTemplateVersion, 1)
+                        .append(ProductEntity.Fields.contractTemplateUpdatedAt, 1)
+                        .append(ProductEntity.Fields.institutionContractMappings + ".PA", 1),
+                query.getFieldsObject());
+        verifyNoMoreInteractions(mongoTemplateMock);
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findById_fields() {
+        // given
+        String id = "id";
+        ProductEntity entity = mockInstance(new ProductEntity());
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.findOne(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(entity);
+        // when
+        Optional<ProductOperations> found = productConnector.findById(id, List.of("logo", "isNew"));
+        // then
+        assertEquals(Optional.of(entity), found);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .findOne(queryCaptor.capture(), eq(ProductEntity.class));
+        Query query = queryCaptor.getValue();
+        assertEquals(id, query.getQueryObject().get(ProductEntity.Fields.id));
+        assertEquals(new Document(ProductEntity.Fields.id, 1)
+                        .append(ProductEntity.Fields.status, 1)
+                        .append(ProductEntity.Fields.version, 1)
+                        .append(ProductEntity.Fields.createdAt, 1)
+                        .append("logo", 1),
+                query.getFieldsObject());
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findContractTemplatesById_nullInstitutionType() {
+        // given
+        String id = "id";
+        // when
+        Optional<ProductOperations> found = productConnector.findContractTemplatesById(id, null);
+        // then
+        assertTrue(found.isEmpty());
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .findOne(queryCaptor.capture(), eq(ProductEntity.class));
+        assertFalse(queryCaptor.getValue().getFieldsObject().containsKey(ProductEntity.Fields.institutionContractMappings + ".PA"));
+        verifyNoMoreInteractions(mongoTemplateMock);
+        verifyNoInteractions(repositoryMock);
+    }
+
+
     @Test
     void existsById() {
         // given
@@ -182,6 +525,74 @@ class ProductConnectorImplTest {
     }
 
 
+    @Test
+    void findAllById() {
+        // given
+        List<String> ids = List.of("id1", "id2");
+        List<ProductEntity> expected = List.of(mockInstance(new ProductEntity()));
+        when(repositoryMock.findAllById(any()))
+                .thenReturn(expected);
+        // when
+        List<ProductOperations> found = productConnector.findAllById(ids);
+        // then
+        assertEquals(expected, found);
+        verify(repositoryMock, times(1))
+                .findAllById(ids);
+        verifyNoMoreInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findAllById_fields() {
+        // given
+        List<String> ids = List.of("id1", "id2");
+        List<ProductEntity> expected = List.of(mockInstance(new ProductEntity()));
+        when(mongoTemplateMock.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplateMock.find(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(expected);
+        // when
+        List<ProductOperations> found = productConnector.findAllById(ids, List.of("title", "roleMappings", "unknown"));
+        // then
+        assertEquals(expected, found);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .find(queryCaptor.capture(), eq(ProductEntity.class));
+        Query query = queryCaptor.getValue();
+        assertEquals(new Document("$in", ids), query.getQueryObject().get(ProductEntity.Fields.id));
+        assertEquals(new Document(ProductEntity.Fields.id, 1)
+                        .append(ProductEntity.Fields.status, 1)
+                        .append(ProductEntity.Fields.version, 1)
+                        .append(ProductEntity.Fields.createdAt, 1)
+                        .append(ProductEntity.Fields.title, 1)
+                        .append(ProductEntity.Fields.roleMappings, 1),
+                query.getFieldsObject());
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void findByModifiedAtAfter() {
+        // given
+        Instant since = Instant.parse("2023-01-01T00:00:00Z");
+        List<ProductEntity> expected = List.of(mockInstance(new ProductEntity()));
+        when(mongoTemplateMock.find(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(expected);
+        // when
+        List<ProductOperations> found = productConnector.findByModifiedAtAfter(since);
+        // then
+        assertEquals(expected, found);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .find(queryCaptor.capture(), eq(ProductEntity.class));
+        assertEquals(new Document("$or", List.of(
+                        new Document(ProductEntity.Fields.modifiedAt, new Document("$gte", since)),
+                        new Document(ProductEntity.Fields.createdAt, new Document("$gte", since)))),
+                queryCaptor.getValue().getQueryObject());
+        verifyNoInteractions(repositoryMock);
+    }
+
+
     @Test
     void deleteById() {
         // given
@@ -408,6 +819,7 @@ class ProductConnectorImplTest {
         assertEquals(ProductStatus.INACTIVE, set.get("status"));
         assertEquals(selfCareUser.getId(), set.get("modifiedBy"));
         assertTrue(currentDate.containsKey("modifiedAt"));
+        assertEquals(1, ((Map<String, Object>) update.getUpdateObject().get("$inc")).get("version"));
         verifyNoMoreInteractions(mongoTemplateMock);
         verifyNoInteractions(repositoryMock);
     }
@@ -455,6 +867,7 @@ class ProductConnectorImplTest {
         assertEquals(status, set.get("status"));
         assertEquals(selfCareUser.getId(), set.get("modifiedBy"));
         assertTrue(currentDate.containsKey("modifiedAt"));
+        assertEquals(1, ((Map<String, Object>) update.getUpdateObject().get("$inc")).get("version"));
         verifyNoMoreInteractions(mongoTemplateMock);
         verifyNoInteractions(repositoryMock);
     }
@@ -497,4 +910,64 @@ class ProductConnectorImplTest {
         verifyNoInteractions(repositoryMock);
     }
 
-}
\ No newline at end of file
+
+    @Test
+    void getCatalogVersion() {
+        // given
+        ProductEntity first = new ProductEntity();
+        first.setId("prod-1");
+        first.setVersion(3L);
+        first.setCreatedAt(Instant.ofEpochMilli(1_000));
+        ProductEntity second = new ProductEntity();
+        second.setId("prod-2");
+        second.setCreatedAt(Instant.ofEpochMilli(2_000));
+        when(mongoTemplateMock.find(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(List.of(second, first));
+        // when
+        CatalogVersion catalogVersion = productConnector.getCatalogVersion();
+        // then
+        assertEquals(2, catalogVersion.getCount());
+        assertEquals(CatalogVersion.of(List.of(first, second)), catalogVersion);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplateMock, times(1))
+                .find(queryCaptor.capture(), eq(ProductEntity.class));
+        assertEquals(new Document(ProductEntity.Fields.id, 1)
+                        .append(ProductEntity.Fields.version, 1)
+                        .append(ProductEntity.Fields.createdAt, 1),
+                queryCaptor.getValue().getFieldsObject());
+        verifyNoMoreInteractions(mongoTemplateMock);
+        verifyNoInteractions(repositoryMock);
+    }
+
+
+    @Test
+    void getCatalogVersion_versionIncremented() {
+        // given
+        ProductEntity product = new ProductEntity();
+        product.setId("prod-1");
+        product.setVersion(1L);
+        product.setCreatedAt(Instant.ofEpochMilli(1_000));
+        CatalogVersion before = CatalogVersion.of(List.of(product));
+        product.setVersion(2L);
+        when(mongoTemplateMock.find(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(List.of(product));
+        // when
+        CatalogVersion catalogVersion = productConnector.getCatalogVersion();
+        // then
+        assertNotEquals(before, catalogVersion);
+    }
+
+
+    @Test
+    void getCatalogVersion_emptyCatalog() {
+        // given
+        when(mongoTemplateMock.find(any(Query.class), eq(ProductEntity.class)))
+                .thenReturn(List.of());
+        // when
+        CatalogVersion catalogVersion = productConnector.getCatalogVersion();
+        // then
+        assertEquals(0, catalogVersion.getCount());
+        assertEquals(CatalogVersion.of(List.of()), catalogVersion);
+    }
+
+}
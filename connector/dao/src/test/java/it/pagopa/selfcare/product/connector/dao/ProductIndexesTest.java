@@ -0,0 +1,188 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.dao.config.DaoTestConfig;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {ProductEntity.class, ProductRepository.class, DaoTestConfig.class})
+class ProductIndexesTest {
+
+    @Autowired
+    private ProductRepository repository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    @Qualifier("productIndexesInitializer")
+    private SmartInitializingSingleton productIndexesInitializer;
+
+
+    @BeforeEach
+    void init() {
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ProductEntity product = mockInstance(new ProductEntity(), i, "setParentId", "setStatus", "setRoleMappings", "setInstitutionContractMappings", "setBackOfficeEnvironmentConfigurations", "setProductOperations");
+            product.setParentId(i % 2 == 0 ? null : "prod-" + (i - 1));
+            product.setStatus(ProductStatus.values()[i % ProductStatus.values().length]);
+            products.add(product);
+        }
+        repository.saveAll(products);
+    }
+
+
+    @AfterEach
+    void clear() {
+        repository.deleteAll();
+    }
+
+
+    @Test
+    void indexesCreated() {
+        // when
+        productIndexesInitializer.afterSingletonsInstantiated();
+        // then
+        List<String> indexes = mongoTemplate.indexOps(ProductEntity.class).getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toList());
+        assertTrue(indexes.contains(ProductEntity.PARENT_ID_STATUS_INDEX));
+        assertTrue(indexes.contains(ProductEntity.STATUS_INDEX));
+        assertTrue(indexes.contains(ProductEntity.CREATED_AT_INDEX));
+        assertTrue(indexes.contains(ProductEntity.MODIFIED_AT_INDEX));
+    }
+
+
+    @Test
+    void indexesCreated_conflictingIndex() {
+        // given
+        mongoTemplate.indexOps(ProductEntity.class).dropAllIndexes();
+        mongoTemplate.indexOps(ProductEntity.class).ensureIndex(new Index()
+                .on(ProductEntity.Fields.parentId, Sort.Direction.DESC)
+                .named(ProductEntity.PARENT_ID_STATUS_INDEX));
+        // when
+        productIndexesInitializer.afterSingletonsInstantiated();
+        // then
+        List<String> indexes = mongoTemplate.indexOps(ProductEntity.class).getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toList());
+        assertTrue(indexes.contains(ProductEntity.STATUS_INDEX));
+        assertTrue(indexes.contains(ProductEntity.CREATED_AT_INDEX));
+        assertTrue(indexes.contains(ProductEntity.MODIFIED_AT_INDEX));
+        mongoTemplate.indexOps(ProductEntity.class).dropIndex(ProductEntity.PARENT_ID_STATUS_INDEX);
+        productIndexesInitializer.afterSingletonsInstantiated();
+    }
+
+
+    @Test
+    void findByParentIdAndStatusIsNot_usesIndex() {
+        // given
+        Document filter = new Document(ProductEntity.Fields.parentId, null)
+                .append(ProductEntity.Fields.status, new Document("$ne", ProductStatus.INACTIVE.name()));
+        // when
+        List<Document> stages = explain(filter);
+        // then
+        assertTrue(stages.stream().anyMatch(stage -> "IXSCAN".equals(stage.getString("stage"))
+                && ProductEntity.PARENT_ID_STATUS_INDEX.equals(stage.getString("indexName"))), stages::toString);
+        assertTrue(stages.stream().noneMatch(stage -> "COLLSCAN".equals(stage.getString("stage"))), stages::toString);
+    }
+
+
+    @Test
+    void findByStatusIsNot_usesIndex() {
+        // given
+        Document filter = new Document(ProductEntity.Fields.status, new Document("$ne", ProductStatus.INACTIVE.name()));
+        // when
+        List<Document> stages = explain(filter);
+        // then
+        assertTrue(stages.stream().anyMatch(stage -> "IXSCAN".equals(stage.getString("stage"))
+                && ProductEntity.STATUS_INDEX.equals(stage.getString("indexName"))), stages::toString);
+        assertTrue(stages.stream().noneMatch(stage -> "COLLSCAN".equals(stage.getString("stage"))), stages::toString);
+    }
+
+
+    @Test
+    void findByModifiedAtAfter_usesIndexes() {
+        // given
+        Date since = new Date();
+        Document filter = new Document("$or", List.of(
+                new Document(ProductEntity.Fields.modifiedAt, new Document("$gte", since)),
+                new Document(ProductEntity.Fields.createdAt, new Document("$gte", since))));
+        // when
+        List<Document> stages = explain(filter);
+        // then
+        assertTrue(stages.stream().anyMatch(stage -> "IXSCAN".equals(stage.getString("stage"))
+                && ProductEntity.MODIFIED_AT_INDEX.equals(stage.getString("indexName"))), stages::toString);
+        assertTrue(stages.stream().anyMatch(stage -> "IXSCAN".equals(stage.getString("stage"))
+                && ProductEntity.CREATED_AT_INDEX.equals(stage.getString("indexName"))), stages::toString);
+        assertTrue(stages.stream().noneMatch(stage -> "COLLSCAN".equals(stage.getString("stage"))), stages::toString);
+    }
+
+
+    @Test
+    void findLatest_usesIndexes() {
+        for (String dateField : List.of(ProductEntity.Fields.modifiedAt, ProductEntity.Fields.createdAt)) {
+            // given
+            Document filter = new Document(dateField, new Document("$ne", null));
+            // when
+            List<Document> stages = explain(filter, new Document(dateField, -1));
+            // then
+            assertTrue(stages.stream().anyMatch(stage -> "IXSCAN".equals(stage.getString("stage"))), stages::toString);
+            assertTrue(stages.stream().noneMatch(stage -> "SORT".equals(stage.getString("stage"))
+                    || "COLLSCAN".equals(stage.getString("stage"))), stages::toString);
+        }
+    }
+
+
+    private List<Document> explain(Document filter) {
+        return explain(filter, new Document());
+    }
+
+
+    private List<Document> explain(Document filter, Document sort) {
+        final Document result = mongoTemplate.executeCommand(new Document("explain",
+                new Document("find", mongoTemplate.getCollectionName(ProductEntity.class))
+                        .append("filter", filter)
+                        .append("sort", sort)
+                        .append("limit", sort.isEmpty() ? 0 : 1))
+                .append("verbosity", "queryPlanner"));
+        final List<Document> stages = new ArrayList<>();
+        collectStages(result.get("queryPlanner", Document.class).get("winningPlan", Document.class), stages);
+        return stages;
+    }
+
+
+    private static void collectStages(Document plan, List<Document> stages) {
+        if (plan == null) {
+            return;
+        }
+        stages.add(plan);
+        collectStages(plan.get("inputStage", Document.class), stages);
+        plan.getList("inputStages", Document.class, List.of())
+                .forEach(inputStage -> collectStages(inputStage, stages));
+    }
+
+}
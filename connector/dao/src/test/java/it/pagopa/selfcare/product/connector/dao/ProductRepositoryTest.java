@@ -140,6 +140,29 @@ class ProductRepositoryTest {
     }
 
 
+    @Test
+    void findRoleMappingsById() {
+        // given
+        ProductEntity product = mockInstance(new ProductEntity(), "setRoleMappings");
+        EnumMap<PartyRole, ProductEntity.ProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
+        ProductEntity.ProductRoleInfo productRoleInfo = new ProductEntity.ProductRoleInfo();
+        productRoleInfo.setRoles(List.of(mockInstance(new ProductEntity.ProductRole())));
+        roleMappings.put(PartyRole.MANAGER, productRoleInfo);
+        product.setRoleMappings(roleMappings);
+        repository.save(product);
+        // when
+        Optional<ProductEntity> result = repository.findRoleMappingsById(product.getId());
+        // then
+        assertTrue(result.isPresent());
+        assertEquals(product.getId(), result.get().getId());
+        assertEquals(product.getStatus(), result.get().getStatus());
+        assertEquals(Set.of(PartyRole.MANAGER), result.get().getRoleMappings().keySet());
+        assertEquals(product.getVersion(), result.get().getVersion());
+        assertNull(result.get().getTitle());
+        assertNull(result.get().getContractTemplatePath());
+    }
+
+
     @Test
     void findByEnabled_found() {
         // given
@@ -0,0 +1,135 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.dao.config.DaoTestConfig;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.model.ProductOperations;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@DataMongoTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {ProductEntity.class, ProductRepository.class, ProductConnectorImpl.class, DaoTestConfig.class})
+class ProductTreeAggregationTest {
+
+    @Autowired
+    private ProductRepository repository;
+
+    @Autowired
+    private ProductConnectorImpl productConnector;
+
+
+    @AfterEach
+    void clear() {
+        repository.deleteAll();
+    }
+
+
+    @Test
+    void findProductTree() {
+        // given
+        ProductEntity root = newProduct("prod-io", null, ProductStatus.ACTIVE);
+        ProductEntity child = newProduct("prod-io-premium", root.getId(), ProductStatus.ACTIVE);
+        ProductEntity inactiveChild = newProduct("prod-io-old", root.getId(), ProductStatus.INACTIVE);
+        ProductEntity inactiveRoot = newProduct("prod-old", null, ProductStatus.INACTIVE);
+        ProductEntity orphan = newProduct("prod-old-child", inactiveRoot.getId(), ProductStatus.ACTIVE);
+        ProductEntity leaf = newProduct("prod-pn", null, ProductStatus.TESTING);
+        repository.saveAll(List.of(root, child, inactiveChild, inactiveRoot, orphan, leaf));
+        // when
+        List<ProductTree> productTree = productConnector.findProductTree();
+        // then
+        assertEquals(2, productTree.size());
+        Map<String, ProductTree> byId = productTree.stream()
+                .collect(Collectors.toMap(tree -> tree.getNode().getId(), tree -> tree));
+        assertEquals(root.getTitle(), byId.get(root.getId()).getNode().getTitle());
+        assertEquals(List.of(child.getId()), byId.get(root.getId()).getChildren().stream()
+                .map(ProductOperations::getId)
+                .collect(Collectors.toList()));
+        assertEquals(ProductStatus.ACTIVE, byId.get(root.getId()).getChildren().get(0).getStatus());
+        assertTrue(byId.get(leaf.getId()).getChildren().isEmpty());
+    }
+
+
+    /**
+     * Compares the aggregation with the former approach, loading every product that is not INACTIVE
+     * and grouping the children by parentId in the JVM.
+     * Run with {@code -Dbenchmark=true}, the timings are logged at INFO level.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark() {
+        // given
+        final int roots = 1_000;
+        final int childrenPerRoot = 4;
+        final int rounds = 20;
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < roots; i++) {
+            ProductEntity root = newProduct("prod-" + i, null, i % 10 == 0 ? ProductStatus.INACTIVE : ProductStatus.ACTIVE);
+            products.add(root);
+            for (int j = 0; j < childrenPerRoot; j++) {
+                products.add(newProduct(root.getId() + "-" + j, root.getId(), j == 0 ? ProductStatus.INACTIVE : ProductStatus.ACTIVE));
+            }
+        }
+        repository.saveAll(products);
+        Supplier<Integer> inJvm = () -> {
+            List<ProductOperations> all = productConnector.findByStatusIsNot(ProductStatus.INACTIVE);
+            Map<String, List<ProductOperations>> children = all.stream()
+                    .filter(product -> product.getParentId() != null)
+                    .collect(Collectors.groupingBy(ProductOperations::getParentId));
+            return (int) all.stream()
+                    .filter(product -> product.getParentId() == null)
+                    .map(product -> new ProductTree(product, children.getOrDefault(product.getId(), List.of())))
+                    .count();
+        };
+        Supplier<Integer> aggregation = () -> productConnector.findProductTree().size();
+        // when
+        long inJvmNanos = measure(inJvm, rounds);
+        long aggregationNanos = measure(aggregation, rounds);
+        // then
+        assertEquals(inJvm.get(), aggregation.get());
+        log.info("products tree on {} products: in-JVM grouping {} ms/op, aggregation {} ms/op",
+                products.size(),
+                TimeUnit.NANOSECONDS.toMillis(inJvmNanos / rounds),
+                TimeUnit.NANOSECONDS.toMillis(aggregationNanos / rounds));
+    }
+
+
+    private static long measure(Supplier<Integer> operation, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            operation.get();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            operation.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+
+    private static ProductEntity newProduct(String id, String parentId, ProductStatus status) {
+        ProductEntity product = mockInstance(new ProductEntity(), "setId", "setParentId", "setStatus", "setRoleMappings", "setInstitutionContractMappings", "setBackOfficeEnvironmentConfigurations", "setProductOperations");
+        product.setId(id);
+        product.setParentId(parentId);
+        product.setStatus(status);
+        return product;
+    }
+
+}
@@ -0,0 +1,116 @@
+package it.pagopa.selfcare.product.connector.dao;
+
+import it.pagopa.selfcare.product.connector.dao.config.DaoTestConfig;
+import it.pagopa.selfcare.product.connector.dao.model.ProductEntity;
+import it.pagopa.selfcare.product.connector.exception.ResourceConflictException;
+import it.pagopa.selfcare.product.connector.model.PartyRole;
+import it.pagopa.selfcare.product.connector.model.ProductOperations;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {ProductEntity.class, ProductRepository.class, ProductConnectorImpl.class, DaoTestConfig.class})
+class ProductUpdateTest {
+
+    @Autowired
+    private ProductRepository repository;
+
+    @Autowired
+    private ProductConnectorImpl productConnector;
+
+
+    @AfterEach
+    void clear() {
+        repository.deleteAll();
+    }
+
+
+    @Test
+    void updateProduct_replacesFields() {
+        // given
+        ProductEntity stored = newProduct();
+        stored.setRoleMappings(roleMappings(PartyRole.MANAGER, PartyRole.DELEGATE));
+        stored.setBackOfficeEnvironmentConfigurations(backOfficeConfigurations("test", "prod"));
+        repository.save(stored);
+        ProductEntity product = newProduct();
+        product.setTitle("$title");
+        product.setDescription(null);
+        product.setUrlPublic(null);
+        product.setRoleMappings(roleMappings(PartyRole.MANAGER));
+        product.setBackOfficeEnvironmentConfigurations(backOfficeConfigurations("prod"));
+        // when
+        ProductOperations result = productConnector.updateProduct(product);
+        // then
+        ProductEntity updated = repository.findById(stored.getId()).orElseThrow();
+        assertEquals("$title", updated.getTitle());
+        assertNull(updated.getDescription());
+        assertNull(updated.getUrlPublic());
+        assertEquals(Set.of(PartyRole.MANAGER), updated.getRoleMappings().keySet());
+        assertEquals(Set.of("prod"), updated.getBackOfficeEnvironmentConfigurations().keySet());
+        assertEquals(stored.getLogo(), updated.getLogo());
+        assertEquals(stored.getContractTemplateUpdatedAt(), updated.getContractTemplateUpdatedAt());
+        assertEquals(2L, updated.getVersion());
+        assertEquals(updated.getVersion(), result.getVersion());
+    }
+
+
+    @Test
+    void updateProduct_staleVersion() {
+        // given
+        ProductEntity stored = newProduct();
+        stored.setVersion(2L);
+        repository.save(stored);
+        ProductEntity product = newProduct();
+        product.setTitle("title");
+        // when
+        Executable executable = () -> productConnector.updateProduct(product);
+        // then
+        assertThrows(ResourceConflictException.class, executable);
+        assertEquals(stored.getTitle(), repository.findById(stored.getId()).orElseThrow().getTitle());
+    }
+
+
+    private static ProductEntity newProduct() {
+        ProductEntity product = mockInstance(new ProductEntity(), "setStatus", "setParentId", "setRoleMappings", "setInstitutionContractMappings", "setBackOfficeEnvironmentConfigurations", "setProductOperations");
+        product.setStatus(ProductStatus.ACTIVE);
+        product.setVersion(1L);
+        return product;
+    }
+
+
+    private static EnumMap<PartyRole, ProductEntity.ProductRoleInfo> roleMappings(PartyRole... partyRoles) {
+        EnumMap<PartyRole, ProductEntity.ProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
+        for (PartyRole partyRole : partyRoles) {
+            ProductEntity.ProductRoleInfo roleInfo = new ProductEntity.ProductRoleInfo();
+            roleInfo.setRoles(List.of(mockInstance(new ProductEntity.ProductRole(), partyRole.ordinal())));
+            roleMappings.put(partyRole, roleInfo);
+        }
+        return roleMappings;
+    }
+
+
+    private static Map<String, ProductEntity.EntityBackOfficeConfigurations> backOfficeConfigurations(String... environments) {
+        Map<String, ProductEntity.EntityBackOfficeConfigurations> configurations = new HashMap<>();
+        for (String environment : environments) {
+            configurations.put(environment, mockInstance(new ProductEntity.EntityBackOfficeConfigurations()));
+        }
+        return configurations;
+    }
+
+}
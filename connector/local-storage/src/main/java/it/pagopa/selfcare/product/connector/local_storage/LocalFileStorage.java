@@ -0,0 +1,150 @@
+package it.pagopa.selfcare.product.connector.local_storage;
+
+import it.pagopa.selfcare.product.connector.api.FileStorageConnector;
+import it.pagopa.selfcare.product.connector.exception.FileUploadException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stores the product images on the local filesystem, under the same relative paths used on the blob storage.
+ * Every file is written to a temporary sibling and then atomically renamed, so readers never see a partial image.
+ * The filesystem cannot keep a content encoding: gzip encoded images are stored both as they are, in a {@code .gz}
+ * sidecar to be served to the clients accepting it, and decoded.
+ */
+@Slf4j
+@Service
+@Profile("LocalFileStorage")
+class LocalFileStorage implements FileStorageConnector {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final Path basePath;
+    private final String publicUrl;
+
+
+    LocalFileStorage(@Value("${localStorage.basePath}") String basePath,
+                     @Value("${localStorage.publicUrl}") String publicUrl) {
+        this.basePath = Paths.get(basePath).toAbsolutePath().normalize();
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+    }
+
+
+    @Override
+    public URL uploadProductImg(InputStream file, long contentLength, String fileName, String contentType, String contentEncoding) throws FileUploadException, MalformedURLException {
+        log.trace("uploadProductImg start");
+        log.debug("uploadProductImg file = {}, contentLength = {}, fileName = {}, contentType = {}, contentEncoding = {}", file, contentLength, fileName, contentType, contentEncoding);
+        final Path target = resolve(fileName);
+        final boolean gzipped = GZIP_ENCODING.equalsIgnoreCase(contentEncoding);
+        if (contentEncoding != null && !gzipped) {
+            throw new FileUploadException(new IllegalArgumentException(String.format("Unsupported content encoding \"%s\"", contentEncoding)));
+        }
+        final Path gzipTarget = target.resolveSibling(target.getFileName() + GZIP_SUFFIX);
+        Path tmp = null;
+        Path gzipTmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            tmp = createTempSibling(target);
+            if (gzipped) {
+                gzipTmp = createTempSibling(gzipTarget);
+                write(file, contentLength, gzipTmp);
+                try (InputStream decoded = new GZIPInputStream(Files.newInputStream(gzipTmp))) {
+                    Files.copy(decoded, tmp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(gzipTmp, gzipTarget, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                write(file, contentLength, tmp);
+                Files.deleteIfExists(gzipTarget);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Uploaded {}", fileName);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            deleteQuietly(gzipTmp);
+            throw new FileUploadException(e);
+        }
+        final URL url = toPublicUrl(target);
+        log.debug("uploadProductImg result = {}", url);
+        log.trace("uploadProductImg end");
+        return url;
+    }
+
+
+    @Override
+    public Optional<URL> findProductImg(String fileName) throws FileUploadException, MalformedURLException {
+        log.trace("findProductImg start");
+        log.debug("findProductImg fileName = {}", fileName);
+        final Path target = resolve(fileName);
+        final Optional<URL> url = Files.isRegularFile(target) ? Optional.of(toPublicUrl(target)) : Optional.empty();
+        log.debug("findProductImg result = {}", url);
+        log.trace("findProductImg end");
+        return url;
+    }
+
+
+    private Path resolve(String fileName) {
+        final Path target = basePath.resolve(fileName).normalize();
+        if (!target.startsWith(basePath) || target.equals(basePath)) {
+            throw new FileUploadException(new IllegalArgumentException(String.format("Invalid file name \"%s\"", fileName)));
+        }
+        return target;
+    }
+
+
+    private static Path createTempSibling(Path target) throws IOException {
+        return Files.createTempFile(target.getParent(), "." + target.getFileName(), TMP_SUFFIX);
+    }
+
+
+    private URL toPublicUrl(Path target) throws MalformedURLException {
+        return new URL(publicUrl + "/" + basePath.relativize(target).toString().replace('\\', '/'));
+    }
+
+
+    private static void write(InputStream file, long contentLength, Path path) throws IOException {
+        // the caller owns the input stream, so the wrapping channel is deliberately left open
+        final ReadableByteChannel source = Channels.newChannel(file);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            while (written < contentLength) {
+                final long transferred = channel.transferFrom(source, written, contentLength - written);
+                if (transferred <= 0) {
+                    throw new EOFException(String.format("Expected %d bytes, stream ended after %d", contentLength, written));
+                }
+                written += transferred;
+            }
+            channel.force(false);
+        }
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Unable to delete temporary file {}: {}", path, e.toString());
+            }
+        }
+    }
+
+}
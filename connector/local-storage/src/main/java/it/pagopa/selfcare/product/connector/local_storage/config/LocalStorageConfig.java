@@ -0,0 +1,11 @@
+package it.pagopa.selfcare.product.connector.local_storage.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+
+@Configuration
+@PropertySource("classpath:config/local-storage-config.properties")
+@Profile("LocalFileStorage")
+class LocalStorageConfig {
+}
@@ -0,0 +1,168 @@
+package it.pagopa.selfcare.product.connector.local_storage;
+
+import it.pagopa.selfcare.product.connector.exception.FileUploadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+class LocalFileStorageTest {
+
+    private static final String PUBLIC_URL = "http://localhost:8080/";
+
+    @TempDir
+    Path basePath;
+
+
+    @Test
+    void uploadProductImg() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "product logo".getBytes(StandardCharsets.UTF_8);
+        String fileName = "resources/products/prod-io/logo.png";
+        //when
+        URL url = fileStorage.uploadProductImg(new ByteArrayInputStream(content), content.length, fileName, "image/png");
+        //then
+        Assertions.assertEquals(new URL("http://localhost:8080/resources/products/prod-io/logo.png"), url);
+        Assertions.assertArrayEquals(content, Files.readAllBytes(basePath.resolve(fileName)));
+        assertNoTemporaryFiles(basePath.resolve(fileName).getParent());
+    }
+
+
+    @Test
+    void uploadProductImg_overwrite() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        String fileName = "resources/products/prod-io/logo.png";
+        byte[] oldContent = "old product logo".getBytes(StandardCharsets.UTF_8);
+        byte[] newContent = "new logo".getBytes(StandardCharsets.UTF_8);
+        fileStorage.uploadProductImg(new ByteArrayInputStream(oldContent), oldContent.length, fileName, "image/png");
+        //when
+        fileStorage.uploadProductImg(new ByteArrayInputStream(newContent), newContent.length, fileName, "image/png");
+        //then
+        Assertions.assertArrayEquals(newContent, Files.readAllBytes(basePath.resolve(fileName)));
+        assertNoTemporaryFiles(basePath.resolve(fileName).getParent());
+    }
+
+
+    @Test
+    void uploadProductImg_gzip() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "<svg xmlns=\"http://www.w3.org/2000/svg\"></svg>".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(content);
+        }
+        String fileName = "resources/products/prod-io/logo.svg";
+        //when
+        URL url = fileStorage.uploadProductImg(new ByteArrayInputStream(gzipped.toByteArray()), gzipped.size(), fileName, "image/svg+xml", "gzip");
+        //then
+        Assertions.assertEquals(new URL("http://localhost:8080/resources/products/prod-io/logo.svg"), url);
+        Assertions.assertArrayEquals(content, Files.readAllBytes(basePath.resolve(fileName)));
+        Assertions.assertArrayEquals(gzipped.toByteArray(), Files.readAllBytes(basePath.resolve(fileName + ".gz")));
+        assertNoTemporaryFiles(basePath.resolve(fileName).getParent());
+    }
+
+
+    @Test
+    void uploadProductImg_unsupportedEncoding() {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "product logo".getBytes(StandardCharsets.UTF_8);
+        String fileName = "resources/products/prod-io/logo.svg";
+        //when
+        Executable executable = () -> fileStorage.uploadProductImg(new ByteArrayInputStream(content), content.length, fileName, "image/svg+xml", "br");
+        //then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        Assertions.assertFalse(Files.exists(basePath.resolve(fileName)));
+    }
+
+
+    @Test
+    void uploadProductImg_truncatedStream() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "product logo".getBytes(StandardCharsets.UTF_8);
+        String fileName = "resources/products/prod-io/logo.png";
+        //when
+        Executable executable = () -> fileStorage.uploadProductImg(new ByteArrayInputStream(content), content.length + 1, fileName, "image/png");
+        //then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof EOFException);
+        Assertions.assertFalse(Files.exists(basePath.resolve(fileName)));
+        assertNoTemporaryFiles(basePath.resolve(fileName).getParent());
+    }
+
+
+    @Test
+    void uploadProductImg_outsideBasePath() {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "product logo".getBytes(StandardCharsets.UTF_8);
+        //when
+        Executable executable = () -> fileStorage.uploadProductImg(new ByteArrayInputStream(content), content.length, "../logo.png", "image/png");
+        //then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+        Assertions.assertFalse(Files.exists(basePath.resolve("../logo.png")));
+    }
+
+
+    @Test
+    void findProductImg() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        byte[] content = "product logo".getBytes(StandardCharsets.UTF_8);
+        String fileName = "resources/products/prod-io/logo.png";
+        fileStorage.uploadProductImg(new ByteArrayInputStream(content), content.length, fileName, "image/png");
+        //when
+        Optional<URL> url = fileStorage.findProductImg(fileName);
+        //then
+        Assertions.assertEquals(Optional.of(new URL("http://localhost:8080/resources/products/prod-io/logo.png")), url);
+    }
+
+
+    @Test
+    void findProductImg_notFound() throws Exception {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        //when
+        Optional<URL> url = fileStorage.findProductImg("resources/products/prod-io/logo.png");
+        //then
+        Assertions.assertTrue(url.isEmpty());
+    }
+
+
+    @Test
+    void findProductImg_outsideBasePath() {
+        //given
+        LocalFileStorage fileStorage = new LocalFileStorage(basePath.toString(), PUBLIC_URL);
+        //when
+        Executable executable = () -> fileStorage.findProductImg("../logo.png");
+        //then
+        FileUploadException e = Assertions.assertThrows(FileUploadException.class, executable);
+        Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+
+    private static void assertNoTemporaryFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+}
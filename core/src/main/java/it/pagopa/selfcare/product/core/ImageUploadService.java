@@ -0,0 +1,30 @@
+package it.pagopa.selfcare.product.core;
+
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ImageUploadService {
+
+    /**
+     * Validates the image type, extension and size, then stages the image and schedules its upload,
+     * returning as soon as the image is on the staging area.
+     *
+     * @param stagingWriter writes the image content to the given staging file
+     * @return the pending operation, whose status can be polled through {@link #getOperation(String, String)}
+     * @throws it.pagopa.selfcare.product.core.exception.FileValidationException when the image type, extension or size is not allowed
+     * @throws it.pagopa.selfcare.product.core.exception.TooManyUploadsException when the staging area is full
+     */
+    ImageUploadOperation submit(String productId, ProductImageType imageType, long contentLength, String contentType, String fileName, StagingWriter stagingWriter);
+
+    ImageUploadOperation getOperation(String productId, String operationId);
+
+
+    @FunctionalInterface
+    interface StagingWriter {
+        void writeTo(Path target) throws IOException;
+    }
+
+}
@@ -0,0 +1,191 @@
+package it.pagopa.selfcare.product.core;
+
+import it.pagopa.selfcare.product.connector.api.ImageUploadOperationConnector;
+import it.pagopa.selfcare.product.connector.exception.FileUploadException;
+import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+import it.pagopa.selfcare.product.core.config.ImageUploadProperties;
+import it.pagopa.selfcare.product.core.exception.TooManyUploadsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the product image uploads on a dedicated, bounded executor.
+ * The checks that do not need the image content run before anything is staged, so an invalid upload is rejected
+ * synchronously. Images are then staged on the local filesystem, so the request thread is released as soon as the image
+ * is received; at most {@code threads + maxPending} images can be staged at the same time, further submissions are
+ * rejected with a {@link TooManyUploadsException}.
+ * The state of the operations is stored through the {@link ImageUploadOperationConnector}, so it can be polled through any replica.
+ */
+@Slf4j
+@Service
+class ImageUploadServiceImpl implements ImageUploadService {
+
+    private static final String REQUIRED_PRODUCT_ID_MESSAGE = "A product id is required";
+    private static final String REQUIRED_IMAGE_TYPE_MESSAGE = "An image type is required";
+
+    private final ProductService productService;
+    private final ImageUploadOperationConnector operationConnector;
+    private final ProductImageService productLogoImageService;
+    private final ProductImageService productDepictImageService;
+    private final ImageUploadProperties properties;
+    private final Semaphore stagingSlots;
+    private final ThreadPoolExecutor executor;
+
+
+    @Autowired
+    ImageUploadServiceImpl(ProductService productService,
+                           ImageUploadOperationConnector operationConnector,
+                           @Qualifier("productLogoImageService") ProductImageService productLogoImageService,
+                           @Qualifier("productDepictImageService") ProductImageService productDepictImageService,
+                           ImageUploadProperties properties) {
+        this.productService = productService;
+        this.operationConnector = operationConnector;
+        this.productLogoImageService = productLogoImageService;
+        this.productDepictImageService = productDepictImageService;
+        this.properties = properties;
+        this.stagingSlots = new Semaphore(properties.getThreads() + properties.getMaxPending());
+        final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-upload-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getMaxPending())),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    @Override
+    public ImageUploadOperation submit(String productId, ProductImageType imageType, long contentLength, String contentType, String fileName, StagingWriter stagingWriter) {
+        log.trace("submit start");
+        log.debug("submit productId = {}, imageType = {}, contentLength = {}, contentType = {}, fileName = {}", productId, imageType, contentLength, contentType, fileName);
+        Assert.hasText(productId, REQUIRED_PRODUCT_ID_MESSAGE);
+        Assert.notNull(imageType, REQUIRED_IMAGE_TYPE_MESSAGE);
+        productService.getProduct(productId, null);
+        (imageType == ProductImageType.LOGO ? productLogoImageService : productDepictImageService)
+                .validateUpload(contentType, fileName, contentLength);
+        if (!stagingSlots.tryAcquire()) {
+            throw new TooManyUploadsException("Too many image uploads in progress, retry later");
+        }
+        final Path staged;
+        try {
+            staged = stage(stagingWriter);
+        } catch (IOException e) {
+            stagingSlots.release();
+            throw new FileUploadException(e);
+        }
+        final ImageUploadOperation operation = ImageUploadOperation.pending(UUID.randomUUID().toString(), productId, imageType);
+        try {
+            operationConnector.save(operation);
+        } catch (RuntimeException e) {
+            deleteQuietly(staged);
+            stagingSlots.release();
+            throw e;
+        }
+        try {
+            executor.execute(new DelegatingSecurityContextRunnable(() ->
+                    upload(operation, staged, contentLength, contentType, fileName)));
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(staged);
+            stagingSlots.release();
+            throw new TooManyUploadsException("Too many image uploads in progress, retry later");
+        }
+        log.debug("submit result = {}", operation);
+        log.trace("submit end");
+        return operation;
+    }
+
+
+    @Override
+    public ImageUploadOperation getOperation(String productId, String operationId) {
+        log.trace("getOperation start");
+        log.debug("getOperation productId = {}, operationId = {}", productId, operationId);
+        Assert.hasText(productId, REQUIRED_PRODUCT_ID_MESSAGE);
+        final ImageUploadOperation operation = operationConnector.findById(operationId)
+                .filter(found -> found.getProductId().equals(productId))
+                .orElseThrow(ResourceNotFoundException::new);
+        log.debug("getOperation result = {}", operation);
+        log.trace("getOperation end");
+        return operation;
+    }
+
+
+    private Path stage(StagingWriter stagingWriter) throws IOException {
+        Files.createDirectories(properties.getStagingDir());
+        final Path staged = Files.createTempFile(properties.getStagingDir(), "upload-", ".tmp");
+        try {
+            stagingWriter.writeTo(staged);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+        return staged;
+    }
+
+
+    private void upload(ImageUploadOperation operation, Path staged, long contentLength, String contentType, String fileName) {
+        saveQuietly(operation.withStatus(ImageUploadOperation.Status.RUNNING, null));
+        ImageUploadOperation.Status status = ImageUploadOperation.Status.SUCCEEDED;
+        String error = null;
+        try {
+            // the staged file is handed over as it is, so it is hashed in place and not copied again
+            if (operation.getImageType() == ProductImageType.LOGO) {
+                productService.saveProductLogo(operation.getProductId(), staged, contentLength, contentType, fileName);
+            } else {
+                productService.saveProductDepictImage(operation.getProductId(), staged, contentLength, contentType, fileName);
+            }
+            log.info("Image upload {} completed", operation.getId());
+        } catch (Exception e) {
+            log.warn("Image upload {} failed: {}", operation.getId(), e.toString());
+            status = ImageUploadOperation.Status.FAILED;
+            error = e.getMessage();
+        } finally {
+            deleteQuietly(staged);
+            stagingSlots.release();
+        }
+        // published only once the staging slot is free, so a completed operation always means room for a new one
+        saveQuietly(operation.withStatus(status, error));
+    }
+
+
+    private void saveQuietly(ImageUploadOperation operation) {
+        try {
+            operationConnector.save(operation);
+        } catch (RuntimeException e) {
+            log.warn("Unable to save the image upload operation {}: {}", operation, e.toString());
+        }
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Unable to delete staged image {}: {}", path, e.toString());
+        }
+    }
+
+}
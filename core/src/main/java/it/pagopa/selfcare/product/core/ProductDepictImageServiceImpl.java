@@ -8,7 +8,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -20,6 +22,10 @@ public class ProductDepictImageServiceImpl extends ProductImageServiceTemplate {
     private final Set<String> allowedProductDepictImageMimeTypes;
     private final Set<String> allowedProductDepictImageExtensions;
     private final String defaultImageUrl;
+    private final Set<Integer> productDepictImageRenditionWidths;
+    private final DataSize productDepictImageMaxSize;
+    private final int productDepictImageMaxWidth;
+    private final int productDepictImageMaxHeight;
 
     @Autowired
     public ProductDepictImageServiceImpl(FileStorageConnector fileStorageConnector,
@@ -29,6 +35,10 @@ public class ProductDepictImageServiceImpl extends ProductImageServiceTemplate {
         this.allowedProductDepictImageMimeTypes = depictImageProperties.getAllowedMimeTypes();
         this.allowedProductDepictImageExtensions = depictImageProperties.getAllowedExtensions();
         this.defaultImageUrl = depictImageProperties.getDefaultUrl();
+        this.productDepictImageRenditionWidths = depictImageProperties.getRenditionWidths();
+        this.productDepictImageMaxSize = depictImageProperties.getMaxSize();
+        this.productDepictImageMaxWidth = depictImageProperties.getMaxWidth();
+        this.productDepictImageMaxHeight = depictImageProperties.getMaxHeight();
     }
 
     @Override
@@ -47,8 +57,28 @@ public class ProductDepictImageServiceImpl extends ProductImageServiceTemplate {
     }
 
     @Override
-    protected void setImageUrl(ProductOperations productToUpdate, String url) {
-        productToUpdate.setDepictImageUrl(url);
+    protected Set<Integer> getRenditionWidths() {
+        return productDepictImageRenditionWidths;
+    }
+
+    @Override
+    protected DataSize getMaxSize() {
+        return productDepictImageMaxSize;
+    }
+
+    @Override
+    protected int getMaxWidth() {
+        return productDepictImageMaxWidth;
+    }
+
+    @Override
+    protected int getMaxHeight() {
+        return productDepictImageMaxHeight;
+    }
+
+    @Override
+    protected ProductOperations updateImage(ProductConnector productConnector, String id, String url, Map<Integer, String> renditionUrls) {
+        return productConnector.updateDepictImage(id, url, renditionUrls);
     }
 
     @Override
@@ -3,10 +3,29 @@ package it.pagopa.selfcare.product.core;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public interface ProductImageService {
 
-    void saveImage(ProductOperations productToUpdate, InputStream inputStream, String contentType, String fileName);
+    /**
+     * @return the product, with the stored image and its renditions
+     */
+    ProductOperations saveImage(ProductOperations productToUpdate, InputStream inputStream, long contentLength, String contentType, String fileName);
+
+    /**
+     * Saves an image already staged on the local filesystem: it is read where it is, without being copied again.
+     * The file is not deleted.
+     *
+     * @return the product, with the stored image and its renditions
+     */
+    ProductOperations saveImage(ProductOperations productToUpdate, Path image, long contentLength, String contentType, String fileName);
+
+    /**
+     * Runs the checks that do not need the image content: content type, file extension and size.
+     *
+     * @throws it.pagopa.selfcare.product.core.exception.FileValidationException if a check fails
+     */
+    void validateUpload(String contentType, String fileName, long contentLength);
 
     String getDefaultImageUrl();
 
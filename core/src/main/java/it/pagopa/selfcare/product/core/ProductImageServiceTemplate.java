@@ -5,19 +5,62 @@ import it.pagopa.selfcare.product.connector.api.ProductConnector;
 import it.pagopa.selfcare.product.connector.exception.FileUploadException;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.core.exception.FileValidationException;
+import it.pagopa.selfcare.product.core.image.ImageFormat;
+import it.pagopa.selfcare.product.core.image.ImageInfo;
+import it.pagopa.selfcare.product.core.image.ImageRenditions;
+import it.pagopa.selfcare.product.core.image.ImageSniffer;
+import it.pagopa.selfcare.product.core.image.SvgSanitizer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.Assert;
 import org.springframework.util.InvalidMimeTypeException;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 public abstract class ProductImageServiceTemplate implements ProductImageService {
 
+    private static final String CONTENT_ADDRESSED_FILE_NAME_TEMPLATE = "%s-%s.%s";
+    private static final String RENDITION_FILE_NAME_TEMPLATE = "%s-%d.%s";
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String GZIP_ENCODING = "gzip";
+    /**
+     * The minimum fraction of its size gzip has to save for an image to be stored encoded
+     */
+    private static final double MIN_GZIP_SAVING = 0.2;
+    /**
+     * SVG sanitization needs the whole image in memory, so SVG images bigger than this are rejected
+     */
+    private static final long MAX_BUFFERED_IMAGE_SIZE = 16L * 1024 * 1024;
+    private static final String STAGING_FILE_PREFIX = "product-img-";
+    private static final String STAGING_FILE_SUFFIX = ".tmp";
+    private static final int STAGING_BUFFER_SIZE = 8192;
 
     private final FileStorageConnector fileStorageConnector;
     private final ProductConnector productConnector;
@@ -30,24 +73,225 @@ public abstract class ProductImageServiceTemplate implements ProductImageService
     }
 
     @Override
-    public void saveImage(ProductOperations productToUpdate, InputStream inputStream, String contentType, String fileName) {
+    public ProductOperations saveImage(ProductOperations productToUpdate, InputStream inputStream, long contentLength, String contentType, String fileName) {
+        return saveImage(productToUpdate, inputStream, null, contentLength, contentType, fileName);
+    }
+
+    @Override
+    public ProductOperations saveImage(ProductOperations productToUpdate, Path image, long contentLength, String contentType, String fileName) {
+        try (InputStream inputStream = Files.newInputStream(image)) {
+            return saveImage(productToUpdate, inputStream, image, contentLength, contentType, fileName);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param stagedImage the file the input stream reads, if the image is already staged on the local filesystem
+     */
+    private ProductOperations saveImage(ProductOperations productToUpdate, InputStream inputStream, Path stagedImage, long contentLength, String contentType, String fileName) {
         try {
             validate(contentType, fileName);
         } catch (Exception e) {
             throw new FileValidationException(e.getMessage(), e);
         }
 
+        // the header is read once and replayed, so the content is validated in the same pass that stores it
+        BufferedInputStream imageStream = new BufferedInputStream(inputStream, ImageSniffer.HEADER_SIZE);
+        Optional<ImageInfo> imageInfo;
+        try {
+            imageInfo = ImageSniffer.sniff(peekHeader(imageStream));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            validateContent(imageInfo, contentType, contentLength);
+        } catch (Exception e) {
+            throw new FileValidationException(e.getMessage(), e);
+        }
+
         String fileExtension = StringUtils.getFilenameExtension(fileName);
+        String baseName = StringUtils.stripFilenameExtension(getFileName(productToUpdate.getId(), fileExtension));
         try {
-            String savedUrl = fileStorageConnector.uploadProductImg(inputStream, getFileName(productToUpdate.getId(), fileExtension), contentType).toString();
-            setImageUrl(productToUpdate, savedUrl);
-            productConnector.save(productToUpdate);
+            String imageUrl;
+            Map<Integer, String> renditionUrls = null;
+            if (imageInfo.get().getFormat() == ImageFormat.SVG) {
+                byte[] image = sanitizeSvg(readImage(imageStream, contentLength));
+                String hashedFileName = String.format(CONTENT_ADDRESSED_FILE_NAME_TEMPLATE,
+                        baseName, toHex(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(image)), fileExtension);
+                imageUrl = storeIfAbsent(image, hashedFileName, contentType).toString();
+            } else {
+                // raster images are hashed while they are staged, so they are never held in memory;
+                // an image already staged is hashed in place rather than copied again
+                Path staged = stagedImage != null ? stagedImage : Files.createTempFile(STAGING_FILE_PREFIX, STAGING_FILE_SUFFIX);
+                try {
+                    MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+                    try (OutputStream out = stagedImage != null ? OutputStream.nullOutputStream() : Files.newOutputStream(staged)) {
+                        copy(new DigestInputStream(imageStream, digest), contentLength, out);
+                    }
+                    String hashedFileName = String.format(CONTENT_ADDRESSED_FILE_NAME_TEMPLATE,
+                            baseName, toHex(digest.digest()), fileExtension);
+                    imageUrl = storeIfAbsent(staged, contentLength, hashedFileName, contentType).toString();
+                    if (isRenditionEnabled(contentType)) {
+                        renditionUrls = saveRenditions(staged, contentType, hashedFileName, fileExtension);
+                    }
+                } finally {
+                    if (stagedImage == null) {
+                        deleteQuietly(staged);
+                    }
+                }
+            }
+            // only the image fields are written, so a concurrent update of the other fields is not reverted
+            return updateImage(productConnector, productToUpdate.getId(), imageUrl, renditionUrls);
 
-        } catch (FileUploadException | MalformedURLException e) {
+        } catch (FileUploadException | IOException | NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public void validateUpload(String contentType, String fileName, long contentLength) {
+        try {
+            validate(contentType, fileName);
+            validateSize(contentLength);
+        } catch (Exception e) {
+            throw new FileValidationException(e.getMessage(), e);
+        }
+    }
+
+    private boolean isRenditionEnabled(String contentType) {
+        Set<Integer> renditionWidths = getRenditionWidths();
+        return renditionWidths != null && !renditionWidths.isEmpty()
+                && ImageRenditions.isSupported(contentType);
+    }
+
+    private static byte[] peekHeader(BufferedInputStream imageStream) throws IOException {
+        imageStream.mark(ImageSniffer.HEADER_SIZE);
+        byte[] header = imageStream.readNBytes(ImageSniffer.HEADER_SIZE);
+        imageStream.reset();
+        return header;
+    }
+
+    private static byte[] readImage(InputStream inputStream, long contentLength) throws IOException {
+        byte[] image = inputStream.readNBytes((int) contentLength);
+        if (image.length < contentLength) {
+            throw new EOFException(String.format("Expected %d bytes, stream ended after %d", contentLength, image.length));
+        }
+        return image;
+    }
+
+    private static void copy(InputStream inputStream, long contentLength, OutputStream out) throws IOException {
+        byte[] buffer = new byte[STAGING_BUFFER_SIZE];
+        long remaining = contentLength;
+        while (remaining > 0) {
+            int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException(String.format("Expected %d bytes, stream ended after %d", contentLength, contentLength - remaining));
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Unable to delete staged image {}: {}", path, e.toString());
+        }
+    }
+
+    private static byte[] sanitizeSvg(byte[] image) {
+        try {
+            byte[] sanitized = SvgSanitizer.sanitize(image);
+            log.debug("sanitizeSvg {} bytes sanitized to {}", image.length, sanitized.length);
+            return sanitized;
+        } catch (XMLStreamException e) {
+            throw new FileValidationException(String.format("Invalid SVG image: %s", e.getMessage()), e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        return String.format("%0" + (hash.length * 2) + "x", new BigInteger(1, hash));
+    }
+
+    /**
+     * File names are derived from the image content, so an existing file already holds the very same bytes
+     * and the upload can be skipped.
+     * Text based images are stored gzip encoded, when that makes them materially smaller.
+     */
+    private URL storeIfAbsent(byte[] image, String fileName, String contentType) throws IOException {
+        Optional<URL> storedUrl = fileStorageConnector.findProductImg(fileName);
+        if (storedUrl.isPresent()) {
+            log.debug("storeIfAbsent {} already stored", fileName);
+            return storedUrl.get();
+        }
+        byte[] gzipped = gzip(image);
+        if (gzipped.length <= image.length * (1 - MIN_GZIP_SAVING)) {
+            log.debug("storeIfAbsent {} gzip encoded from {} to {} bytes", fileName, image.length, gzipped.length);
+            return fileStorageConnector.uploadProductImg(new ByteArrayInputStream(gzipped), gzipped.length, fileName, contentType, GZIP_ENCODING);
+        }
+        return fileStorageConnector.uploadProductImg(new ByteArrayInputStream(image), image.length, fileName, contentType);
+    }
+
+    private URL storeIfAbsent(Path staged, long contentLength, String fileName, String contentType) throws IOException {
+        Optional<URL> storedUrl = fileStorageConnector.findProductImg(fileName);
+        if (storedUrl.isPresent()) {
+            log.debug("storeIfAbsent {} already stored", fileName);
+            return storedUrl.get();
+        }
+        try (InputStream image = Files.newInputStream(staged)) {
+            return fileStorageConnector.uploadProductImg(image, contentLength, fileName, contentType);
+        }
+    }
+
+    private static byte[] gzip(byte[] image) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(image.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(image);
+        }
+        return gzipped.toByteArray();
+    }
+
+    /**
+     * Renditions are best-effort: an image ImageIO cannot decode is still stored, only without renditions.
+     */
+    private Map<Integer, String> saveRenditions(Path staged, String contentType, String storedFileName, String fileExtension) throws MalformedURLException {
+        log.trace("saveRenditions start");
+        log.debug("saveRenditions contentType = {}, storedFileName = {}", contentType, storedFileName);
+        Map<Integer, String> renditionUrls = new TreeMap<>();
+        Set<Integer> missingWidths = new TreeSet<>();
+        String baseName = StringUtils.stripFilenameExtension(storedFileName);
+        for (Integer width : getRenditionWidths()) {
+            Optional<URL> storedUrl = fileStorageConnector.findProductImg(String.format(RENDITION_FILE_NAME_TEMPLATE, baseName, width, fileExtension));
+            if (storedUrl.isPresent()) {
+                renditionUrls.put(width, storedUrl.get().toString());
+            } else {
+                missingWidths.add(width);
+            }
+        }
+        SortedMap<Integer, byte[]> renditions = Collections.emptySortedMap();
+        if (!missingWidths.isEmpty()) {
+            try (InputStream image = Files.newInputStream(staged)) {
+                renditions = ImageRenditions.render(image, contentType, missingWidths);
+            } catch (IOException e) {
+                log.warn("Unable to render {}: {}", storedFileName, e.toString());
+            }
+        }
+        for (Map.Entry<Integer, byte[]> rendition : renditions.entrySet()) {
+            String renditionFileName = String.format(RENDITION_FILE_NAME_TEMPLATE, baseName, rendition.getKey(), fileExtension);
+            URL url = fileStorageConnector.uploadProductImg(new ByteArrayInputStream(rendition.getValue()), rendition.getValue().length, renditionFileName, contentType);
+            renditionUrls.put(rendition.getKey(), url.toString());
+        }
+        log.debug("saveRenditions result = {}", renditionUrls);
+        log.trace("saveRenditions end");
+        return renditionUrls.isEmpty() ? null : renditionUrls;
+    }
+
     private void validate(String contentType, String fileName) {
         log.trace("validate start");
         log.debug("validate contentType = {}, fileName = {}", contentType, fileName);
@@ -65,12 +309,52 @@ public abstract class ProductImageServiceTemplate implements ProductImageService
         log.trace("validate end");
     }
 
+    private void validateContent(Optional<ImageInfo> imageInfo, String contentType, long contentLength) {
+        log.trace("validateContent start");
+        log.debug("validateContent imageInfo = {}, contentType = {}, contentLength = {}", imageInfo, contentType, contentLength);
+        validateSize(contentLength);
+        ImageFormat format = imageInfo.map(ImageInfo::getFormat)
+                .orElseThrow(() -> new IllegalArgumentException("Unrecognized image content"));
+        if (!format.getMimeType().equals(contentType)) {
+            throw new IllegalArgumentException(String.format("Image content is %s, not %s", format.getMimeType(), contentType));
+        }
+        if (format == ImageFormat.SVG && contentLength > MAX_BUFFERED_IMAGE_SIZE) {
+            throw new IllegalArgumentException(String.format("SVG images cannot exceed %d bytes", MAX_BUFFERED_IMAGE_SIZE));
+        }
+        if (format.isRaster()) {
+            int width = imageInfo.get().getWidth();
+            int height = imageInfo.get().getHeight();
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Unable to read the image dimensions");
+            }
+            if ((getMaxWidth() > 0 && width > getMaxWidth()) || (getMaxHeight() > 0 && height > getMaxHeight())) {
+                throw new IllegalArgumentException(String.format("Image dimensions %dx%d exceed the maximum of %dx%d", width, height, getMaxWidth(), getMaxHeight()));
+            }
+        }
+        log.trace("validateContent end");
+    }
+
+    private void validateSize(long contentLength) {
+        DataSize maxSize = getMaxSize();
+        if (maxSize != null && contentLength > maxSize.toBytes()) {
+            throw new IllegalArgumentException(String.format("Image size %d exceeds the maximum of %d bytes", contentLength, maxSize.toBytes()));
+        }
+    }
+
     protected abstract Set<String> getAllowedMimeTypes();
 
     protected abstract Set<String> getAllowedExtensions();
 
     protected abstract String getFileName(String id, String fileExtension);
 
-    protected abstract void setImageUrl(ProductOperations productToUpdate, String url);
+    protected abstract Set<Integer> getRenditionWidths();
+
+    protected abstract DataSize getMaxSize();
+
+    protected abstract int getMaxWidth();
+
+    protected abstract int getMaxHeight();
+
+    protected abstract ProductOperations updateImage(ProductConnector productConnector, String id, String url, Map<Integer, String> renditionUrls);
 
 }
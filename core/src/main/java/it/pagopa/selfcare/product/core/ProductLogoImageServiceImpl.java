@@ -8,7 +8,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -20,6 +22,10 @@ public class ProductLogoImageServiceImpl extends ProductImageServiceTemplate {
     private final Set<String> allowedProductLogoMimeTypes;
     private final Set<String> allowedProductLogoExtensions;
     private final String defaultLogoUrl;
+    private final Set<Integer> productLogoRenditionWidths;
+    private final DataSize productLogoMaxSize;
+    private final int productLogoMaxWidth;
+    private final int productLogoMaxHeight;
 
     @Autowired
     public ProductLogoImageServiceImpl(FileStorageConnector fileStorageConnector,
@@ -29,6 +35,10 @@ public class ProductLogoImageServiceImpl extends ProductImageServiceTemplate {
         this.allowedProductLogoMimeTypes = logoImageProperties.getAllowedMimeTypes();
         this.allowedProductLogoExtensions = logoImageProperties.getAllowedExtensions();
         this.defaultLogoUrl = logoImageProperties.getDefaultUrl();
+        this.productLogoRenditionWidths = logoImageProperties.getRenditionWidths();
+        this.productLogoMaxSize = logoImageProperties.getMaxSize();
+        this.productLogoMaxWidth = logoImageProperties.getMaxWidth();
+        this.productLogoMaxHeight = logoImageProperties.getMaxHeight();
     }
 
     @Override
@@ -48,8 +58,28 @@ public class ProductLogoImageServiceImpl extends ProductImageServiceTemplate {
     }
 
     @Override
-    protected void setImageUrl(ProductOperations productToUpdate, String url) {
-        productToUpdate.setLogo(url);
+    protected Set<Integer> getRenditionWidths() {
+        return productLogoRenditionWidths;
+    }
+
+    @Override
+    protected DataSize getMaxSize() {
+        return productLogoMaxSize;
+    }
+
+    @Override
+    protected int getMaxWidth() {
+        return productLogoMaxWidth;
+    }
+
+    @Override
+    protected int getMaxHeight() {
+        return productLogoMaxHeight;
+    }
+
+    @Override
+    protected ProductOperations updateImage(ProductConnector productConnector, String id, String url, Map<Integer, String> renditionUrls) {
+        return productConnector.updateLogo(id, url, renditionUrls);
     }
 
     @Override
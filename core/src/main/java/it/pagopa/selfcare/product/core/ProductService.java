@@ -1,29 +1,79 @@
 package it.pagopa.selfcare.product.core;
 
 import it.pagopa.selfcare.commons.base.utils.InstitutionType;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductService {
 
     List<ProductOperations> getProducts(boolean rootOnly);
 
+    List<ProductTree> getProductsTree();
+
+    CatalogVersion getCatalogVersion();
+
+    /**
+     * The products modified within the configured overlap before the given instant are returned again, as a write can be
+     * committed after a later one was already read: the callers must dedupe them by id, keeping the latest modifiedAt.
+     *
+     * @return the products created or modified after the given instant, including the ones that have been disabled
+     */
+    List<ProductOperations> getProductsModifiedAfter(Instant since);
+
     ProductOperations createProduct(ProductOperations product);
 
     void deleteProduct(String id);
 
     ProductOperations getProduct(String id, InstitutionType institutionType);
 
+    /**
+     * @param fields the product properties to read, besides its id and status, or {@code null} to read all of them
+     */
+    ProductOperations getProduct(String id, InstitutionType institutionType, Collection<String> fields);
+
+    List<ProductOperations> getProductsById(List<String> ids, InstitutionType institutionType);
+
+    /**
+     * @param fields the product properties to read, besides their id and status, or {@code null} to read all of them
+     */
+    List<ProductOperations> getProductsById(List<String> ids, InstitutionType institutionType, Collection<String> fields);
+
+    /**
+     * @return the product with only its role mappings, status, version and creation date read
+     */
+    ProductOperations getProductRoleMappings(String id);
+
+    /**
+     * @return the product with only its contract templates, status, version and creation date read,
+     * the contract template of the given institution type taking the place of the default one
+     */
+    ProductOperations getProductContractTemplate(String id, InstitutionType institutionType);
+
     ProductOperations getProductIsValid(String id);
 
     ProductOperations updateProduct(String id, ProductOperations product);
 
     void updateProductStatus(String id, ProductStatus status);
 
-    void saveProductLogo(String logoId, InputStream logo, String contentType, String fileName);
+    void saveProductLogo(String logoId, InputStream logo, long contentLength, String contentType, String fileName);
+
+    void saveProductDepictImage(String id, InputStream depictImage, long contentLength, String contentType, String fileName);
+
+    /**
+     * Saves a logo already staged on the local filesystem, without copying it again
+     */
+    void saveProductLogo(String id, Path logo, long contentLength, String contentType, String fileName);
 
-    void saveProductDepictImage(String id, InputStream depictImage, String contentType, String fileName);
+    /**
+     * Saves a depict image already staged on the local filesystem, without copying it again
+     */
+    void saveProductDepictImage(String id, Path depictImage, long contentLength, String contentType, String fileName);
 }
@@ -4,22 +4,31 @@ import it.pagopa.selfcare.commons.base.utils.InstitutionType;
 import it.pagopa.selfcare.product.connector.api.ProductConnector;
 import it.pagopa.selfcare.product.connector.exception.ResourceAlreadyExistsException;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
 import it.pagopa.selfcare.product.connector.model.PartyRole;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductRoleInfoOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
 import it.pagopa.selfcare.product.core.exception.InvalidRoleMappingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 import javax.validation.ValidationException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.EnumMap;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -28,19 +37,28 @@ class ProductServiceImpl implements ProductService {
     protected static final String REQUIRED_PRODUCT_ID_MESSAGE = "A product id is required";
     protected static final String REQUIRED_PRODUCT_STATUS_MESSAGE = "A product status is required";
     protected static final String REQUIRED_INSTITUTION_TYPE = "An institutionType is required";
+    private static final String CONTRACT_TEMPLATE_PATH_FIELD = "contractTemplatePath";
+    private static final String CONTRACT_TEMPLATE_VERSION_FIELD = "contractTemplateVersion";
+    private static final String INSTITUTION_CONTRACT_MAPPINGS_FIELD = "institutionContractMappings";
 
 
     private final ProductConnector productConnector;
     private final ProductImageService productLogoImageService;
     private final ProductImageService productDepictImageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration changesOverlap;
 
     @Autowired
     public ProductServiceImpl(ProductConnector productConnector,
                               @Qualifier("productLogoImageService") ProductImageService productLogoImageService,
-                              @Qualifier("productDepictImageService") ProductImageService productDepictImageService) {
+                              @Qualifier("productDepictImageService") ProductImageService productDepictImageService,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${product.changes.overlap}") Duration changesOverlap) {
         this.productConnector = productConnector;
         this.productLogoImageService = productLogoImageService;
         this.productDepictImageService = productDepictImageService;
+        this.eventPublisher = eventPublisher;
+        this.changesOverlap = changesOverlap;
     }
 
     @Override
@@ -55,6 +73,37 @@ class ProductServiceImpl implements ProductService {
         return products;
     }
 
+    @Override
+    public List<ProductTree> getProductsTree() {
+        log.trace("getProductsTree start");
+        List<ProductTree> productsTree = productConnector.findProductTree();
+        log.debug("getProductsTree result = {}", productsTree);
+        log.trace("getProductsTree end");
+        return productsTree;
+    }
+
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        log.trace("getCatalogVersion start");
+        CatalogVersion catalogVersion = productConnector.getCatalogVersion();
+        log.debug("getCatalogVersion result = {}", catalogVersion);
+        log.trace("getCatalogVersion end");
+        return catalogVersion;
+    }
+
+
+    @Override
+    public List<ProductOperations> getProductsModifiedAfter(Instant since) {
+        log.trace("getProductsModifiedAfter start");
+        log.debug("getProductsModifiedAfter since = {}", since);
+        Assert.notNull(since, "An instant is required");
+        // the dates are set by the application and by Mongo clocks, and a write is visible only once committed
+        List<ProductOperations> products = productConnector.findByModifiedAtAfter(since.minus(changesOverlap));
+        log.debug("getProductsModifiedAfter result = {}", products);
+        log.trace("getProductsModifiedAfter end");
+        return products;
+    }
+
     @Override
     public ProductOperations createProduct(ProductOperations product) {
         log.trace("createProduct start");
@@ -79,6 +128,7 @@ class ProductServiceImpl implements ProductService {
                 throw new ResourceAlreadyExistsException(String.format("Product %s already exists and is still active", product.getId()), e);
             }
         }
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.CREATE, product.getId(), insert));
         log.debug("createProduct result = {}", insert);
         log.trace("createProduct end");
         return insert;
@@ -106,40 +156,126 @@ class ProductServiceImpl implements ProductService {
         log.debug("deleteProduct id = {}", id);
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
         productConnector.disableById(id);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.DELETE, id, null));
         log.trace("deleteProduct end");
     }
 
 
     @Override
     public ProductOperations getProduct(String id, InstitutionType institutionType) {
+        return getProduct(id, institutionType, null);
+    }
+
+
+    @Override
+    public ProductOperations getProduct(String id, InstitutionType institutionType, Collection<String> fields) {
         log.trace("getProduct start");
-        log.debug("getProduct id = {}", id);
+        log.debug("getProduct id = {}, institutionType = {}, fields = {}", id, institutionType, fields);
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
-        ProductOperations foundProduct = productConnector.findById(id).orElseThrow(ResourceNotFoundException::new);
+        ProductOperations foundProduct = (fields == null
+                ? productConnector.findById(id)
+                : productConnector.findById(id, toProjection(fields, institutionType)))
+                .orElseThrow(ResourceNotFoundException::new);
         if (foundProduct.getStatus() == ProductStatus.INACTIVE) {
             throw new ResourceNotFoundException();
         }
-        if (institutionType != null && foundProduct.getInstitutionContractMappings() != null && foundProduct.getInstitutionContractMappings().containsKey(institutionType)) {
-            foundProduct.setContractTemplatePath(foundProduct.getInstitutionContractMappings().get(institutionType).getContractTemplatePath());
-            foundProduct.setContractTemplateVersion(foundProduct.getInstitutionContractMappings().get(institutionType).getContractTemplateVersion());
-        }
+        resolveContractTemplate(foundProduct, institutionType);
         log.debug("getProduct result = {}", foundProduct);
         log.trace("getProduct end");
         return foundProduct;
     }
 
+
+    @Override
+    public List<ProductOperations> getProductsById(List<String> ids, InstitutionType institutionType) {
+        return getProductsById(ids, institutionType, null);
+    }
+
+
+    @Override
+    public List<ProductOperations> getProductsById(List<String> ids, InstitutionType institutionType, Collection<String> fields) {
+        log.trace("getProductsById start");
+        log.debug("getProductsById ids = {}, institutionType = {}, fields = {}", ids, institutionType, fields);
+        Assert.notEmpty(ids, "At least a product id is required");
+        Map<String, ProductOperations> foundProducts = (fields == null
+                ? productConnector.findAllById(new LinkedHashSet<>(ids))
+                : productConnector.findAllById(new LinkedHashSet<>(ids), toProjection(fields, institutionType))).stream()
+                .filter(product -> product.getStatus() != ProductStatus.INACTIVE)
+                .collect(Collectors.toMap(ProductOperations::getId, Function.identity()));
+        List<ProductOperations> products = ids.stream()
+                .distinct()
+                .map(foundProducts::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        products.forEach(product -> resolveContractTemplate(product, institutionType));
+        log.debug("getProductsById result = {}", products);
+        log.trace("getProductsById end");
+        return products;
+    }
+
+
+    /**
+     * @return the given fields, plus the contract mappings when the contract template of an institutionType has to be resolved
+     */
+    private static Set<String> toProjection(Collection<String> fields, InstitutionType institutionType) {
+        Set<String> projection = new LinkedHashSet<>(fields);
+        if (institutionType != null
+                && (fields.contains(CONTRACT_TEMPLATE_PATH_FIELD) || fields.contains(CONTRACT_TEMPLATE_VERSION_FIELD))) {
+            projection.add(INSTITUTION_CONTRACT_MAPPINGS_FIELD);
+        }
+        return projection;
+    }
+
+
+    private static void resolveContractTemplate(ProductOperations product, InstitutionType institutionType) {
+        if (institutionType != null && product.getInstitutionContractMappings() != null && product.getInstitutionContractMappings().containsKey(institutionType)) {
+            product.setContractTemplatePath(product.getInstitutionContractMappings().get(institutionType).getContractTemplatePath());
+            product.setContractTemplateVersion(product.getInstitutionContractMappings().get(institutionType).getContractTemplateVersion());
+        }
+    }
+
+
+    @Override
+    public ProductOperations getProductRoleMappings(String id) {
+        log.trace("getProductRoleMappings start");
+        log.debug("getProductRoleMappings id = {}", id);
+        Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
+        ProductOperations foundProduct = productConnector.findRoleMappingsById(id)
+                .filter(product -> product.getStatus() != ProductStatus.INACTIVE)
+                .orElseThrow(ResourceNotFoundException::new);
+        log.debug("getProductRoleMappings result = {}", foundProduct.getRoleMappings());
+        log.trace("getProductRoleMappings end");
+        return foundProduct;
+    }
+
+
+    @Override
+    public ProductOperations getProductContractTemplate(String id, InstitutionType institutionType) {
+        log.trace("getProductContractTemplate start");
+        log.debug("getProductContractTemplate id = {}, institutionType = {}", id, institutionType);
+        Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
+        ProductOperations foundProduct = productConnector.findContractTemplatesById(id, institutionType)
+                .filter(product -> product.getStatus() != ProductStatus.INACTIVE)
+                .orElseThrow(ResourceNotFoundException::new);
+        resolveContractTemplate(foundProduct, institutionType);
+        log.debug("getProductContractTemplate result = {}", foundProduct);
+        log.trace("getProductContractTemplate end");
+        return foundProduct;
+    }
+
     public ProductOperations getProductIsValid(String id) {
         log.trace("getProduct start");
         log.debug("getProduct id = {}", id);
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
-        ProductOperations foundProduct = productConnector.findById(id).orElseThrow(ResourceNotFoundException::new);
-        ProductOperations baseProduct = null;
+        ProductOperations foundProduct = productConnector.findByIdWithParent(id).orElseThrow(ResourceNotFoundException::new);
+        ProductOperations baseProduct = foundProduct.getProductOperations();
         if (foundProduct.getParentId() != null) {
-            baseProduct = productConnector.findById(foundProduct.getParentId()).orElseThrow(ResourceNotFoundException::new);
+            if (baseProduct == null) {
+                throw new ResourceNotFoundException();
+            }
             if (baseProduct.getStatus() == ProductStatus.PHASE_OUT) {
                 return null;
             } else if  (foundProduct.getStatus() != ProductStatus.PHASE_OUT){
-                foundProduct.setProductOperations(baseProduct);
                 return foundProduct;
             }
         } else if (foundProduct.getStatus() != ProductStatus.PHASE_OUT) {
@@ -159,35 +295,15 @@ class ProductServiceImpl implements ProductService {
         log.debug("updateProduct id = {}, product = {}", id, product);
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
         Assert.notNull(product, "A product is required");
-        ProductOperations foundProduct = productConnector.findById(id).orElseThrow(ResourceNotFoundException::new);
-        if (foundProduct.getStatus() == ProductStatus.INACTIVE) {
-            throw new ResourceNotFoundException();
-        }
-        if (foundProduct.getParentId() == null) {
+        if (product.getRoleMappings() != null) {
             validateRoleMappings(product.getRoleMappings());
         }
-        foundProduct.setTitle(product.getTitle());
-        foundProduct.setDescription(product.getDescription());
-        foundProduct.setLogoBgColor(product.getLogoBgColor());
-        foundProduct.setUrlPublic(product.getUrlPublic());
-        foundProduct.setUrlBO(product.getUrlBO());
-        foundProduct.setRoleMappings(product.getRoleMappings());
-        foundProduct.setIdentityTokenAudience(product.getIdentityTokenAudience());
-        foundProduct.setBackOfficeEnvironmentConfigurations(product.getBackOfficeEnvironmentConfigurations());
-        foundProduct.setContractTemplatePath(product.getContractTemplatePath());
-        if (!product.getContractTemplateVersion().equals(foundProduct.getContractTemplateVersion())) {
-            foundProduct.setContractTemplateUpdatedAt(Instant.now());
-        }
-        foundProduct.setContractTemplateVersion(product.getContractTemplateVersion());
-        foundProduct.getInstitutionContractMappings().forEach((key, value) -> {
-            value.setContractTemplatePath(product.getInstitutionContractMappings().get(key).getContractTemplatePath());
-            if (!value.getContractTemplateVersion().equals(product.getInstitutionContractMappings().get(key).getContractTemplateVersion())) {
-                value.setContractTemplateUpdatedAt(Instant.now());
-                value.setContractTemplateVersion(product.getInstitutionContractMappings().get(key).getContractTemplateVersion());
-            }
-        });
+        // the stored product is not read beforehand: the connector checks its status and version
+        // and moves the contract templates updatedAt forward in the same round-trip
+        product.setId(id);
 
-        ProductOperations updatedProduct = productConnector.save(foundProduct);
+        ProductOperations updatedProduct = productConnector.updateProduct(product);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.UPDATE, id, updatedProduct));
         log.debug("updateProduct result = {}", updatedProduct);
         log.trace("updateProduct end");
         return updatedProduct;
@@ -200,25 +316,49 @@ class ProductServiceImpl implements ProductService {
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
         Assert.notNull(status, REQUIRED_PRODUCT_STATUS_MESSAGE);
         productConnector.updateProductStatus(id, status);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.STATUS_CHANGE, id, null));
         log.trace("updateProductStatus end");
     }
 
     @Override
-    public void saveProductLogo(String id, InputStream logo, String contentType, String fileName) {
+    public void saveProductLogo(String id, InputStream logo, long contentLength, String contentType, String fileName) {
+        log.trace("saveProductLogo start");
+        log.debug("saveProductLogo id = {}, logo = {}, contentLength = {}, contentType = {}, fileName = {}", id, logo, contentLength, contentType, fileName);
+        ProductOperations productToUpdate = getProduct(id, null);
+        ProductOperations updatedProduct = productLogoImageService.saveImage(productToUpdate, logo, contentLength, contentType, fileName);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.UPDATE, id, updatedProduct));
+        log.trace("saveProductLogo end");
+    }
+
+    @Override
+    public void saveProductDepictImage(String id, InputStream depictImage, long contentLength, String contentType, String fileName) {
+        log.trace("saveProductDepictImage start");
+        log.debug("saveProductDepictImage id = {}, logo = {}, contentLength = {}, contentType = {}, fileName = {}", id, depictImage, contentLength, contentType, fileName);
+        Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
+        ProductOperations productToUpdate = getProduct(id, null);
+        ProductOperations updatedProduct = productDepictImageService.saveImage(productToUpdate, depictImage, contentLength, contentType, fileName);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.UPDATE, id, updatedProduct));
+        log.trace("saveProductDepictImage end");
+    }
+
+    @Override
+    public void saveProductLogo(String id, Path logo, long contentLength, String contentType, String fileName) {
         log.trace("saveProductLogo start");
-        log.debug("saveProductLogo id = {}, logo = {}, contentType = {}, fileName = {}", id, logo, contentType, fileName);
+        log.debug("saveProductLogo id = {}, logo = {}, contentLength = {}, contentType = {}, fileName = {}", id, logo, contentLength, contentType, fileName);
         ProductOperations productToUpdate = getProduct(id, null);
-        productLogoImageService.saveImage(productToUpdate, logo, contentType, fileName);
+        ProductOperations updatedProduct = productLogoImageService.saveImage(productToUpdate, logo, contentLength, contentType, fileName);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.UPDATE, id, updatedProduct));
         log.trace("saveProductLogo end");
     }
 
     @Override
-    public void saveProductDepictImage(String id, InputStream depictImage, String contentType, String fileName) {
+    public void saveProductDepictImage(String id, Path depictImage, long contentLength, String contentType, String fileName) {
         log.trace("saveProductDepictImage start");
-        log.debug("saveProductDepictImage id = {}, logo = {}, contentType = {}, fileName = {}", id, depictImage, contentType, fileName);
+        log.debug("saveProductDepictImage id = {}, depictImage = {}, contentLength = {}, contentType = {}, fileName = {}", id, depictImage, contentLength, contentType, fileName);
         Assert.hasText(id, REQUIRED_PRODUCT_ID_MESSAGE);
         ProductOperations productToUpdate = getProduct(id, null);
-        productDepictImageService.saveImage(productToUpdate, depictImage, contentType, fileName);
+        ProductOperations updatedProduct = productDepictImageService.saveImage(productToUpdate, depictImage, contentLength, contentType, fileName);
+        eventPublisher.publishEvent(new ProductChangeEvent(ProductChangeType.UPDATE, id, updatedProduct));
         log.trace("saveProductDepictImage end");
     }
 
@@ -5,7 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 
 @Configuration
-@EnableConfigurationProperties({LogoImageProperties.class, DepictImageProperties.class})
+@EnableConfigurationProperties({LogoImageProperties.class, DepictImageProperties.class, ImageUploadProperties.class})
 @PropertySource("classpath:config/core-config.properties")
 class CoreConfig {
 }
@@ -3,6 +3,7 @@ package it.pagopa.selfcare.product.core.config;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.util.Set;
 
@@ -13,4 +14,8 @@ public class DepictImageProperties implements ImageProperties {
     private Set<String> allowedMimeTypes;
     private Set<String> allowedExtensions;
     private String defaultUrl;
+    private Set<Integer> renditionWidths;
+    private DataSize maxSize;
+    private int maxWidth;
+    private int maxHeight;
 }
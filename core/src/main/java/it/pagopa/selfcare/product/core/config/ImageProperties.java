@@ -1,5 +1,7 @@
 package it.pagopa.selfcare.product.core.config;
 
+import org.springframework.util.unit.DataSize;
+
 import java.util.Set;
 
 public interface ImageProperties {
@@ -10,4 +12,24 @@ public interface ImageProperties {
 
     String getDefaultUrl();
 
+    /**
+     * @return the widths, in pixels, of the downscaled renditions generated for raster images
+     */
+    Set<Integer> getRenditionWidths();
+
+    /**
+     * @return the maximum size of the images, {@code null} for no limit
+     */
+    DataSize getMaxSize();
+
+    /**
+     * @return the maximum width, in pixels, of raster images, 0 for no limit
+     */
+    int getMaxWidth();
+
+    /**
+     * @return the maximum height, in pixels, of raster images, 0 for no limit
+     */
+    int getMaxHeight();
+
 }
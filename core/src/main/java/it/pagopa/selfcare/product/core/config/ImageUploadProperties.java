@@ -0,0 +1,14 @@
+package it.pagopa.selfcare.product.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@ConfigurationProperties(prefix = "product.img.upload")
+@Data
+public class ImageUploadProperties {
+    private Path stagingDir;
+    private int threads;
+    private int maxPending;
+}
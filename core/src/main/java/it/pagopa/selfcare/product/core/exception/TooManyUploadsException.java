@@ -0,0 +1,9 @@
+package it.pagopa.selfcare.product.core.exception;
+
+public class TooManyUploadsException extends RuntimeException {
+
+    public TooManyUploadsException(String message) {
+        super(message);
+    }
+
+}
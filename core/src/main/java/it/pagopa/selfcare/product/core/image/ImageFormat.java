@@ -0,0 +1,34 @@
+package it.pagopa.selfcare.product.core.image;
+
+/**
+ * The image formats recognized from their content, regardless of the declared content type.
+ */
+public enum ImageFormat {
+
+    PNG("image/png", true),
+    JPEG("image/jpeg", true),
+    SVG("image/svg+xml", false);
+
+    private final String mimeType;
+    private final boolean raster;
+
+
+    ImageFormat(String mimeType, boolean raster) {
+        this.mimeType = mimeType;
+        this.raster = raster;
+    }
+
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+
+    /**
+     * @return {@code true} if the images of this format have intrinsic pixel dimensions
+     */
+    public boolean isRaster() {
+        return raster;
+    }
+
+}
@@ -0,0 +1,16 @@
+package it.pagopa.selfcare.product.core.image;
+
+import lombok.Value;
+
+/**
+ * What can be told about an image from its first bytes.
+ * Width and height are {@code 0} when they are not stated in the header, as for SVG images.
+ */
+@Value
+public class ImageInfo {
+
+    ImageFormat format;
+    int width;
+    int height;
+
+}
@@ -0,0 +1,116 @@
+package it.pagopa.selfcare.product.core.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Produces downscaled renditions of raster images using only the JDK ImageIO and Java2D APIs.
+ */
+public final class ImageRenditions {
+
+    private ImageRenditions() {
+    }
+
+
+    /**
+     * @return {@code true} if ImageIO can both decode and encode images of the given content type
+     */
+    public static boolean isSupported(String contentType) {
+        return contentType != null
+                && ImageIO.getImageReadersByMIMEType(contentType).hasNext()
+                && ImageIO.getImageWritersByMIMEType(contentType).hasNext();
+    }
+
+
+    /**
+     * Renders the image at each of the given widths, keeping its aspect ratio.
+     * Widths not smaller than the one of the source image are skipped, images are never upscaled.
+     *
+     * @return the encoded renditions by width, empty if the image cannot be decoded
+     */
+    public static SortedMap<Integer, byte[]> render(byte[] image, String contentType, Collection<Integer> widths) throws IOException {
+        return render(new ByteArrayInputStream(image), contentType, widths);
+    }
+
+
+    /**
+     * Same as {@link #render(byte[], String, Collection)}, decoding the image straight from the given stream,
+     * which is left open.
+     */
+    public static SortedMap<Integer, byte[]> render(InputStream image, String contentType, Collection<Integer> widths) throws IOException {
+        final SortedMap<Integer, byte[]> renditions = new TreeMap<>();
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(contentType);
+        if (!writers.hasNext()) {
+            return renditions;
+        }
+        final BufferedImage source = ImageIO.read(image);
+        if (source == null) {
+            return renditions;
+        }
+        final int imageType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        final ImageWriter writer = writers.next();
+        try {
+            for (Integer width : new TreeSet<>(widths)) {
+                if (width != null && width > 0 && width < source.getWidth()) {
+                    renditions.put(width, encode(writer, scale(source, width, imageType)));
+                }
+            }
+        } finally {
+            writer.dispose();
+        }
+        return renditions;
+    }
+
+
+    /**
+     * Halves the image until it gets to the target width: a single bilinear step from a much larger image
+     * skips most of the source pixels and gives a visibly aliased result.
+     */
+    static BufferedImage scale(BufferedImage source, int targetWidth, int imageType) {
+        final int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            final BufferedImage next = new BufferedImage(width, height, imageType);
+            final Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+
+    private static byte[] encode(ImageWriter writer, BufferedImage image) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(image);
+        } finally {
+            writer.reset();
+        }
+        return out.toByteArray();
+    }
+
+}
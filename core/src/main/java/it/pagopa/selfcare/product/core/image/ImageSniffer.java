@@ -0,0 +1,132 @@
+package it.pagopa.selfcare.product.core.image;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Recognizes PNG, JPEG and SVG images from their signature and reads the dimensions of raster images from their
+ * headers, without decoding any pixel data.
+ */
+public final class ImageSniffer {
+
+    /**
+     * Bytes enough to reach the JPEG frame header past the usual EXIF and ICC profile segments
+     */
+    public static final int HEADER_SIZE = 64 * 1024;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] PNG_IHDR = {'I', 'H', 'D', 'R'};
+    private static final int PNG_IHDR_OFFSET = 12;
+    private static final String SVG_ROOT_ELEMENT = "<svg";
+    private static final String UTF8_BOM = "\u00EF\u00BB\u00BF";
+
+    private ImageSniffer() {
+    }
+
+
+    /**
+     * @param header the first bytes of the image, up to {@link #HEADER_SIZE}
+     * @return the recognized image, empty if the content is not one of the {@link ImageFormat}s
+     */
+    public static Optional<ImageInfo> sniff(byte[] header) {
+        if (startsWith(header, 0, PNG_SIGNATURE)) {
+            return Optional.of(sniffPng(header));
+        }
+        if (header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return Optional.of(sniffJpeg(header));
+        }
+        if (isSvg(header)) {
+            return Optional.of(new ImageInfo(ImageFormat.SVG, 0, 0));
+        }
+        return Optional.empty();
+    }
+
+
+    private static ImageInfo sniffPng(byte[] header) {
+        // the IHDR chunk must come first, its type is followed by width (4) and height (4)
+        if (header.length >= PNG_IHDR_OFFSET + 12 && startsWith(header, PNG_IHDR_OFFSET, PNG_IHDR)) {
+            return new ImageInfo(ImageFormat.PNG, readInt(header, PNG_IHDR_OFFSET + 4), readInt(header, PNG_IHDR_OFFSET + 8));
+        }
+        return new ImageInfo(ImageFormat.PNG, 0, 0);
+    }
+
+
+    /**
+     * Walks the marker segments up to the first start of frame, whose header holds the image dimensions.
+     */
+    private static ImageInfo sniffJpeg(byte[] header) {
+        int offset = 2;
+        while (offset + 3 < header.length) {
+            if ((header[offset] & 0xFF) != 0xFF) {
+                break;
+            }
+            final int marker = header[offset + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // fill byte
+                offset++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // standalone markers, without a length
+                offset += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan, no frame header found
+                break;
+            }
+            final int length = readShort(header, offset + 2);
+            if (isStartOfFrame(marker)) {
+                if (offset + 9 <= header.length) {
+                    return new ImageInfo(ImageFormat.JPEG, readShort(header, offset + 7), readShort(header, offset + 5));
+                }
+                break;
+            }
+            if (length < 2) {
+                break;
+            }
+            offset += 2 + length;
+        }
+        return new ImageInfo(ImageFormat.JPEG, 0, 0);
+    }
+
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0-SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+
+    private static boolean isSvg(byte[] header) {
+        final String text = new String(header, StandardCharsets.ISO_8859_1);
+        int start = text.startsWith(UTF8_BOM) ? UTF8_BOM.length() : 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return text.startsWith("<", start) && text.contains(SVG_ROOT_ELEMENT);
+    }
+
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        if (bytes.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | bytes[offset + 1] & 0xFF;
+    }
+
+}
@@ -0,0 +1,194 @@
+package it.pagopa.selfcare.product.core.image;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites SVG images in a single StAX pass, keeping only what is needed to render them.
+ * <p>
+ * Scripts, event handler attributes, unsafe references, comments, processing instructions, metadata and
+ * elements or attributes of other namespaces (as the ones added by the editors) are dropped, whitespace is
+ * collapsed and only the namespaces still in use are declared.
+ * DTDs are not supported, so entity declarations can be used neither to expand nor to reach external resources.
+ */
+public final class SvgSanitizer {
+
+    private static final String SVG_NS = "http://www.w3.org/2000/svg";
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+    private static final String XLINK_PREFIX = "xlink";
+    private static final String XML_PREFIX = "xml";
+    private static final String ROOT_ELEMENT = "svg";
+    private static final String HREF_ATTRIBUTE = "href";
+    private static final String ANIMATED_ATTRIBUTE = "attributeName";
+    private static final Set<String> DROPPED_ELEMENTS = Set.of("script", "metadata", "foreignObject");
+    private static final Set<String> ANIMATION_ELEMENTS = Set.of("animate", "set");
+    /**
+     * Elements whose character content is rendered, where whitespace is collapsed but not dropped
+     */
+    private static final Set<String> TEXT_ELEMENTS = Set.of("text", "tspan", "textPath", "title", "desc", "style");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    private SvgSanitizer() {
+    }
+
+
+    /**
+     * @return the sanitized image, UTF-8 encoded
+     * @throws XMLStreamException if the image is not a well-formed SVG document
+     */
+    public static byte[] sanitize(byte[] svg) throws XMLStreamException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(svg.length);
+        final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(svg));
+        final XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+        try {
+            int depth = 0;
+            int skippedDepth = 0;
+            int textDepth = 0;
+            int xlinkDepth = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 1 && !(ROOT_ELEMENT.equals(reader.getLocalName()) && isSvgNamespace(reader.getNamespaceURI()))) {
+                            throw new XMLStreamException("The root element is not an SVG element", reader.getLocation());
+                        }
+                        if (skippedDepth > 0) {
+                            break;
+                        }
+                        if (isDropped(reader)) {
+                            skippedDepth = depth;
+                            break;
+                        }
+                        writer.writeStartElement("", reader.getLocalName(), SVG_NS);
+                        if (depth == 1) {
+                            writer.writeDefaultNamespace(SVG_NS);
+                        }
+                        if (writeAttributes(reader, writer, xlinkDepth == 0)) {
+                            xlinkDepth = depth;
+                        }
+                        if (textDepth == 0 && TEXT_ELEMENTS.contains(reader.getLocalName())) {
+                            textDepth = depth;
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (skippedDepth == 0) {
+                            writer.writeEndElement();
+                            textDepth = textDepth == depth ? 0 : textDepth;
+                            xlinkDepth = xlinkDepth == depth ? 0 : xlinkDepth;
+                        } else if (skippedDepth == depth) {
+                            skippedDepth = 0;
+                        }
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (depth > 0 && skippedDepth == 0) {
+                            final String text = collapse(reader.getText());
+                            final String content = textDepth > 0 ? text : text.trim();
+                            if (!content.isEmpty()) {
+                                writer.writeCharacters(content);
+                            }
+                        }
+                        break;
+                    default:
+                        // comments, processing instructions and the document type are not copied
+                        break;
+                }
+            }
+            writer.writeEndDocument();
+            writer.flush();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+        return out.toByteArray();
+    }
+
+
+    private static boolean isDropped(XMLStreamReader reader) {
+        final String localName = reader.getLocalName();
+        if (!isSvgNamespace(reader.getNamespaceURI()) || DROPPED_ELEMENTS.contains(localName)) {
+            return true;
+        }
+        // an animation can turn a harmless link into a javascript: one
+        final String animatedAttribute = reader.getAttributeValue(null, ANIMATED_ATTRIBUTE);
+        return ANIMATION_ELEMENTS.contains(localName) && animatedAttribute != null
+                && animatedAttribute.toLowerCase(Locale.ROOT).endsWith(HREF_ATTRIBUTE);
+    }
+
+
+    /**
+     * @return {@code true} if the xlink namespace has been declared on this element
+     */
+    private static boolean writeAttributes(XMLStreamReader reader, XMLStreamWriter writer, boolean declareXlink) throws XMLStreamException {
+        boolean xlinkDeclared = false;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            final String namespace = reader.getAttributeNamespace(i);
+            final String localName = reader.getAttributeLocalName(i);
+            final String value = collapse(reader.getAttributeValue(i)).trim();
+            if (namespace == null || namespace.isEmpty()) {
+                if (!localName.toLowerCase(Locale.ROOT).startsWith("on")
+                        && (!HREF_ATTRIBUTE.equals(localName) || isSafeReference(value))) {
+                    writer.writeAttribute(localName, value);
+                }
+            } else if (XLINK_NS.equals(namespace)) {
+                if (!HREF_ATTRIBUTE.equals(localName) || isSafeReference(value)) {
+                    if (declareXlink && !xlinkDeclared) {
+                        writer.writeNamespace(XLINK_PREFIX, XLINK_NS);
+                        xlinkDeclared = true;
+                    }
+                    writer.writeAttribute(XLINK_PREFIX, XLINK_NS, localName, value);
+                }
+            } else if (XMLConstants.XML_NS_URI.equals(namespace)) {
+                writer.writeAttribute(XML_PREFIX, XMLConstants.XML_NS_URI, localName, value);
+            }
+        }
+        return xlinkDeclared;
+    }
+
+
+    /**
+     * Only references to fragments of the same document and embedded raster images are kept.
+     */
+    private static boolean isSafeReference(String value) {
+        final String reference = value.toLowerCase(Locale.ROOT);
+        return reference.startsWith("#")
+                || (reference.startsWith("data:image/") && !reference.startsWith("data:image/svg"));
+    }
+
+
+    private static boolean isSvgNamespace(String namespace) {
+        // SVG documents without a namespace declaration are accepted, and written in the SVG namespace
+        return namespace == null || namespace.isEmpty() || SVG_NS.equals(namespace);
+    }
+
+
+    private static String collapse(String text) {
+        return WHITESPACE.matcher(text).replaceAll(" ");
+    }
+
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+}
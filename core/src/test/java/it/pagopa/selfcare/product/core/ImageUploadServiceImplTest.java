@@ -0,0 +1,279 @@
+package it.pagopa.selfcare.product.core;
+
+import it.pagopa.selfcare.product.connector.api.ImageUploadOperationConnector;
+import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+import it.pagopa.selfcare.product.core.config.ImageUploadProperties;
+import it.pagopa.selfcare.product.core.exception.FileValidationException;
+import it.pagopa.selfcare.product.core.exception.TooManyUploadsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+class ImageUploadServiceImplTest {
+
+    private static final byte[] IMAGE = "product image".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path stagingDir;
+
+    private ProductService productServiceMock;
+    private ProductImageService productLogoImageServiceMock;
+    private ProductImageService productDepictImageServiceMock;
+    private InMemoryOperationConnector operationConnector;
+    private ImageUploadServiceImpl imageUploadService;
+
+
+    @BeforeEach
+    void setUp() {
+        productServiceMock = Mockito.mock(ProductService.class);
+        productLogoImageServiceMock = Mockito.mock(ProductImageService.class);
+        productDepictImageServiceMock = Mockito.mock(ProductImageService.class);
+        operationConnector = new InMemoryOperationConnector();
+        imageUploadService = newImageUploadService(1, 1);
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        imageUploadService.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+
+    @Test
+    void submit_logo() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
+        String fileName = "logo.png";
+        AtomicReference<byte[]> uploaded = new AtomicReference<>();
+        AtomicReference<Authentication> uploadAuthentication = new AtomicReference<>();
+        Mockito.doAnswer(invocation -> {
+                    uploaded.set(Files.readAllBytes(invocation.getArgument(1, Path.class)));
+                    uploadAuthentication.set(SecurityContextHolder.getContext().getAuthentication());
+                    return null;
+                })
+                .when(productServiceMock).saveProductLogo(Mockito.any(), Mockito.any(Path.class), Mockito.anyLong(), Mockito.any(), Mockito.any());
+        Authentication authentication = new TestingAuthenticationToken("user", "password");
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        //when
+        ImageUploadOperation operation = imageUploadService.submit(productId, ProductImageType.LOGO, IMAGE.length, contentType, fileName,
+                target -> Files.write(target, IMAGE));
+        //then
+        Assertions.assertNotNull(operation.getId());
+        Assertions.assertEquals(productId, operation.getProductId());
+        Assertions.assertEquals(ProductImageType.LOGO, operation.getImageType());
+        Assertions.assertEquals(ImageUploadOperation.Status.PENDING, operation.getStatus());
+        ImageUploadOperation completed = awaitCompletion(productId, operation.getId());
+        Assertions.assertEquals(ImageUploadOperation.Status.SUCCEEDED, completed.getStatus());
+        Assertions.assertNull(completed.getError());
+        Assertions.assertArrayEquals(IMAGE, uploaded.get());
+        Assertions.assertSame(authentication, uploadAuthentication.get());
+        Mockito.verify(productServiceMock, Mockito.times(1))
+                .getProduct(productId, null);
+        Mockito.verify(productServiceMock, Mockito.times(1))
+                .saveProductLogo(Mockito.eq(productId), Mockito.any(Path.class), Mockito.eq((long) IMAGE.length), Mockito.eq(contentType), Mockito.eq(fileName));
+        Mockito.verifyNoMoreInteractions(productServiceMock);
+        assertStagingDirEmpty();
+    }
+
+
+    @Test
+    void submit_depictImageFailure() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
+        String fileName = "depict-image.jpeg";
+        Mockito.doThrow(new IllegalStateException("upload failed"))
+                .when(productServiceMock).saveProductDepictImage(Mockito.any(), Mockito.any(Path.class), Mockito.anyLong(), Mockito.any(), Mockito.any());
+        //when
+        ImageUploadOperation operation = imageUploadService.submit(productId, ProductImageType.DEPICT_IMAGE, IMAGE.length, contentType, fileName,
+                target -> Files.write(target, IMAGE));
+        //then
+        ImageUploadOperation completed = awaitCompletion(productId, operation.getId());
+        Assertions.assertEquals(ImageUploadOperation.Status.FAILED, completed.getStatus());
+        Assertions.assertEquals("upload failed", completed.getError());
+        Mockito.verify(productServiceMock, Mockito.times(1))
+                .saveProductDepictImage(Mockito.eq(productId), Mockito.any(Path.class), Mockito.eq((long) IMAGE.length), Mockito.eq(contentType), Mockito.eq(fileName));
+        assertStagingDirEmpty();
+    }
+
+
+    @Test
+    void submit_productNotFound() throws Exception {
+        //given
+        String productId = "productId";
+        Mockito.when(productServiceMock.getProduct(Mockito.any(), Mockito.any()))
+                .thenThrow(ResourceNotFoundException.class);
+        ImageUploadService.StagingWriter stagingWriterMock = Mockito.mock(ImageUploadService.StagingWriter.class);
+        //when
+        Executable executable = () -> imageUploadService.submit(productId, ProductImageType.LOGO, IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png", stagingWriterMock);
+        //then
+        Assertions.assertThrows(ResourceNotFoundException.class, executable);
+        Mockito.verifyNoInteractions(stagingWriterMock);
+        assertStagingDirEmpty();
+    }
+
+
+    @Test
+    void submit_stagingAreaFull() throws Exception {
+        //given
+        imageUploadService.shutdown();
+        imageUploadService = newImageUploadService(1, 0);
+        String productId = "productId";
+        CountDownLatch uploadStarted = new CountDownLatch(1);
+        CountDownLatch releaseUpload = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+                    uploadStarted.countDown();
+                    releaseUpload.await(5, TimeUnit.SECONDS);
+                    return null;
+                })
+                .when(productServiceMock).saveProductLogo(Mockito.any(), Mockito.any(Path.class), Mockito.anyLong(), Mockito.any(), Mockito.any());
+        ImageUploadOperation first = imageUploadService.submit(productId, ProductImageType.LOGO, IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png",
+                target -> Files.write(target, IMAGE));
+        Assertions.assertTrue(uploadStarted.await(5, TimeUnit.SECONDS));
+        ImageUploadService.StagingWriter stagingWriterMock = Mockito.mock(ImageUploadService.StagingWriter.class);
+        //when
+        Executable executable = () -> imageUploadService.submit(productId, ProductImageType.LOGO, IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png", stagingWriterMock);
+        //then
+        Assertions.assertThrows(TooManyUploadsException.class, executable);
+        Mockito.verifyNoInteractions(stagingWriterMock);
+        releaseUpload.countDown();
+        Assertions.assertEquals(ImageUploadOperation.Status.SUCCEEDED, awaitCompletion(productId, first.getId()).getStatus());
+        Assertions.assertDoesNotThrow(() -> imageUploadService.submit(productId, ProductImageType.LOGO, IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png",
+                target -> Files.write(target, IMAGE)));
+    }
+
+
+    @Test
+    void submit_invalidUpload() throws Exception {
+        //given
+        String productId = "productId";
+        Mockito.doThrow(new FileValidationException("Image size 2048 exceeds the maximum of 1024 bytes", null))
+                .when(productLogoImageServiceMock).validateUpload(Mockito.any(), Mockito.any(), Mockito.anyLong());
+        ImageUploadService.StagingWriter stagingWriterMock = Mockito.mock(ImageUploadService.StagingWriter.class);
+        //when
+        Executable executable = () -> imageUploadService.submit(productId, ProductImageType.LOGO, 2048, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png", stagingWriterMock);
+        //then
+        Assertions.assertThrows(FileValidationException.class, executable);
+        Mockito.verify(productLogoImageServiceMock, Mockito.times(1))
+                .validateUpload(MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png", 2048);
+        Mockito.verifyNoInteractions(stagingWriterMock, productDepictImageServiceMock);
+        Assertions.assertTrue(operationConnector.operations.isEmpty());
+        assertStagingDirEmpty();
+    }
+
+
+    @Test
+    void getOperation_otherReplica() throws Exception {
+        //given
+        ImageUploadOperation operation = imageUploadService.submit("productId", ProductImageType.DEPICT_IMAGE, IMAGE.length, MimeTypeUtils.IMAGE_JPEG_VALUE, "depict-image.jpeg",
+                target -> Files.write(target, IMAGE));
+        awaitCompletion("productId", operation.getId());
+        ImageUploadServiceImpl otherReplica = newImageUploadService(1, 1);
+        try {
+            //when
+            ImageUploadOperation found = otherReplica.getOperation("productId", operation.getId());
+            //then
+            Assertions.assertEquals(ImageUploadOperation.Status.SUCCEEDED, found.getStatus());
+            Mockito.verify(productDepictImageServiceMock, Mockito.times(1))
+                    .validateUpload(MimeTypeUtils.IMAGE_JPEG_VALUE, "depict-image.jpeg", IMAGE.length);
+        } finally {
+            otherReplica.shutdown();
+        }
+    }
+
+
+    @Test
+    void getOperation_notFound() {
+        //given
+        String productId = "productId";
+        String operationId = "operationId";
+        //when
+        Executable executable = () -> imageUploadService.getOperation(productId, operationId);
+        //then
+        Assertions.assertThrows(ResourceNotFoundException.class, executable);
+    }
+
+
+    @Test
+    void getOperation_otherProduct() throws Exception {
+        //given
+        ImageUploadOperation operation = imageUploadService.submit("productId", ProductImageType.LOGO, IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "logo.png",
+                target -> Files.write(target, IMAGE));
+        //when
+        Executable executable = () -> imageUploadService.getOperation("otherProductId", operation.getId());
+        //then
+        Assertions.assertThrows(ResourceNotFoundException.class, executable);
+        awaitCompletion("productId", operation.getId());
+    }
+
+
+    private ImageUploadServiceImpl newImageUploadService(int threads, int maxPending) {
+        ImageUploadProperties properties = new ImageUploadProperties();
+        properties.setStagingDir(stagingDir);
+        properties.setThreads(threads);
+        properties.setMaxPending(maxPending);
+        return new ImageUploadServiceImpl(productServiceMock, operationConnector,
+                productLogoImageServiceMock, productDepictImageServiceMock, properties);
+    }
+
+
+    private ImageUploadOperation awaitCompletion(String productId, String operationId) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        ImageUploadOperation operation = imageUploadService.getOperation(productId, operationId);
+        while (!operation.isDone() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            operation = imageUploadService.getOperation(productId, operationId);
+        }
+        Assertions.assertTrue(operation.isDone(), operation.toString());
+        return operation;
+    }
+
+
+    private void assertStagingDirEmpty() throws Exception {
+        try (Stream<Path> files = Files.list(stagingDir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+
+
+    private static final class InMemoryOperationConnector implements ImageUploadOperationConnector {
+
+        private final Map<String, ImageUploadOperation> operations = new ConcurrentHashMap<>();
+
+        @Override
+        public void save(ImageUploadOperation operation) {
+            operations.put(operation.getId(), operation);
+        }
+
+        @Override
+        public Optional<ImageUploadOperation> findById(String id) {
+            return Optional.ofNullable(operations.get(id));
+        }
+
+    }
+
+}
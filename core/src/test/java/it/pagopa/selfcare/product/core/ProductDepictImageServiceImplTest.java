@@ -24,14 +24,24 @@ import org.springframework.util.InvalidMimeTypeException;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StringUtils;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -44,6 +54,9 @@ import static org.junit.jupiter.api.Assertions.*;
 })
 class ProductDepictImageServiceImplTest {
 
+    private static final byte[] IMAGE = encode(new BufferedImage(32, 16, BufferedImage.TYPE_INT_RGB), "jpeg");
+    private static final String IMAGE_SHA256 = sha256(IMAGE);
+
     @Autowired
     @Qualifier("productDepictImageService")
     ProductDepictImageServiceImpl productDepictImageService;
@@ -66,7 +79,7 @@ class ProductDepictImageServiceImplTest {
         InputStream inputImage = InputStream.nullInputStream();
         ProductOperations product = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productDepictImageService.saveImage(product, inputImage, contentType, fileName);
+        Executable executable = () -> productDepictImageService.saveImage(product, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException e = assertThrows(FileValidationException.class, executable);
         assertEquals("file name cannot be null", e.getMessage());
@@ -74,6 +87,18 @@ class ProductDepictImageServiceImplTest {
 
     }
 
+    @Test
+    void validateUpload_noLimitsByDefault() {
+        //when
+        Executable executable = () -> productDepictImageService.validateUpload(MimeTypeUtils.IMAGE_JPEG_VALUE, "filename.jpeg", 10L * 1024 * 1024);
+        //then
+        assertDoesNotThrow(executable);
+        assertNull(depictImagePropertiesMock.getMaxSize());
+        assertEquals(0, depictImagePropertiesMock.getMaxWidth());
+        assertEquals(0, depictImagePropertiesMock.getMaxHeight());
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
     @Test
     void getDefaultImageUrl() {
         //given
@@ -91,7 +116,7 @@ class ProductDepictImageServiceImplTest {
         String fileName = "filename.gif";
         ProductOperations productOperations = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productDepictImageService.saveImage(productOperations, inputImage, contentType, fileName);
+        Executable executable = () -> productDepictImageService.saveImage(productOperations, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
         assertTrue(InvalidMimeTypeException.class.isAssignableFrom(fileValidationException.getCause().getClass()));
@@ -106,7 +131,7 @@ class ProductDepictImageServiceImplTest {
         String fileName = "filename.gif";
         ProductOperations productOperations = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productDepictImageService.saveImage(productOperations, inputImage, contentType, fileName);
+        Executable executable = () -> productDepictImageService.saveImage(productOperations, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
         assertTrue(IllegalArgumentException.class.isAssignableFrom(fileValidationException.getCause().getClass()));
@@ -117,22 +142,24 @@ class ProductDepictImageServiceImplTest {
     @Test
     void saveImage_uploadException() throws MalformedURLException {
         //given
-        InputStream inputImage = InputStream.nullInputStream();
+        InputStream inputImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
         String productId = "productId";
         String fileName = "fileName.jpeg";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct());
         product.setId(productId);
         Mockito.doThrow(FileUploadException.class)
-                .when(fileStorageConnectorMock).uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString());
+                .when(fileStorageConnectorMock).uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString());
         //when
-        Executable executable = () -> productDepictImageService.saveImage(product, inputImage, contentType, fileName);
+        Executable executable = () -> productDepictImageService.saveImage(product, inputImage, IMAGE.length, contentType, fileName);
         //then
         RuntimeException exception = Assertions.assertThrows(RuntimeException.class, executable);
         Assertions.assertNotNull(exception.getCause());
         Assertions.assertTrue(FileUploadException.class.isAssignableFrom(exception.getCause().getClass()));
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(inputImage, String.format("resources/products/%s/depict-image.jpeg", productId), contentType);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256));
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock);
     }
 
@@ -141,7 +168,7 @@ class ProductDepictImageServiceImplTest {
     void saveImage_nullUrl() throws FileUploadException, MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
         String fileName = "filename.jpeg";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
@@ -149,18 +176,24 @@ class ProductDepictImageServiceImplTest {
         product.setId(productId);
         URI uriMock = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/depict-image.png");
         URL uriToUrl = uriMock.toURL();
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productDepictImageService.saveImage(product, depictImage, contentType, fileName);
+        productDepictImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/depict-image.jpeg", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getDepictImageUrl());
+                .updateDepictImage(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/depict-image-%s-%d.jpeg", productId, IMAGE_SHA256, width));
+        }
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
     }
 
@@ -168,7 +201,7 @@ class ProductDepictImageServiceImplTest {
     void storeProductDepictImage_defaultUrl() throws FileUploadException, MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
         String fileName = "filename.jpeg";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
@@ -176,18 +209,24 @@ class ProductDepictImageServiceImplTest {
         product.setId(productId);
         URI uriMock = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/depict-image.jpeg");
         URL uriToUrl = uriMock.toURL();
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productDepictImageService.saveImage(product, depictImage, contentType, fileName);
+        productDepictImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/depict-image.jpeg", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getDepictImageUrl());
+                .updateDepictImage(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/depict-image-%s-%d.jpeg", productId, IMAGE_SHA256, width));
+        }
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
     }
 
@@ -195,7 +234,7 @@ class ProductDepictImageServiceImplTest {
     void updateProductDepictImage_logoUrl() throws MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
         String fileName = "filename.jpeg";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setParentId", "setRoleMappings");
@@ -210,18 +249,77 @@ class ProductDepictImageServiceImplTest {
         URL uriToUrl = uriMock.toURL();
         product.setRoleMappings(map);
         product.setContractTemplateVersion("1.2.4");
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productDepictImageService.saveImage(product, depictImage, contentType, fileName);
+        productDepictImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/depict-image.jpeg", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/depict-image-%s.jpeg", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getDepictImageUrl());
+                .updateDepictImage(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
         Mockito.verifyNoMoreInteractions(productConnectorMock);
     }
+
+    @Test
+    void saveImage_renditions() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_JPEG_VALUE;
+        String fileName = "filename.jpeg";
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB), "jpeg", imageOutput);
+        byte[] image = imageOutput.toByteArray();
+        String hash = sha256(image);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> new URL("https://selcdcheckoutsa.z6.web.core.windows.net/" + invocation.getArgument(2, String.class)));
+        //when
+        productDepictImageService.saveImage(product, new ByteArrayInputStream(image), image.length, contentType, fileName);
+        //then
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .uploadProductImg(Mockito.any(), Mockito.eq((long) image.length), Mockito.eq(String.format("resources/products/%s/depict-image-%s.jpeg", productId, hash)), Mockito.eq(contentType));
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/depict-image-%s.jpeg", productId, hash));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/depict-image-%s-%d.jpeg", productId, hash, width));
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.eq(String.format("resources/products/%s/depict-image-%s-%d.jpeg", productId, hash, width)), Mockito.eq(contentType));
+        }
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(productConnectorMock, Mockito.times(1))
+                .updateDepictImage(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(Map.of(
+                64, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/depict-image-%s-64.jpeg", productId, hash),
+                128, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/depict-image-%s-128.jpeg", productId, hash),
+                512, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/depict-image-%s-512.jpeg", productId, hash)),
+                renditionsCaptor.getValue());
+        Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) {
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, format, imageOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return imageOutput.toByteArray();
+    }
+
+    private static String sha256(byte[] image) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(image);
+            return String.format("%064x", new BigInteger(1, hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
\ No newline at end of file
@@ -24,14 +24,29 @@ import org.springframework.util.InvalidMimeTypeException;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.StringUtils;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -40,10 +55,18 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestPropertySource(properties = {
         "product.img.logo.allowed-mime-types=image/png, image/svg+xml",
         "product.img.logo.allowed-extensions=png, svg",
-        "product.img.logo.default-url=https://selcdcheckoutsa.blob.core.windows.net/$web/resources/products/default/logo.png"
+        "product.img.logo.default-url=https://selcdcheckoutsa.blob.core.windows.net/$web/resources/products/default/logo.png",
+        "product.img.logo.max-size=1MB",
+        "product.img.logo.max-width=2048",
+        "product.img.logo.max-height=2048"
 })
 class ProductLogoImageServiceImplTest {
 
+    private static final byte[] IMAGE = encode(new BufferedImage(32, 16, BufferedImage.TYPE_INT_ARGB), "png");
+    private static final String IMAGE_SHA256 = sha256(IMAGE);
+    private static final byte[] SVG_IMAGE = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\"></svg>".getBytes(StandardCharsets.UTF_8);
+    private static final String SVG_IMAGE_SHA256 = sha256(SVG_IMAGE);
+
     @Autowired
     @Qualifier("productLogoImageService")
     ProductLogoImageServiceImpl productLogoImageService;
@@ -66,7 +89,7 @@ class ProductLogoImageServiceImplTest {
         InputStream inputImage = InputStream.nullInputStream();
         ProductOperations product = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productLogoImageService.saveImage(product, inputImage, contentType, fileName);
+        Executable executable = () -> productLogoImageService.saveImage(product, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException e = assertThrows(FileValidationException.class, executable);
         assertEquals("file name cannot be null", e.getMessage());
@@ -91,7 +114,7 @@ class ProductLogoImageServiceImplTest {
         String fileName = "filename.gif";
         ProductOperations productOperations = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productLogoImageService.saveImage(productOperations, inputImage, contentType, fileName);
+        Executable executable = () -> productLogoImageService.saveImage(productOperations, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
         assertTrue(InvalidMimeTypeException.class.isAssignableFrom(fileValidationException.getCause().getClass()));
@@ -106,7 +129,7 @@ class ProductLogoImageServiceImplTest {
         String fileName = "filename.gif";
         ProductOperations productOperations = TestUtils.mockInstance(new DummyProduct());
         //when
-        Executable executable = () -> productLogoImageService.saveImage(productOperations, inputImage, contentType, fileName);
+        Executable executable = () -> productLogoImageService.saveImage(productOperations, inputImage, 0L, contentType, fileName);
         //then
         FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
         assertTrue(IllegalArgumentException.class.isAssignableFrom(fileValidationException.getCause().getClass()));
@@ -117,22 +140,24 @@ class ProductLogoImageServiceImplTest {
     @Test
     void saveImage_uploadException() throws MalformedURLException {
         //given
-        InputStream inputImage = InputStream.nullInputStream();
+        InputStream inputImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
         String productId = "productId";
         String fileName = "fileName.png";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct());
         product.setId(productId);
         Mockito.doThrow(FileUploadException.class)
-                .when(fileStorageConnectorMock).uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString());
+                .when(fileStorageConnectorMock).uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString());
         //when
-        Executable executable = () -> productLogoImageService.saveImage(product, inputImage, contentType, fileName);
+        Executable executable = () -> productLogoImageService.saveImage(product, inputImage, IMAGE.length, contentType, fileName);
         //then
         RuntimeException exception = Assertions.assertThrows(RuntimeException.class, executable);
         Assertions.assertNotNull(exception.getCause());
         Assertions.assertTrue(FileUploadException.class.isAssignableFrom(exception.getCause().getClass()));
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(inputImage, String.format("resources/products/%s/logo.png", productId), contentType);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256));
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock);
     }
 
@@ -141,7 +166,7 @@ class ProductLogoImageServiceImplTest {
     void saveImage_nullUrl() throws FileUploadException, MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
         String fileName = "filename.png";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
@@ -149,26 +174,58 @@ class ProductLogoImageServiceImplTest {
         product.setId(productId);
         URI uriMock = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png");
         URL uriToUrl = uriMock.toURL();
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productLogoImageService.saveImage(product, depictImage, contentType, fileName);
+        productLogoImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/logo.png", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getLogo());
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/logo-%s-%d.png", productId, IMAGE_SHA256, width));
+        }
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
     }
 
+    @Test
+    void saveImage_stagedFile() throws Exception {
+        //given
+        String productId = "productId";
+        Path staged = Files.createTempFile("logo-", ".tmp");
+        Files.write(staged, IMAGE);
+        String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        URL url = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/productId/logo.png").toURL();
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
+                .thenReturn(url);
+        try {
+            //when
+            productLogoImageService.saveImage(product, staged, IMAGE.length, contentType, "filename.png");
+            //then
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+            Mockito.verify(productConnectorMock, Mockito.times(1))
+                    .updateLogo(Mockito.eq(productId), Mockito.eq(url.toString()), Mockito.any());
+            assertArrayEquals(IMAGE, Files.readAllBytes(staged));
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
     @Test
     void storeProductLogoImage_defaultUrl() throws FileUploadException, MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
         String fileName = "filename.png";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
@@ -176,18 +233,24 @@ class ProductLogoImageServiceImplTest {
         product.setId(productId);
         URI uriMock = new URI("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/default/logo.png");
         URL uriToUrl = uriMock.toURL();
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productLogoImageService.saveImage(product, depictImage, contentType, fileName);
+        productLogoImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/logo.png", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getLogo());
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/logo-%s-%d.png", productId, IMAGE_SHA256, width));
+        }
         Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
     }
 
@@ -195,7 +258,7 @@ class ProductLogoImageServiceImplTest {
     void updateProductLogoImage_logoUrlSvg() throws MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(SVG_IMAGE);
         String contentType = "image/svg+xml";
         String fileName = "filename.svg";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setParentId", "setRoleMappings");
@@ -210,18 +273,18 @@ class ProductLogoImageServiceImplTest {
         URL uriToUrl = uriMock.toURL();
         product.setRoleMappings(map);
         product.setContractTemplateVersion("1.2.4");
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productLogoImageService.saveImage(product, depictImage, contentType, fileName);
+        productLogoImageService.saveImage(product, depictImage, SVG_IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/logo.svg", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) SVG_IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.svg", productId, SVG_IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getLogo());
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
         Mockito.verifyNoMoreInteractions(productConnectorMock);
     }
 
@@ -229,7 +292,7 @@ class ProductLogoImageServiceImplTest {
     void updateProductLogoImage_logoUrlPng() throws MalformedURLException, URISyntaxException {
         //give
         String productId = "productId";
-        InputStream depictImage = InputStream.nullInputStream();
+        InputStream depictImage = new ByteArrayInputStream(IMAGE);
         String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
         String fileName = "filename.png";
         ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setParentId", "setRoleMappings");
@@ -244,18 +307,254 @@ class ProductLogoImageServiceImplTest {
         URL uriToUrl = uriMock.toURL();
         product.setRoleMappings(map);
         product.setContractTemplateVersion("1.2.4");
-        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.any(), Mockito.anyString()))
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
                 .thenReturn(uriToUrl);
         //when
-        productLogoImageService.saveImage(product, depictImage, contentType, fileName);
+        productLogoImageService.saveImage(product, depictImage, IMAGE.length, contentType, fileName);
         //then
         Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
-                .uploadProductImg(depictImage, String.format("resources/products/%s/logo.png", productId), contentType);
-        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, IMAGE_SHA256)), Mockito.eq(contentType));
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
         Mockito.verify(productConnectorMock, Mockito.times(1))
-                .save(productCaptor.capture());
-        ProductOperations capturedProduct = productCaptor.getValue();
-        assertEquals(uriToUrl.toString(), capturedProduct.getLogo());
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(uriToUrl.toString(), urlCaptor.getValue());
         Mockito.verifyNoMoreInteractions(productConnectorMock);
     }
+
+    @Test
+    void saveImage_unrecognizedContent() {
+        //given
+        byte[] image = "not an image".getBytes(StandardCharsets.UTF_8);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct());
+        //when
+        Executable executable = () -> productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png");
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertEquals("Unrecognized image content", fileValidationException.getMessage());
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_contentTypeMismatch() {
+        //given
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct());
+        //when
+        Executable executable = () -> productLogoImageService.saveImage(product, new ByteArrayInputStream(SVG_IMAGE), SVG_IMAGE.length, MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png");
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertEquals("Image content is image/svg+xml, not image/png", fileValidationException.getMessage());
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_dimensionsTooLarge() {
+        //given
+        byte[] image = encode(new BufferedImage(logoImagePropertiesMock.getMaxWidth() + 1, 1, BufferedImage.TYPE_INT_ARGB), "png");
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct());
+        //when
+        Executable executable = () -> productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png");
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertTrue(fileValidationException.getMessage().startsWith("Image dimensions"));
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_sizeTooLarge() {
+        //given
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct());
+        long contentLength = logoImagePropertiesMock.getMaxSize().toBytes() + 1;
+        //when
+        Executable executable = () -> productLogoImageService.saveImage(product, new ByteArrayInputStream(IMAGE), contentLength, MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png");
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertTrue(fileValidationException.getMessage().startsWith("Image size"));
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void validateUpload_invalidExtension() {
+        //given
+        String fileName = "filename.gif";
+        //when
+        Executable executable = () -> productLogoImageService.validateUpload(MimeTypeUtils.IMAGE_PNG_VALUE, fileName, IMAGE.length);
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertTrue(IllegalArgumentException.class.isAssignableFrom(fileValidationException.getCause().getClass()));
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void validateUpload_sizeTooLarge() {
+        //given
+        long contentLength = logoImagePropertiesMock.getMaxSize().toBytes() + 1;
+        //when
+        Executable executable = () -> productLogoImageService.validateUpload(MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png", contentLength);
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertTrue(fileValidationException.getMessage().startsWith("Image size"));
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void validateUpload() {
+        //when
+        Executable executable = () -> productLogoImageService.validateUpload(MimeTypeUtils.IMAGE_PNG_VALUE, "filename.png", IMAGE.length);
+        //then
+        assertDoesNotThrow(executable);
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_svgSanitized() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = "image/svg+xml";
+        byte[] image = ("<?xml version=\"1.0\"?>\n<!-- editor comment -->\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\" onload=\"alert(1)\">\n"
+                + "  <script>alert(1)</script>\n</svg>\n").getBytes(StandardCharsets.UTF_8);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        ArgumentCaptor<InputStream> imageCaptor = ArgumentCaptor.forClass(InputStream.class);
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(imageCaptor.capture(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
+                .thenReturn(new URL("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/prod-1/logo.svg"));
+        //when
+        productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, contentType, "filename.svg");
+        //then
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.eq((long) SVG_IMAGE.length), Mockito.eq(String.format("resources/products/%s/logo-%s.svg", productId, SVG_IMAGE_SHA256)), Mockito.eq(contentType));
+        assertArrayEquals(SVG_IMAGE, imageCaptor.getValue().readAllBytes());
+    }
+
+    @Test
+    void saveImage_svgGzipped() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = "image/svg+xml";
+        byte[] image = ("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\">"
+                + "<path d=\"M 0,0 L 16,16\"></path>".repeat(50)
+                + "</svg>").getBytes(StandardCharsets.UTF_8);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        ArgumentCaptor<InputStream> imageCaptor = ArgumentCaptor.forClass(InputStream.class);
+        ArgumentCaptor<Long> lengthCaptor = ArgumentCaptor.forClass(Long.class);
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(imageCaptor.capture(), lengthCaptor.capture(), Mockito.any(), Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(new URL("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/prod-1/logo.svg"));
+        //when
+        productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, contentType, "filename.svg");
+        //then
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .uploadProductImg(Mockito.any(InputStream.class), Mockito.anyLong(), Mockito.eq(String.format("resources/products/%s/logo-%s.svg", productId, sha256(image))), Mockito.eq(contentType), Mockito.eq("gzip"));
+        byte[] gzipped = imageCaptor.getValue().readAllBytes();
+        assertEquals(gzipped.length, lengthCaptor.getValue());
+        assertTrue(gzipped.length < image.length / 2);
+        try (InputStream decoded = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertArrayEquals(image, decoded.readAllBytes());
+        }
+    }
+
+    @Test
+    void saveImage_invalidSvg() {
+        //given
+        byte[] image = "<svg xmlns=\"http://www.w3.org/2000/svg\"><g></svg>".getBytes(StandardCharsets.UTF_8);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct());
+        //when
+        Executable executable = () -> productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, "image/svg+xml", "filename.svg");
+        //then
+        FileValidationException fileValidationException = assertThrows(FileValidationException.class, executable);
+        assertTrue(fileValidationException.getMessage().startsWith("Invalid SVG image"));
+        Mockito.verifyNoInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_renditions() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
+        String fileName = "filename.png";
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 300, BufferedImage.TYPE_INT_ARGB), "png", imageOutput);
+        byte[] image = imageOutput.toByteArray();
+        String hash = sha256(image);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        Mockito.when(fileStorageConnectorMock.uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.any(), Mockito.anyString()))
+                .thenAnswer(invocation -> new URL("https://selcdcheckoutsa.z6.web.core.windows.net/" + invocation.getArgument(2, String.class)));
+        //when
+        productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, contentType, fileName);
+        //then
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .uploadProductImg(Mockito.any(), Mockito.eq((long) image.length), Mockito.eq(String.format("resources/products/%s/logo-%s.png", productId, hash)), Mockito.eq(contentType));
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/logo-%s.png", productId, hash));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/logo-%s-%d.png", productId, hash, width));
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .uploadProductImg(Mockito.any(), Mockito.anyLong(), Mockito.eq(String.format("resources/products/%s/logo-%s-%d.png", productId, hash, width)), Mockito.eq(contentType));
+        }
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(productConnectorMock, Mockito.times(1))
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(Map.of(
+                64, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/logo-%s-64.png", productId, hash),
+                128, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/logo-%s-128.png", productId, hash),
+                512, String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/logo-%s-512.png", productId, hash)),
+                renditionsCaptor.getValue());
+        Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    @Test
+    void saveImage_alreadyStored() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
+        String fileName = "filename.png";
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 300, BufferedImage.TYPE_INT_ARGB), "png", imageOutput);
+        byte[] image = imageOutput.toByteArray();
+        String hash = sha256(image);
+        ProductOperations product = TestUtils.mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId");
+        product.setId(productId);
+        Mockito.when(fileStorageConnectorMock.findProductImg(Mockito.anyString()))
+                .thenAnswer(invocation -> Optional.of(new URL("https://selcdcheckoutsa.z6.web.core.windows.net/" + invocation.getArgument(0, String.class))));
+        //when
+        productLogoImageService.saveImage(product, new ByteArrayInputStream(image), image.length, contentType, fileName);
+        //then
+        Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                .findProductImg(String.format("resources/products/%s/logo-%s.png", productId, hash));
+        for (int width : List.of(64, 128, 512)) {
+            Mockito.verify(fileStorageConnectorMock, Mockito.times(1))
+                    .findProductImg(String.format("resources/products/%s/logo-%s-%d.png", productId, hash, width));
+        }
+        ArgumentCaptor<String> urlCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map<Integer, String>> renditionsCaptor = ArgumentCaptor.forClass(Map.class);
+        Mockito.verify(productConnectorMock, Mockito.times(1))
+                .updateLogo(Mockito.eq(productId), urlCaptor.capture(), renditionsCaptor.capture());
+        assertEquals(String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/logo-%s.png", productId, hash), urlCaptor.getValue());
+        assertEquals(String.format("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/%s/logo-%s-64.png", productId, hash), renditionsCaptor.getValue().get(64));
+        Mockito.verifyNoMoreInteractions(fileStorageConnectorMock, productConnectorMock);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) {
+        ByteArrayOutputStream imageOutput = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, format, imageOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return imageOutput.toByteArray();
+    }
+
+    private static String sha256(byte[] image) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(image);
+            return String.format("%064x", new BigInteger(1, hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
\ No newline at end of file
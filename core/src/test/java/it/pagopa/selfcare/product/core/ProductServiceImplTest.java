@@ -19,14 +19,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.util.MimeTypeUtils;
 
 import javax.validation.ValidationException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
 import static it.pagopa.selfcare.product.core.ProductServiceImpl.REQUIRED_PRODUCT_ID_MESSAGE;
@@ -37,6 +41,7 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith({SpringExtension.class})
 @ContextConfiguration(classes = {ProductServiceImpl.class, CoreTestConfig.class})
+@RecordApplicationEvents
 class ProductServiceImplTest {
 
     private static final String LOGO_URL = "https://selcdcheckoutsa.blob.core.windows.net/$web/resources/products/default/logo.png";
@@ -59,6 +64,9 @@ class ProductServiceImplTest {
     @Captor
     private ArgumentCaptor<ProductOperations> savedProductCaptor;
 
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
 
     @Test
     void getProducts_emptyListRootOnly() {
@@ -105,6 +113,40 @@ class ProductServiceImplTest {
         verifyNoMoreInteractions(productConnectorMock);
     }
 
+    @Test
+    void getProductsTree() {
+        // given
+        DummyProduct node = mockInstance(new DummyProduct(), "setParentId");
+        DummyProduct child = mockInstance(new DummyProduct(), 2);
+        child.setParentId(node.getId());
+        when(productConnectorMock.findProductTree())
+                .thenReturn(List.of(new ProductTree(node, List.of(child))));
+        // when
+        List<ProductTree> productsTree = productService.getProductsTree();
+        // then
+        assertEquals(1, productsTree.size());
+        assertSame(node, productsTree.get(0).getNode());
+        assertEquals(List.of(child), productsTree.get(0).getChildren());
+        verify(productConnectorMock, times(1))
+                .findProductTree();
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getCatalogVersion() {
+        // given
+        CatalogVersion catalogVersion = new CatalogVersion(2, "0123456789abcdef");
+        when(productConnectorMock.getCatalogVersion())
+                .thenReturn(catalogVersion);
+        // when
+        CatalogVersion result = productService.getCatalogVersion();
+        // then
+        assertSame(catalogVersion, result);
+        verify(productConnectorMock, times(1))
+                .getCatalogVersion();
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
     @Test
     void getProducts_notEmptyAll() {
         // given
@@ -275,6 +317,8 @@ class ProductServiceImplTest {
         assertEquals(DEPICT_IMAGE_URL, savedProduct.getDepictImageUrl());
         assertEquals(LOGO_URL, savedProduct.getLogo());
         verifyNoMoreInteractions(productConnectorMock);
+        assertEquals(List.of(new ProductChangeEvent(ProductChangeType.CREATE, id, output)),
+                applicationEvents.stream(ProductChangeEvent.class).collect(Collectors.toList()));
     }
 
     @Test
@@ -474,6 +518,8 @@ class ProductServiceImplTest {
         verify(productConnectorMock, times(1)).
                 disableById(productId);
         verifyNoMoreInteractions(productConnectorMock);
+        assertEquals(List.of(new ProductChangeEvent(ProductChangeType.DELETE, productId, null)),
+                applicationEvents.stream(ProductChangeEvent.class).collect(Collectors.toList()));
     }
 
 
@@ -565,6 +611,43 @@ class ProductServiceImplTest {
         verifyNoMoreInteractions(productConnectorMock);
     }
 
+    @Test
+    void getProduct_fields() {
+        // given
+        String productId = "productId";
+        DummyContract contract = mockInstance(new DummyContract());
+        contract.setContractTemplatePath("paContract");
+        ProductOperations productMock = mockInstance(new DummyProduct(), "setStatus");
+        productMock.setStatus(ProductStatus.ACTIVE);
+        productMock.setInstitutionContractMappings(Map.of(InstitutionType.PA, contract));
+        when(productConnectorMock.findById(Mockito.anyString(), any()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        ProductOperations product = productService.getProduct(productId, InstitutionType.PA, List.of("title", "contractTemplatePath"));
+        // then
+        assertSame(productMock, product);
+        assertEquals(contract.getContractTemplatePath(), product.getContractTemplatePath());
+        verify(productConnectorMock, times(1))
+                .findById(productId, Set.of("title", "contractTemplatePath", "institutionContractMappings"));
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProduct_fieldsWithoutContract() {
+        // given
+        String productId = "productId";
+        ProductOperations productMock = mockInstance(new DummyProduct(), "setStatus");
+        productMock.setStatus(ProductStatus.ACTIVE);
+        when(productConnectorMock.findById(Mockito.anyString(), any()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        productService.getProduct(productId, InstitutionType.PA, List.of("title"));
+        // then
+        verify(productConnectorMock, times(1))
+                .findById(productId, Set.of("title"));
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
     @Test
     void getProduct_Inactive() {
         // given
@@ -612,6 +695,196 @@ class ProductServiceImplTest {
     }
 
 
+    @Test
+    void getProductsById() {
+        // given
+        DummyContract contract = mockInstance(new DummyContract());
+        contract.setContractTemplatePath("paContract");
+        ProductOperations first = mockInstance(new DummyProduct(), 1, "setStatus");
+        first.setStatus(ProductStatus.ACTIVE);
+        first.setInstitutionContractMappings(Map.of(InstitutionType.PA, contract));
+        ProductOperations second = mockInstance(new DummyProduct(), 2, "setStatus");
+        second.setStatus(ProductStatus.TESTING);
+        ProductOperations inactive = mockInstance(new DummyProduct(), 3, "setStatus");
+        inactive.setStatus(ProductStatus.INACTIVE);
+        List<String> ids = List.of(second.getId(), "unknown", inactive.getId(), first.getId(), second.getId());
+        when(productConnectorMock.findAllById(any()))
+                .thenReturn(List.of(first, second, inactive));
+        // when
+        List<ProductOperations> products = productService.getProductsById(ids, InstitutionType.PA);
+        // then
+        assertEquals(List.of(second.getId(), first.getId()), products.stream()
+                .map(ProductOperations::getId)
+                .collect(Collectors.toList()));
+        assertEquals(contract.getContractTemplatePath(), products.get(1).getContractTemplatePath());
+        verify(productConnectorMock, times(1))
+                .findAllById(new LinkedHashSet<>(ids));
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductsById_fields() {
+        // given
+        ProductOperations first = mockInstance(new DummyProduct(), 1, "setStatus");
+        first.setStatus(ProductStatus.ACTIVE);
+        ProductOperations inactive = mockInstance(new DummyProduct(), 2, "setStatus");
+        inactive.setStatus(ProductStatus.INACTIVE);
+        List<String> ids = List.of(inactive.getId(), first.getId());
+        when(productConnectorMock.findAllById(any(), any()))
+                .thenReturn(List.of(first, inactive));
+        // when
+        List<ProductOperations> products = productService.getProductsById(ids, null, List.of("contractTemplateVersion"));
+        // then
+        assertEquals(List.of(first), products);
+        verify(productConnectorMock, times(1))
+                .findAllById(new LinkedHashSet<>(ids), Set.of("contractTemplateVersion"));
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductsModifiedAfter() {
+        // given
+        Instant since = Instant.now();
+        ProductOperations inactive = mockInstance(new DummyProduct(), "setStatus");
+        inactive.setStatus(ProductStatus.INACTIVE);
+        when(productConnectorMock.findByModifiedAtAfter(any()))
+                .thenReturn(List.of(inactive));
+        // when
+        List<ProductOperations> products = productService.getProductsModifiedAfter(since);
+        // then
+        assertEquals(List.of(inactive), products);
+        verify(productConnectorMock, times(1))
+                .findByModifiedAtAfter(since.minus(Duration.ofSeconds(5)));
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductsModifiedAfter_nullSince() {
+        // when
+        Executable executable = () -> productService.getProductsModifiedAfter(null);
+        // then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, executable);
+        assertEquals("An instant is required", e.getMessage());
+        verifyNoInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductsById_emptyIds() {
+        // given
+        List<String> ids = List.of();
+        // when
+        Executable executable = () -> productService.getProductsById(ids, null);
+        // then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, executable);
+        assertEquals("At least a product id is required", e.getMessage());
+        verifyNoInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductRoleMappings() {
+        // given
+        String productId = "productId";
+        ProductOperations productMock = new DummyProduct();
+        productMock.setStatus(ProductStatus.ACTIVE);
+        EnumMap<PartyRole, DummyProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
+        roleMappings.put(PartyRole.OPERATOR, new DummyProductRoleInfo(true, List.of(mockInstance(new DummyProductRole()))));
+        productMock.setRoleMappings(roleMappings);
+        when(productConnectorMock.findRoleMappingsById(Mockito.anyString()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        ProductOperations result = productService.getProductRoleMappings(productId);
+        // then
+        assertSame(productMock, result);
+        assertSame(roleMappings, result.getRoleMappings());
+        verify(productConnectorMock, times(1)).findRoleMappingsById(productId);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductRoleMappings_inactive() {
+        // given
+        String productId = "productId";
+        ProductOperations productMock = new DummyProduct();
+        productMock.setStatus(ProductStatus.INACTIVE);
+        when(productConnectorMock.findRoleMappingsById(Mockito.anyString()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        Executable executable = () -> productService.getProductRoleMappings(productId);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(productConnectorMock, times(1)).findRoleMappingsById(productId);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductRoleMappings_notFound() {
+        // given
+        String productId = "productId";
+        // when
+        Executable executable = () -> productService.getProductRoleMappings(productId);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(productConnectorMock, times(1)).findRoleMappingsById(productId);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductContractTemplate_institutionTypePresent() {
+        // given
+        String productId = "productId";
+        InstitutionType institutionType = InstitutionType.PA;
+        DummyContract contract = mockInstance(new DummyContract());
+        contract.setContractTemplatePath("paContract");
+        ProductOperations productMock = mockInstance(new DummyProduct(), "setStatus");
+        productMock.setStatus(ProductStatus.ACTIVE);
+        productMock.setInstitutionContractMappings(Map.of(InstitutionType.PA, contract));
+        when(productConnectorMock.findContractTemplatesById(Mockito.anyString(), Mockito.any()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        ProductOperations result = productService.getProductContractTemplate(productId, institutionType);
+        // then
+        assertEquals(contract.getContractTemplatePath(), result.getContractTemplatePath());
+        assertEquals(contract.getContractTemplateVersion(), result.getContractTemplateVersion());
+        assertEquals(productMock.getContractTemplateUpdatedAt(), result.getContractTemplateUpdatedAt());
+        verify(productConnectorMock, times(1)).findContractTemplatesById(productId, institutionType);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductContractTemplate_institutionTypeNotPresent() {
+        // given
+        String productId = "productId";
+        ProductOperations productMock = mockInstance(new DummyProduct(), "setStatus");
+        productMock.setStatus(ProductStatus.ACTIVE);
+        when(productConnectorMock.findContractTemplatesById(Mockito.anyString(), Mockito.any()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        ProductOperations result = productService.getProductContractTemplate(productId, InstitutionType.PT);
+        // then
+        assertEquals(productMock.getContractTemplatePath(), result.getContractTemplatePath());
+        assertEquals(productMock.getContractTemplateVersion(), result.getContractTemplateVersion());
+        assertEquals(productMock.getContractTemplateUpdatedAt(), result.getContractTemplateUpdatedAt());
+        verify(productConnectorMock, times(1)).findContractTemplatesById(productId, InstitutionType.PT);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductContractTemplate_inactive() {
+        // given
+        String productId = "productId";
+        ProductOperations productMock = new DummyProduct();
+        productMock.setStatus(ProductStatus.INACTIVE);
+        when(productConnectorMock.findContractTemplatesById(Mockito.anyString(), Mockito.any()))
+                .thenReturn(Optional.of(productMock));
+        // when
+        Executable executable = () -> productService.getProductContractTemplate(productId, null);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(productConnectorMock, times(1)).findContractTemplatesById(productId, null);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+
     @Test
     void updateProduct_nullId() {
         // given
@@ -641,189 +914,93 @@ class ProductServiceImplTest {
 
 
     @Test
-    void updateProduct_foundProductActiveDiffVersionContract() {
+    void updateProduct() {
         // given
         String productId = "productId";
         ProductOperations product = mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId", "setStatus");
-        product.setStatus(ProductStatus.ACTIVE);
-        when(productConnectorMock.findById(productId))
-                .thenAnswer(invocationOnMock -> {
-                    DummyProduct foundProductMock = new DummyProduct();
-                    foundProductMock.setId(invocationOnMock.getArgument(0, String.class));
-                    foundProductMock.setContractTemplateVersion("1.2.4");
-                    foundProductMock.setStatus(ProductStatus.ACTIVE);
-                    Map<InstitutionType, ContractOperations> institutionContract1 = new HashMap<>();
-                    DummyContract dummyContract = mockInstance(new DummyContract());
-                    dummyContract.setContractTemplateVersion("123");
-                    institutionContract1.put(InstitutionType.PA, dummyContract);
-                    foundProductMock.setInstitutionContractMappings(institutionContract1);
-                    return Optional.of(foundProductMock);
-                });
+        product.setVersion(7L);
         EnumMap<PartyRole, DummyProductRoleInfo> map = new EnumMap<>(PartyRole.class);
         List<DummyProductRole> list = new ArrayList<>();
         list.add(mockInstance(new DummyProductRole(), 1));
         list.add(mockInstance(new DummyProductRole(), 2));
         map.put(PartyRole.OPERATOR, new DummyProductRoleInfo(true, list));
         product.setRoleMappings(map);
-        product.setContractTemplateVersion("1.24");
         product.setBackOfficeEnvironmentConfigurations(Map.of("test", mockInstance(new DummyBackOfficeConfigurations())));
         Map<InstitutionType, ContractOperations> institutionContract = new HashMap<>();
         institutionContract.put(InstitutionType.PA, mockInstance(new DummyContract()));
         product.setInstitutionContractMappings(institutionContract);
-        when(productConnectorMock.save(any()))
-                .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0, ProductOperations.class));
+        ProductOperations updatedProduct = mockInstance(new DummyProduct(), "setRoleMappings");
+        when(productConnectorMock.updateProduct(any()))
+                .thenReturn(updatedProduct);
         // when
         ProductOperations savedProduct = productService.updateProduct(productId, product);
         // then
-        assertNull(savedProduct.getLogo());
-        assertEquals(savedProduct.getTitle(), product.getTitle());
-        assertEquals(savedProduct.getDescription(), product.getDescription());
-        assertEquals(savedProduct.getUrlPublic(), product.getUrlPublic());
-        assertEquals(savedProduct.getUrlBO(), product.getUrlBO());
-        assertEquals(savedProduct.getRoleMappings(), product.getRoleMappings());
-        assertEquals(savedProduct.getLogoBgColor(), product.getLogoBgColor());
-        assertEquals(savedProduct.getContractTemplatePath(), product.getContractTemplatePath());
-        assertEquals(savedProduct.getContractTemplateVersion(), product.getContractTemplateVersion());
-        assertEquals(savedProduct.getBackOfficeEnvironmentConfigurations(), product.getBackOfficeEnvironmentConfigurations());
-        verify(productConnectorMock, times(1)).findById(productId);
-        verify(productConnectorMock, times(1)).save(any());
+        assertSame(updatedProduct, savedProduct);
+        ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
+        verify(productConnectorMock, times(1)).updateProduct(productCaptor.capture());
+        assertSame(product, productCaptor.getValue());
+        assertEquals(productId, productCaptor.getValue().getId());
+        assertEquals(7L, productCaptor.getValue().getVersion());
         verifyNoMoreInteractions(productConnectorMock);
+        assertEquals(List.of(new ProductChangeEvent(ProductChangeType.UPDATE, productId, updatedProduct)),
+                applicationEvents.stream(ProductChangeEvent.class).collect(Collectors.toList()));
     }
 
 
     @Test
-    void updateProduct_foundProductActiveSameVersionContract() {
+    void updateProduct_invalidRoleMappings() {
         // given
         String productId = "productId";
-        String contractTemplateVersion = "1.2.4";
-        when(productConnectorMock.findById(productId))
-                .thenAnswer(invocationOnMock -> {
-                    DummyProduct foundProductMock = new DummyProduct();
-                    foundProductMock.setId(invocationOnMock.getArgument(0, String.class));
-                    foundProductMock.setContractTemplateVersion(contractTemplateVersion);
-                    foundProductMock.setStatus(ProductStatus.ACTIVE);
-                    Map<InstitutionType, ContractOperations> institutionContract = new HashMap<>();
-                    DummyContract dummyContract = mockInstance(new DummyContract());
-                    dummyContract.setContractTemplateVersion(contractTemplateVersion);
-                    institutionContract.put(InstitutionType.PA, dummyContract);
-                    foundProductMock.setInstitutionContractMappings(institutionContract);
-                    return Optional.of(foundProductMock);
-                });
+        ProductOperations product = mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setParentId", "setStatus");
         EnumMap<PartyRole, DummyProductRoleInfo> map = new EnumMap<>(PartyRole.class);
         List<DummyProductRole> list = new ArrayList<>();
         list.add(mockInstance(new DummyProductRole(), 1));
         list.add(mockInstance(new DummyProductRole(), 2));
-        map.put(PartyRole.OPERATOR, new DummyProductRoleInfo(true, list));
-        ProductOperations product = mockInstance(new DummyProduct(), "setId",
-                "setRoleMappings",
-                "setContractTemplateVersion",
-                "setParentId",
-                "setStatus");
+        map.put(PartyRole.MANAGER, new DummyProductRoleInfo(true, list));
         product.setRoleMappings(map);
-        product.setContractTemplateVersion(contractTemplateVersion);
-        product.setBackOfficeEnvironmentConfigurations(Map.of("test", mockInstance(new DummyBackOfficeConfigurations())));
-        product.setStatus(ProductStatus.ACTIVE);
-        Map<InstitutionType, ContractOperations> institutionContract = new HashMap<>();
-        DummyContract dummyContract = mockInstance(new DummyContract());
-        dummyContract.setContractTemplateVersion(contractTemplateVersion);
-        institutionContract.put(InstitutionType.PA, dummyContract);
-        product.setInstitutionContractMappings(institutionContract);
-        when(productConnectorMock.save(any()))
-                .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0, ProductOperations.class));
-        // when
-        ProductOperations savedProduct = productService.updateProduct(productId, product);
-        // then
-        assertNull(savedProduct.getLogo());
-        assertEquals(savedProduct.getTitle(), product.getTitle());
-        assertEquals(savedProduct.getDescription(), product.getDescription());
-        assertEquals(savedProduct.getUrlPublic(), product.getUrlPublic());
-        assertEquals(savedProduct.getUrlBO(), product.getUrlBO());
-        assertEquals(savedProduct.getLogoBgColor(), product.getLogoBgColor());
-        assertEquals(savedProduct.getRoleMappings(), product.getRoleMappings());
-        assertEquals(savedProduct.getContractTemplatePath(), product.getContractTemplatePath());
-        assertEquals(savedProduct.getContractTemplateVersion(), product.getContractTemplateVersion());
-        assertEquals(savedProduct.getBackOfficeEnvironmentConfigurations(), product.getBackOfficeEnvironmentConfigurations());
-        verify(productConnectorMock, times(1)).findById(productId);
-        verify(productConnectorMock, times(1)).save(any());
-        verifyNoMoreInteractions(productConnectorMock);
-    }
-
-    @Test
-    void updateProduct_foundProductInactive() {
-        // given
-        String productId = "productId";
-        ProductOperations product = mockInstance(new DummyProduct(), "setId", "setRoleMappings", "setStatus");
-        product.setStatus(ProductStatus.INACTIVE);
-        when(productConnectorMock.findById(Mockito.anyString()))
-                .thenReturn(Optional.of(product));
         // when
         Executable executable = () -> productService.updateProduct(productId, product);
         // then
-        assertThrows(ResourceNotFoundException.class, executable);
-        verify(productConnectorMock, times(1)).findById(productId);
-        verifyNoMoreInteractions(productConnectorMock);
+        assertThrows(InvalidRoleMappingException.class, executable);
+        verifyNoInteractions(productConnectorMock);
     }
 
+
     @Test
     void updateProduct_notExists() {
         // given
         String productId = "productId";
         ProductOperations product = new DummyProduct();
+        when(productConnectorMock.updateProduct(any()))
+                .thenThrow(ResourceNotFoundException.class);
         // when
         Executable executable = () -> productService.updateProduct(productId, product);
         // then
         assertThrows(ResourceNotFoundException.class, executable);
-        verify(productConnectorMock, times(1)).findById(productId);
+        verify(productConnectorMock, times(1)).updateProduct(product);
         verifyNoMoreInteractions(productConnectorMock);
+        assertEquals(0, applicationEvents.stream(ProductChangeEvent.class).count());
     }
 
+
     @Test
     void updateProduct_subProduct() {
         // given
         String productId = "productId";
-        String parentId = "parentId";
-        String contractTemplateVersion = "1.2.4";
-        when(productConnectorMock.findById(productId))
-                .thenAnswer(invocationOnMock -> {
-                    DummyProduct foundProductMock = new DummyProduct();
-                    foundProductMock.setId(invocationOnMock.getArgument(0, String.class));
-                    foundProductMock.setContractTemplateVersion(contractTemplateVersion);
-                    foundProductMock.setParentId(parentId);
-                    foundProductMock.setStatus(ProductStatus.ACTIVE);
-                    Map<InstitutionType, ContractOperations> institutionContract = new HashMap<>();
-                    institutionContract.put(InstitutionType.PA, mockInstance(new DummyContract()));
-                    foundProductMock.setInstitutionContractMappings(institutionContract);
-                    return Optional.of(foundProductMock);
-                });
-        ProductOperations product = mockInstance(new DummyProduct(),
-                "setId",
-                "setRoleMappings",
-                "setContractTemplateVersion",
-                "setStatus"
-        );
-        product.setContractTemplateVersion(contractTemplateVersion);
-        product.setStatus(ProductStatus.ACTIVE);
-        Map<InstitutionType, ContractOperations> institutionContract = new HashMap<>();
-        DummyContract dummyContract = mockInstance(new DummyContract());
-        dummyContract.setContractTemplateVersion(contractTemplateVersion);
-        institutionContract.put(InstitutionType.PA, dummyContract);
-        product.setInstitutionContractMappings(institutionContract);
-        when(productConnectorMock.save(any()))
+        ProductOperations product = new DummyProduct();
+        product.setTitle("title");
+        product.setContractTemplatePath("path");
+        product.setContractTemplateVersion("1.2.4");
+        when(productConnectorMock.updateProduct(any()))
                 .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0, ProductOperations.class));
         // when
         ProductOperations savedProduct = productService.updateProduct(productId, product);
         //then
-        assertEquals(savedProduct.getTitle(), product.getTitle());
-        assertEquals(savedProduct.getDescription(), product.getDescription());
-        assertEquals(savedProduct.getUrlPublic(), product.getUrlPublic());
-        assertEquals(savedProduct.getUrlBO(), product.getUrlBO());
+        assertEquals(productId, savedProduct.getId());
         assertNull(savedProduct.getRoleMappings());
-        assertEquals(savedProduct.getContractTemplatePath(), product.getContractTemplatePath());
-        assertEquals(savedProduct.getContractTemplateVersion(), product.getContractTemplateVersion());
-        verify(productConnectorMock, times(1)).findById(productId);
-        verify(productConnectorMock, times(1)).save(any());
+        assertNull(savedProduct.getVersion());
+        verify(productConnectorMock, times(1)).updateProduct(product);
         verifyNoMoreInteractions(productConnectorMock);
-
     }
 
     @Test
@@ -839,6 +1016,20 @@ class ProductServiceImplTest {
         verifyNoInteractions(productConnectorMock);
     }
 
+    @Test
+    void updateProductStatus_failureNotPublished() {
+        // given
+        String id = "id";
+        doThrow(ResourceNotFoundException.class)
+                .when(productConnectorMock)
+                .updateProductStatus(any(), any());
+        // when
+        Executable executable = () -> productService.updateProductStatus(id, ProductStatus.PHASE_OUT);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        assertEquals(0, applicationEvents.stream(ProductChangeEvent.class).count());
+    }
+
     @Test
     void updateProductStatus_nullStatus() {
         // given
@@ -863,6 +1054,8 @@ class ProductServiceImplTest {
         assertDoesNotThrow(executable);
         verify(productConnectorMock, times(1)).updateProductStatus(id, status);
         verifyNoMoreInteractions(productConnectorMock);
+        assertEquals(List.of(new ProductChangeEvent(ProductChangeType.STATUS_CHANGE, id, null)),
+                applicationEvents.stream(ProductChangeEvent.class).collect(Collectors.toList()));
     }
 
     @Test
@@ -873,7 +1066,7 @@ class ProductServiceImplTest {
         String contentType = "contentType";
         String filename = "filename";
         // when
-        Executable executable = () -> productService.saveProductLogo(productId, logo, contentType, filename);
+        Executable executable = () -> productService.saveProductLogo(productId, logo, 0L, contentType, filename);
         // then
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class, executable);
         Assertions.assertEquals("A product id is required", e.getMessage());
@@ -893,17 +1086,20 @@ class ProductServiceImplTest {
         when(productConnectorMock.findById(Mockito.anyString()))
                 .thenReturn(Optional.of(product));
         //when
-        Executable executable = () -> productService.saveProductLogo(productId, depictImage, contentType, fileName);
+        Executable executable = () -> productService.saveProductLogo(productId, depictImage, 0L, contentType, fileName);
         //then
         assertDoesNotThrow(executable);
         ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
         verify(productLogoImageServiceMock, times(1))
-                .saveImage(productCaptor.capture(), Mockito.eq(depictImage), Mockito.eq(contentType), Mockito.eq(fileName));
+                .saveImage(productCaptor.capture(), Mockito.eq(depictImage), Mockito.eq(0L), Mockito.eq(contentType), Mockito.eq(fileName));
         ProductOperations capturedProduct = productCaptor.getValue();
         TestUtils.reflectionEqualsByName(product, capturedProduct);
         verify(productConnectorMock, times(1))
                 .findById(productId);
         verifyNoMoreInteractions(productLogoImageServiceMock, productConnectorMock);
+        assertEquals(List.of(ProductChangeType.UPDATE), applicationEvents.stream(ProductChangeEvent.class)
+                .map(ProductChangeEvent::getType)
+                .collect(Collectors.toList()));
 
     }
 
@@ -915,7 +1111,7 @@ class ProductServiceImplTest {
         String contentType = "contentType";
         String filename = "filename";
         // when
-        Executable executable = () -> productService.saveProductDepictImage(productId, depictImage, contentType, filename);
+        Executable executable = () -> productService.saveProductDepictImage(productId, depictImage, 0L, contentType, filename);
         // then
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class, executable);
         Assertions.assertEquals("A product id is required", e.getMessage());
@@ -935,12 +1131,12 @@ class ProductServiceImplTest {
         when(productConnectorMock.findById(Mockito.anyString()))
                 .thenReturn(Optional.of(product));
         //when
-        Executable executable = () -> productService.saveProductDepictImage(productId, depictImage, contentType, fileName);
+        Executable executable = () -> productService.saveProductDepictImage(productId, depictImage, 0L, contentType, fileName);
         //then
         assertDoesNotThrow(executable);
         ArgumentCaptor<ProductOperations> productCaptor = ArgumentCaptor.forClass(ProductOperations.class);
         verify(productDepictImageServiceMock, times(1))
-                .saveImage(productCaptor.capture(), Mockito.eq(depictImage), Mockito.eq(contentType), Mockito.eq(fileName));
+                .saveImage(productCaptor.capture(), Mockito.eq(depictImage), Mockito.eq(0L), Mockito.eq(contentType), Mockito.eq(fileName));
         ProductOperations capturedProduct = productCaptor.getValue();
         TestUtils.reflectionEqualsByName(product, capturedProduct);
         verify(productConnectorMock, times(1))
@@ -961,16 +1157,16 @@ class ProductServiceImplTest {
        ProductOperations baseProduct = new DummyProduct();
        baseProduct.setId(baseProductId);
        baseProduct.setStatus(ProductStatus.ACTIVE);
-       when(productConnectorMock.findById(productId))
+       foundProduct.setProductOperations(baseProduct);
+       when(productConnectorMock.findByIdWithParent(productId))
                .thenReturn(Optional.of(foundProduct));
-       when(productConnectorMock.findById(baseProductId))
-               .thenReturn(Optional.of(baseProduct));
        // when
        ProductOperations product = productService.getProductIsValid(productId);
        // then
        assertNotNull(product);
-       verify(productConnectorMock, times(1)).findById(productId);
-       verify(productConnectorMock, times(1)).findById(baseProductId);
+       assertSame(baseProduct, product.getProductOperations());
+       verify(productConnectorMock, times(1)).findByIdWithParent(productId);
+       verifyNoMoreInteractions(productConnectorMock);
    }
 
     @Test
@@ -985,16 +1181,15 @@ class ProductServiceImplTest {
         ProductOperations baseProduct = new DummyProduct();
         baseProduct.setId(baseProductId);
         baseProduct.setStatus(ProductStatus.PHASE_OUT);
-        when(productConnectorMock.findById(productId))
+        foundProduct.setProductOperations(baseProduct);
+        when(productConnectorMock.findByIdWithParent(productId))
                 .thenReturn(Optional.of(foundProduct));
-        when(productConnectorMock.findById(baseProductId))
-                .thenReturn(Optional.of(baseProduct));
         // when
         ProductOperations product = productService.getProductIsValid(productId);
         // then
         assertNull(product);
-        verify(productConnectorMock, times(1)).findById(productId);
-        verify(productConnectorMock, times(1)).findById(baseProductId);
+        verify(productConnectorMock, times(1)).findByIdWithParent(productId);
+        verifyNoMoreInteractions(productConnectorMock);
     }
 
     @Test
@@ -1004,13 +1199,13 @@ class ProductServiceImplTest {
         ProductOperations foundProduct = new DummyProduct();
         foundProduct.setId(productId);
         foundProduct.setStatus(ProductStatus.ACTIVE);
-        when(productConnectorMock.findById(productId))
+        when(productConnectorMock.findByIdWithParent(productId))
                 .thenReturn(Optional.of(foundProduct));
         // when
         ProductOperations product = productService.getProductIsValid(productId);
         // then
         assertNotNull(product);
-        verify(productConnectorMock, times(1)).findById(productId);
+        verify(productConnectorMock, times(1)).findByIdWithParent(productId);
         verifyNoMoreInteractions(productConnectorMock);
     }
 
@@ -1021,13 +1216,31 @@ class ProductServiceImplTest {
         ProductOperations foundProduct = new DummyProduct();
         foundProduct.setId(productId);
         foundProduct.setStatus(ProductStatus.PHASE_OUT);
-        when(productConnectorMock.findById(productId))
+        when(productConnectorMock.findByIdWithParent(productId))
                 .thenReturn(Optional.of(foundProduct));
         // when
         ProductOperations product = productService.getProductIsValid(productId);
         // then
         assertNull(product);
-        verify(productConnectorMock, times(1)).findById(productId);
+        verify(productConnectorMock, times(1)).findByIdWithParent(productId);
+        verifyNoMoreInteractions(productConnectorMock);
+    }
+
+    @Test
+    void getProductIsValid_baseProductNotFound() {
+        //given
+        String productId = "prod-io-premium";
+        ProductOperations foundProduct = new DummyProduct();
+        foundProduct.setId(productId);
+        foundProduct.setStatus(ProductStatus.ACTIVE);
+        foundProduct.setParentId("prod-io");
+        when(productConnectorMock.findByIdWithParent(productId))
+                .thenReturn(Optional.of(foundProduct));
+        // when
+        Executable executable = () -> productService.getProductIsValid(productId);
+        // then
+        assertThrows(ResourceNotFoundException.class, executable);
+        verify(productConnectorMock, times(1)).findByIdWithParent(productId);
         verifyNoMoreInteractions(productConnectorMock);
     }
 
@@ -0,0 +1,88 @@
+package it.pagopa.selfcare.product.core.image;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageRenditionsTest {
+
+    @Test
+    void isSupported() {
+        assertTrue(ImageRenditions.isSupported(MimeTypeUtils.IMAGE_PNG_VALUE));
+        assertTrue(ImageRenditions.isSupported(MimeTypeUtils.IMAGE_JPEG_VALUE));
+        assertFalse(ImageRenditions.isSupported("image/svg+xml"));
+        assertFalse(ImageRenditions.isSupported(null));
+    }
+
+
+    @Test
+    void render_png() throws IOException {
+        // given
+        byte[] image = encode(new BufferedImage(600, 300, BufferedImage.TYPE_INT_ARGB), "png");
+        // when
+        SortedMap<Integer, byte[]> renditions = ImageRenditions.render(image, MimeTypeUtils.IMAGE_PNG_VALUE, List.of(512, 64, 128, 600, 1024));
+        // then
+        assertEquals(List.of(64, 128, 512), List.copyOf(renditions.keySet()));
+        for (Integer width : renditions.keySet()) {
+            BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(renditions.get(width)));
+            assertEquals(width, rendition.getWidth());
+            assertEquals(width / 2, rendition.getHeight());
+            assertTrue(rendition.getColorModel().hasAlpha());
+        }
+    }
+
+
+    @Test
+    void render_jpeg() throws IOException {
+        // given
+        byte[] image = encode(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "jpeg");
+        // when
+        SortedMap<Integer, byte[]> renditions = ImageRenditions.render(image, MimeTypeUtils.IMAGE_JPEG_VALUE, List.of(64, 512));
+        // then
+        assertEquals(List.of(64), List.copyOf(renditions.keySet()));
+        BufferedImage rendition = ImageIO.read(new ByteArrayInputStream(renditions.get(64)));
+        assertEquals(64, rendition.getWidth());
+        assertEquals(43, rendition.getHeight());
+    }
+
+
+    @Test
+    void render_notAnImage() throws IOException {
+        // given
+        byte[] image = "not an image".getBytes(StandardCharsets.UTF_8);
+        // when
+        SortedMap<Integer, byte[]> renditions = ImageRenditions.render(image, MimeTypeUtils.IMAGE_PNG_VALUE, List.of(64));
+        // then
+        assertTrue(renditions.isEmpty());
+    }
+
+
+    @Test
+    void scale_keepsAspectRatio() {
+        // given
+        BufferedImage source = new BufferedImage(1000, 10, BufferedImage.TYPE_INT_RGB);
+        // when
+        BufferedImage scaled = ImageRenditions.scale(source, 64, BufferedImage.TYPE_INT_RGB);
+        // then
+        assertEquals(64, scaled.getWidth());
+        assertEquals(1, scaled.getHeight());
+    }
+
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+}
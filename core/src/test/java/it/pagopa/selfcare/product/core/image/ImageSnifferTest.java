@@ -0,0 +1,75 @@
+package it.pagopa.selfcare.product.core.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageSnifferTest {
+
+    @Test
+    void sniff_png() throws IOException {
+        // given
+        byte[] image = encode(new BufferedImage(600, 300, BufferedImage.TYPE_INT_ARGB), "png");
+        // when
+        Optional<ImageInfo> imageInfo = ImageSniffer.sniff(Arrays.copyOf(image, 32));
+        // then
+        assertEquals(Optional.of(new ImageInfo(ImageFormat.PNG, 600, 300)), imageInfo);
+    }
+
+
+    @Test
+    void sniff_jpeg() throws IOException {
+        // given
+        byte[] image = encode(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "jpeg");
+        // when
+        Optional<ImageInfo> imageInfo = ImageSniffer.sniff(image);
+        // then
+        assertEquals(Optional.of(new ImageInfo(ImageFormat.JPEG, 300, 200)), imageInfo);
+    }
+
+
+    @Test
+    void sniff_jpegFrameHeaderMissing() throws IOException {
+        // given
+        byte[] image = encode(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "jpeg");
+        // when
+        Optional<ImageInfo> imageInfo = ImageSniffer.sniff(Arrays.copyOf(image, 4));
+        // then
+        assertEquals(Optional.of(new ImageInfo(ImageFormat.JPEG, 0, 0)), imageInfo);
+    }
+
+
+    @Test
+    void sniff_svg() {
+        // given
+        byte[] image = "\uFEFF\n<?xml version=\"1.0\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8);
+        // when
+        Optional<ImageInfo> imageInfo = ImageSniffer.sniff(image);
+        // then
+        assertEquals(Optional.of(new ImageInfo(ImageFormat.SVG, 0, 0)), imageInfo);
+    }
+
+
+    @Test
+    void sniff_unrecognized() {
+        assertTrue(ImageSniffer.sniff("<html><body/></html>".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        assertTrue(ImageSniffer.sniff("GIF89a".getBytes(StandardCharsets.US_ASCII)).isEmpty());
+        assertTrue(ImageSniffer.sniff(new byte[0]).isEmpty());
+    }
+
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+}
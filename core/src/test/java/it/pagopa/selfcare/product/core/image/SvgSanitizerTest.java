@@ -0,0 +1,61 @@
+package it.pagopa.selfcare.product.core.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SvgSanitizerTest {
+
+    @Test
+    void sanitize() throws XMLStreamException {
+        // given
+        String svg = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+                + "<!-- Created with Inkscape -->\n"
+                + "<svg xmlns:inkscape=\"http://www.inkscape.org/namespaces/inkscape\" xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n"
+                + "     xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"\n"
+                + "     width=\"10\" height=\"10\" inkscape:version=\"1.0\" onload=\"alert(1)\">\n"
+                + "  <metadata><rdf:RDF/></metadata>\n"
+                + "  <script>alert(1)</script>\n"
+                + "  <defs>\n    <linearGradient id=\"g\"/>\n  </defs>\n"
+                + "  <g inkscape:label=\"Layer 1\">\n"
+                + "    <path d=\"M 0,0\n      L 10,10\" fill=\"url(#g)\"/>\n"
+                + "    <use xlink:href=\"#g\"/>\n"
+                + "    <a href=\"javascript:alert(1)\"><text x=\"1\">Hello   <tspan>world</tspan></text></a>\n"
+                + "    <set attributeName=\"href\" to=\"javascript:alert(1)\"/>\n"
+                + "  </g>\n"
+                + "</svg>\n";
+        // when
+        byte[] sanitized = SvgSanitizer.sanitize(svg.getBytes(StandardCharsets.UTF_8));
+        // then
+        assertEquals("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\">"
+                        + "<defs><linearGradient id=\"g\"></linearGradient></defs>"
+                        + "<g><path d=\"M 0,0 L 10,10\" fill=\"url(#g)\"></path>"
+                        + "<use xmlns:xlink=\"http://www.w3.org/1999/xlink\" xlink:href=\"#g\"></use>"
+                        + "<a><text x=\"1\">Hello <tspan>world</tspan></text></a></g></svg>",
+                new String(sanitized, StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    void sanitize_externalEntity() {
+        // given
+        byte[] svg = ("<!DOCTYPE svg [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\"><text>&x;</text></svg>").getBytes(StandardCharsets.UTF_8);
+        // when
+        Executable executable = () -> SvgSanitizer.sanitize(svg);
+        // then
+        assertThrows(XMLStreamException.class, executable);
+    }
+
+
+    @Test
+    void sanitize_notSvg() {
+        assertThrows(XMLStreamException.class, () -> SvgSanitizer.sanitize("<html/>".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(XMLStreamException.class, () -> SvgSanitizer.sanitize("<svg><g></svg>".getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,230 @@
+package it.pagopa.selfcare.product.web.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.web.model.ProductMediaTypes;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds the already serialized body of the catalog list endpoints in each supported {@link Format},
+ * both as it is and gzip compressed.
+ * Every entry is bound to the {@link CatalogVersion} it has been built from, so a write made by any replica
+ * makes it stale; {@link #invalidate()} drops all the entries right away after a local write.
+ * An entry is built once per version: the requests arriving while it is being built wait for it instead of
+ * serializing the catalog themselves.
+ */
+@Slf4j
+public class ProductResponseCache {
+
+    public enum View {
+        PRODUCTS,
+        TREE
+    }
+
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON),
+        CBOR(MediaType.APPLICATION_CBOR),
+        SMILE(ProductMediaTypes.APPLICATION_SMILE);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+
+        /**
+         * @return the format preferred by the given Accept header value, JSON when it does not prefer any other
+         */
+        public static Format negotiate(String accept) {
+            if (accept == null || accept.isBlank()) {
+                return JSON;
+            }
+            final List<MediaType> acceptedTypes;
+            try {
+                acceptedTypes = MediaType.parseMediaTypes(accept);
+            } catch (InvalidMediaTypeException e) {
+                return JSON;
+            }
+            MediaType.sortBySpecificityAndQuality(acceptedTypes);
+            for (MediaType acceptedType : acceptedTypes) {
+                for (Format format : values()) {
+                    if (acceptedType.includes(format.mediaType)) {
+                        return format;
+                    }
+                }
+            }
+            return JSON;
+        }
+    }
+
+    private final Map<Format, ObjectMapper> objectMappers;
+    private final Map<View, Map<Format, Slot>> entries = new ConcurrentHashMap<>();
+
+
+    public ProductResponseCache(ObjectMapper objectMapper) {
+        this(Map.of(Format.JSON, objectMapper));
+    }
+
+
+    /**
+     * @param objectMappers the mapper writing each of the supported formats
+     */
+    public ProductResponseCache(Map<Format, ObjectMapper> objectMappers) {
+        this.objectMappers = new EnumMap<>(objectMappers);
+    }
+
+
+    /**
+     * @param catalogVersion the version read before loading the body, so an entry is never newer than its version
+     * @param body           supplies the resources to serialize when there is no entry for the given version
+     */
+    public Entry get(View view, Format format, CatalogVersion catalogVersion, Supplier<?> body) {
+        log.trace("get start");
+        log.debug("get view = {}, format = {}, catalogVersion = {}", view, format, catalogVersion);
+        final ObjectMapper objectMapper = objectMappers.get(format);
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("Unsupported format " + format);
+        }
+        final Map<Format, Slot> viewEntries = entries.computeIfAbsent(view, v -> new ConcurrentHashMap<>());
+        final FutureTask<Entry> task = new FutureTask<>(() -> new Entry(catalogVersion, format, serialize(objectMapper, body.get())));
+        final Slot slot = viewEntries.compute(format, (f, current) ->
+                current != null && current.catalogVersion.equals(catalogVersion) ? current : new Slot(catalogVersion, task));
+        if (slot.task == task) {
+            task.run();
+        }
+        final Entry entry;
+        try {
+            entry = slot.task.get();
+        } catch (ExecutionException e) {
+            viewEntries.remove(format, slot);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the catalog response", e);
+        }
+        if (slot.task == task) {
+            log.debug("get cached {} bytes, gzip {} bytes", entry.getBody().length, entry.getGzip().length);
+        }
+        log.trace("get end");
+        return entry;
+    }
+
+
+    public void invalidate() {
+        log.trace("invalidate");
+        entries.clear();
+    }
+
+
+    /**
+     * @return {@code true} when the given Accept-Encoding header value allows a gzip encoded response
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parameters = coding.split(";");
+            final String name = parameters[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < parameters.length; i++) {
+                final String parameter = parameters[i].replace(" ", "");
+                if (parameter.startsWith("q=")) {
+                    accepted = !parameter.substring(2).matches("0(\\.0*)?");
+                }
+            }
+            if ("gzip".equalsIgnoreCase(name)) {
+                gzip = accepted;
+            } else if ("*".equals(name)) {
+                any = accepted;
+            }
+        }
+        return gzip != null ? gzip : Boolean.TRUE.equals(any);
+    }
+
+
+    private static byte[] serialize(ObjectMapper objectMapper, Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize the catalog response", e);
+        }
+    }
+
+
+    /**
+     * The entry of a version, possibly still being built
+     */
+    private static final class Slot {
+
+        private final CatalogVersion catalogVersion;
+        private final FutureTask<Entry> task;
+
+
+        private Slot(CatalogVersion catalogVersion, FutureTask<Entry> task) {
+            this.catalogVersion = catalogVersion;
+            this.task = task;
+        }
+
+    }
+
+
+    @Getter
+    public static final class Entry {
+
+        private final CatalogVersion catalogVersion;
+        private final Format format;
+        private final byte[] body;
+        private final byte[] gzip;
+
+
+        private Entry(CatalogVersion catalogVersion, Format format, byte[] body) {
+            this.catalogVersion = catalogVersion;
+            this.format = format;
+            this.body = body;
+            this.gzip = gzip(body);
+        }
+
+
+        private static byte[] gzip(byte[] body) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 32);
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(compressed)) {
+                gzipStream.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return compressed.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package it.pagopa.selfcare.product.web.config;
+
+import it.pagopa.selfcare.product.connector.api.FileStorageConnector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the product images stored by the LocalFileStorage connector, under the same paths they would have
+ * on the blob storage public host.
+ * Images stored under content-addressed names can be cached for as long as the blob storage ones, those stored under
+ * a fixed name can be overwritten and only get a short max-age. The gzip sidecars are served to the clients accepting them.
+ */
+@Configuration
+@Profile("LocalFileStorage")
+class LocalFileStorageResourceConfig implements WebMvcConfigurer {
+
+    private static final String PRODUCT_IMAGES_PATH = "resources/products/";
+    private static final CacheControl CONTENT_ADDRESSED_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic();
+    private static final CacheControl MUTABLE_CACHE_CONTROL = CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic();
+
+    private final String basePath;
+
+
+    LocalFileStorageResourceConfig(@Value("${localStorage.basePath}") String basePath) {
+        this.basePath = basePath;
+    }
+
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        String location = Paths.get(basePath, PRODUCT_IMAGES_PATH).toAbsolutePath().normalize().toUri().toString();
+        if (!location.endsWith("/")) {
+            // the directory may not exist yet, in which case toUri does not add the trailing slash
+            location += "/";
+        }
+        registry.addResourceHandler("/" + PRODUCT_IMAGES_PATH + "**")
+                .addResourceLocations(location)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+
+
+    /**
+     * The resource handler has no cache control of its own, so it keeps the one chosen here from the file name.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                        CacheControl cacheControl = FileStorageConnector.isContentAddressed(request.getRequestURI())
+                                ? CONTENT_ADDRESSED_CACHE_CONTROL
+                                : MUTABLE_CACHE_CONTROL;
+                        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+                        return true;
+                    }
+                })
+                .addPathPatterns("/" + PRODUCT_IMAGES_PATH + "**");
+    }
+
+
+    @Bean
+    public WebSecurityCustomizer localFileStorageWebSecurityCustomizer() {
+        return web -> web.ignoring().antMatchers("/" + PRODUCT_IMAGES_PATH + "**");
+    }
+
+}
@@ -1,12 +1,104 @@
 package it.pagopa.selfcare.product.web.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import it.pagopa.selfcare.commons.web.config.BaseWebConfig;
+import it.pagopa.selfcare.product.web.cache.ProductResponseCache;
+import it.pagopa.selfcare.product.web.event.ProductEventBroadcaster;
+import it.pagopa.selfcare.product.web.model.ProductResource;
+import it.pagopa.selfcare.product.web.model.ProductResourceFields;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Besides JSON, the product reads are offered as CBOR and Smile to the callers asking for them in the Accept header,
+ * written by mappers built from the same Spring Boot Jackson configuration as the JSON one.
+ */
 @Configuration
 @PropertySource("classpath:config/web-config.properties")
 @Import(BaseWebConfig.class)
-class WebConfig {
+class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * The {@link ProductResource} properties are written through a filter, selecting the ones asked for by the caller, if any
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productResourceFieldsCustomizer() {
+        return builder -> builder
+                .mixIn(ProductResource.class, ProductResourceFields.FilterMixIn.class)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build());
+    }
+
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build());
+    }
+
+
+    @Bean
+    public ProductResponseCache productResponseCache(ObjectMapper objectMapper,
+                                                     MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                                                     MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter) {
+        return new ProductResponseCache(Map.of(
+                ProductResponseCache.Format.JSON, objectMapper,
+                ProductResponseCache.Format.CBOR, cborHttpMessageConverter.getObjectMapper(),
+                ProductResponseCache.Format.SMILE, smileHttpMessageConverter.getObjectMapper()));
+    }
+
+
+    /**
+     * With the change stream enabled the product events come from it, so that the changes made by other replicas are streamed as well
+     */
+    @Bean
+    public ProductEventBroadcaster productEventBroadcaster(@Value("${product.change-stream.enabled:false}") boolean changeStreamEnabled,
+                                                           @Value("${product.events.buffer-size}") int bufferSize,
+                                                           @Value("${product.events.timeout}") Duration timeout,
+                                                           @Value("${product.events.heartbeat-interval}") Duration heartbeatInterval) {
+        return new ProductEventBroadcaster(changeStreamEnabled, bufferSize, timeout, heartbeatInterval);
+    }
+
+
+    /**
+     * The product reads are negotiated on the Accept header, so shared caches must key their entries on it
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                        if (HttpMethod.GET.matches(request.getMethod())) {
+                            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                        }
+                        return true;
+                    }
+                })
+                .addPathPatterns("/products/**");
+    }
+
 }
@@ -6,69 +6,171 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.tags.Tags;
 import it.pagopa.selfcare.commons.base.utils.InstitutionType;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
 import it.pagopa.selfcare.product.connector.model.PartyRole;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.core.ImageUploadService;
 import it.pagopa.selfcare.product.core.ProductService;
+import it.pagopa.selfcare.product.web.cache.ProductResponseCache;
 import it.pagopa.selfcare.product.web.model.*;
 import it.pagopa.selfcare.product.web.model.mapper.ProductResourceMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
+import javax.validation.ValidationException;
 import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @RestController
-@RequestMapping(value = "/products", produces = MediaType.APPLICATION_JSON_VALUE)
+@RequestMapping(value = "/products", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, ProductMediaTypes.APPLICATION_SMILE_VALUE})
 @Api(tags = "product")
 public class ProductController {
 
     private final ProductService productService;
     private final ProductResourceMapper productResourceMapper;
+    private final ProductResponseCache productResponseCache;
+    private final ImageUploadService imageUploadService;
+    private final int maxIds;
 
     @Autowired
-    public ProductController(ProductService productService, ProductResourceMapper productResourceMapper) {
+    public ProductController(ProductService productService,
+                             ProductResourceMapper productResourceMapper,
+                             ProductResponseCache productResponseCache,
+                             ImageUploadService imageUploadService,
+                             @Value("${product.ids.max-size}") int maxIds) {
         this.productService = productService;
         this.productResourceMapper = productResourceMapper;
+        this.productResponseCache = productResponseCache;
+        this.imageUploadService = imageUploadService;
+        this.maxIds = maxIds;
     }
 
 
     @GetMapping("/")
-    @ResponseStatus(HttpStatus.OK)
-    @ApiOperation(value = "", notes = "${swagger.product.operation.getProducts}")
-    public List<ProductResource> getProducts() {
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProducts}", response = ProductResource.class, responseContainer = "List")
+    public ResponseEntity<byte[]> getProducts(@ApiIgnore WebRequest request) {
         log.trace("getProducts start");
-        List<ProductOperations> products = productService.getProducts(true);
-        List<ProductResource> productResources = products.stream()
+        CatalogVersion catalogVersion = productService.getCatalogVersion();
+        ProductResponseCache.Format format = ProductResponseCache.Format.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        boolean gzip = ProductResponseCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (request.checkNotModified(getCatalogETag(catalogVersion, format, gzip))) {
+            log.trace("getProducts end, not modified");
+            return null;
+        }
+        ProductResponseCache.Entry response = productResponseCache.get(ProductResponseCache.View.PRODUCTS, format, catalogVersion, () ->
+                productService.getProducts(true).stream()
+                        .map(productResourceMapper::toResource)
+                        .collect(Collectors.toList()));
+        log.debug("getProducts result = {} bytes", response.getBody().length);
+        log.trace("getProducts end");
+        return toResponseEntity(response, gzip);
+    }
+
+
+    @GetMapping(value = "/", params = "ids")
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductsById}", response = ProductResource.class, responseContainer = "List")
+    public MappingJacksonValue getProductsById(@ApiParam("${swagger.product.model.ids}")
+                                               @RequestParam("ids")
+                                               List<String> ids,
+                                               @ApiParam("${swagger.product.model.institutionType}")
+                                               @RequestParam(value = "institutionType", required = false)
+                                               Optional<InstitutionType> institutionType,
+                                               @ApiParam("${swagger.product.model.fields}")
+                                               @RequestParam(value = "fields", required = false)
+                                               List<String> fields,
+                                               @ApiIgnore WebRequest request) {
+        log.trace("getProductsById start");
+        log.debug("getProductsById ids = {}, institutionType = {}, fields = {}", ids, institutionType, fields);
+        if (ids.size() > maxIds) {
+            throw new ValidationException(String.format("At most %d ids can be requested, %d given", maxIds, ids.size()));
+        }
+        Set<String> selectedFields = ProductResourceFields.of(fields);
+        List<ProductOperations> found = selectedFields == null
+                ? productService.getProductsById(ids, institutionType.orElse(null))
+                : productService.getProductsById(ids, institutionType.orElse(null), selectedFields);
+        if (request.checkNotModified(getWeakETag(found, request))) {
+            log.trace("getProductsById end, not modified");
+            return null;
+        }
+        List<ProductResource> products = found.stream()
                 .map(productResourceMapper::toResource)
                 .collect(Collectors.toList());
-        log.debug("getProducts result = {}", productResources);
-        log.trace("getProducts end");
-        return productResources;
+        log.debug("getProductsById result = {}", products);
+        log.trace("getProductsById end");
+        return ProductResourceFields.select(products, selectedFields);
     }
 
 
     @GetMapping("/tree")
-    @ResponseStatus(HttpStatus.OK)
-    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductsTree}")
-    public List<ProductTreeResource> getProductsTree() {
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductsTree}", response = ProductTreeResource.class, responseContainer = "List")
+    public ResponseEntity<byte[]> getProductsTree(@ApiIgnore WebRequest request) {
         log.trace("getProductsTree start");
-        List<ProductOperations> products = productService.getProducts(false);
-        List<ProductTreeResource> result = productResourceMapper.toTreeResource(products);
-        log.debug("getProductsTree result = {}", result);
+        CatalogVersion catalogVersion = productService.getCatalogVersion();
+        ProductResponseCache.Format format = ProductResponseCache.Format.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        boolean gzip = ProductResponseCache.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (request.checkNotModified(getCatalogETag(catalogVersion, format, gzip))) {
+            log.trace("getProductsTree end, not modified");
+            return null;
+        }
+        ProductResponseCache.Entry response = productResponseCache.get(ProductResponseCache.View.TREE, format, catalogVersion, () ->
+                productResourceMapper.toTreeResource(productService.getProductsTree()));
+        log.debug("getProductsTree result = {} bytes", response.getBody().length);
         log.trace("getProductsTree end");
-        return result;
+        return toResponseEntity(response, gzip);
+    }
+
+    @GetMapping("/changes")
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductChanges}")
+    public ProductChangesResource getProductChanges(@ApiParam(value = "${swagger.product.model.since}", example = "2023-01-01T00:00:00Z")
+                                                    @RequestParam("since")
+                                                    Instant since,
+                                                    @ApiIgnore WebRequest request) {
+        log.trace("getProductChanges start");
+        log.debug("getProductChanges since = {}", since);
+        List<ProductOperations> products = productService.getProductsModifiedAfter(since);
+        if (request.checkNotModified(getWeakETag(products, request))) {
+            log.trace("getProductChanges end, not modified");
+            return null;
+        }
+        Instant lastModifiedAt = products.stream()
+                .flatMap(product -> Stream.of(product.getModifiedAt(), product.getCreatedAt()))
+                .filter(Objects::nonNull)
+                .reduce(since, (latest, instant) -> instant.isAfter(latest) ? instant : latest);
+        ProductChangesResource changes = new ProductChangesResource();
+        changes.setCatalogVersion(lastModifiedAt.toEpochMilli());
+        changes.setLastModifiedAt(lastModifiedAt);
+        changes.setProducts(products.stream()
+                .map(productResourceMapper::toResource)
+                .collect(Collectors.toList()));
+        log.debug("getProductChanges result = {}", changes);
+        log.trace("getProductChanges end");
+        return changes;
     }
 
     @PutMapping(value = "/{id}/logo", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -81,7 +183,8 @@ public class ProductController {
 
         log.trace("saveProductLogo start");
         log.debug("saveProductLogo id = {}, logo = {}", id, logo);
-        productService.saveProductLogo(id, logo.getInputStream(), logo.getContentType(), logo.getOriginalFilename());
+        productService.saveProductLogo(id, logo.getInputStream(), logo.getSize(), logo.getContentType(), logo.getOriginalFilename());
+        productResponseCache.invalidate();
         log.trace("saveProductLogo end");
         return ResponseEntity.ok().build();
     }
@@ -95,45 +198,119 @@ public class ProductController {
                                          @RequestPart("depictImage") MultipartFile depictImage) throws IOException {
         log.trace("saveProductDepictImage start");
         log.debug("saveProductDepictImage id = {}, logo = {}", id, depictImage);
-        productService.saveProductDepictImage(id, depictImage.getInputStream(), depictImage.getContentType(), depictImage.getOriginalFilename());
+        productService.saveProductDepictImage(id, depictImage.getInputStream(), depictImage.getSize(), depictImage.getContentType(), depictImage.getOriginalFilename());
+        productResponseCache.invalidate();
         log.trace("saveProductDepictImage end");
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping(value = "/{id}/images/operations", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @ApiOperation(value = "", notes = "${swagger.product.operation.submitImageUpload}")
+    public ResponseEntity<ImageUploadOperationResource> submitImageUpload(@ApiParam("${swagger.product.model.id}")
+                                                                          @PathVariable("id") String id,
+                                                                          @ApiParam("${swagger.product.model.imageType}")
+                                                                          @RequestParam("imageType") ProductImageType imageType,
+                                                                          @ApiParam("${swagger.product.model.image}")
+                                                                          @RequestPart("image") MultipartFile image) {
+        log.trace("submitImageUpload start");
+        log.debug("submitImageUpload id = {}, imageType = {}, image = {}", id, imageType, image);
+        ImageUploadOperation operation = imageUploadService.submit(id, imageType, image.getSize(), image.getContentType(), image.getOriginalFilename(), image::transferTo);
+        ImageUploadOperationResource resource = productResourceMapper.toOperationResource(operation);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .path("/{operationId}")
+                .buildAndExpand(operation.getId())
+                .toUri();
+        log.debug("submitImageUpload result = {}", resource);
+        log.trace("submitImageUpload end");
+        return ResponseEntity.accepted().location(location).body(resource);
+    }
+
+    @GetMapping("/{id}/images/operations/{operationId}")
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getImageUploadOperation}")
+    public ImageUploadOperationResource getImageUploadOperation(@ApiParam("${swagger.product.model.id}")
+                                                                @PathVariable("id") String id,
+                                                                @ApiParam("${swagger.product.model.imageUploadOperation.id}")
+                                                                @PathVariable("operationId") String operationId) {
+        log.trace("getImageUploadOperation start");
+        log.debug("getImageUploadOperation id = {}, operationId = {}", id, operationId);
+        ImageUploadOperationResource resource = productResourceMapper.toOperationResource(imageUploadService.getOperation(id, operationId));
+        log.debug("getImageUploadOperation result = {}", resource);
+        log.trace("getImageUploadOperation end");
+        return resource;
+    }
+
     @Tags({@Tag(name = "product"), @Tag(name = "external-v2")})
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    @ApiOperation(value = "", notes = "${swagger.product.operation.getProduct}")
-    public ProductResource getProduct(@ApiParam("${swagger.product.model.id}")
-                                      @PathVariable("id")
-                                      String id,
-                                      @ApiParam("${swagger.product.model.institutionType}")
-                                      @RequestParam(value = "institutionType", required = false)
-                                      Optional<InstitutionType> institutionType) {
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProduct}", response = ProductResource.class)
+    public MappingJacksonValue getProduct(@ApiParam("${swagger.product.model.id}")
+                                          @PathVariable("id")
+                                          String id,
+                                          @ApiParam("${swagger.product.model.institutionType}")
+                                          @RequestParam(value = "institutionType", required = false)
+                                          Optional<InstitutionType> institutionType,
+                                          @ApiParam("${swagger.product.model.fields}")
+                                          @RequestParam(value = "fields", required = false)
+                                          List<String> fields,
+                                          @ApiIgnore WebRequest request) {
         log.trace("getProduct start");
-        log.debug("getProduct id = {}, institutionType = {}", id, institutionType);
-        ProductOperations product = productService.getProduct(id, institutionType.orElse(null));
+        log.debug("getProduct id = {}, institutionType = {}, fields = {}", id, institutionType, fields);
+        Set<String> selectedFields = ProductResourceFields.of(fields);
+        ProductOperations product = selectedFields == null
+                ? productService.getProduct(id, institutionType.orElse(null))
+                : productService.getProduct(id, institutionType.orElse(null), selectedFields);
+        if (request.checkNotModified(getWeakETag(List.of(product), request))) {
+            log.trace("getProduct end, not modified");
+            return null;
+        }
         ProductResource productResource = productResourceMapper.toResource(product);
         log.debug("getProduct result = {}", productResource);
         log.trace("getProduct end");
-        return productResource;
+        return ProductResourceFields.select(productResource, selectedFields);
     }
 
     @GetMapping("/{id}/role-mappings")
-    @ResponseStatus(HttpStatus.OK)
     @ApiOperation(value = "", notes = "${swagger.product.operation.getProductRoleMappings}")
     public Map<PartyRole, ProductRoleInfo> getProductRoles(@ApiParam("${swagger.product.model.id}")
                                                            @PathVariable("id")
-                                                           String id) {
+                                                           String id,
+                                                           @ApiIgnore WebRequest request) {
         log.trace("getProductRoles start");
         log.debug("getProductRoles id = {}", id);
-        EnumMap<PartyRole, ProductRoleInfo> productRoles = ProductResourceMapper.toRoleMappings(productService.getProduct(id, null).getRoleMappings());
+        ProductOperations product = productService.getProductRoleMappings(id);
+        if (request.checkNotModified(getWeakETag(List.of(product), request))) {
+            log.trace("getProductRoles end, not modified");
+            return null;
+        }
+        EnumMap<PartyRole, ProductRoleInfo> productRoles = ProductResourceMapper.toRoleMappings(product.getRoleMappings());
         log.debug("getProductRoles result = {}", productRoles);
         log.trace("getProductRoles end");
 
         return productRoles;
     }
 
+    @GetMapping("/{id}/contract-template")
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductContractTemplate}")
+    public ContractResource getProductContractTemplate(@ApiParam("${swagger.product.model.id}")
+                                                       @PathVariable("id")
+                                                       String id,
+                                                       @ApiParam("${swagger.product.model.institutionType}")
+                                                       @RequestParam(value = "institutionType", required = false)
+                                                       Optional<InstitutionType> institutionType,
+                                                       @ApiIgnore WebRequest request) {
+        log.trace("getProductContractTemplate start");
+        log.debug("getProductContractTemplate id = {}, institutionType = {}", id, institutionType);
+        ProductOperations product = productService.getProductContractTemplate(id, institutionType.orElse(null));
+        if (request.checkNotModified(getWeakETag(List.of(product), request))) {
+            log.trace("getProductContractTemplate end, not modified");
+            return null;
+        }
+        ContractResource contractResource = productResourceMapper.toContractResource(product);
+        log.debug("getProductContractTemplate result = {}", contractResource);
+        log.trace("getProductContractTemplate end");
+        return contractResource;
+    }
+
 
     @PostMapping(value = "/", consumes = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.CREATED)
@@ -144,6 +321,7 @@ public class ProductController {
         log.trace("createProduct start");
         log.debug("createProduct product = {}", product);
         ProductOperations p = productService.createProduct(productResourceMapper.fromDto(product));
+        productResponseCache.invalidate();
         ProductResource createdProduct = productResourceMapper.toResource(p);
         log.debug("createProduct result = {}", createdProduct);
         log.trace("createProduct end");
@@ -164,6 +342,7 @@ public class ProductController {
         ProductOperations productOps = productResourceMapper.fromDto(product);
         productOps.setParentId(id);
         ProductOperations p = productService.createProduct(productOps);
+        productResponseCache.invalidate();
         ProductResource createdProduct = productResourceMapper.toResource(p);
         log.debug("createProduct result = {}", createdProduct);
         log.trace("createProduct end");
@@ -183,6 +362,7 @@ public class ProductController {
         log.trace("updateProduct start");
         log.debug("updateProduct id = {}, product = {}", id, product);
         ProductOperations updatedProduct = productService.updateProduct(id, productResourceMapper.fromDto(product));
+        productResponseCache.invalidate();
         ProductResource result = productResourceMapper.toResource(updatedProduct);
         log.debug("updateProduct result = {}", result);
         log.trace("updateProduct end");
@@ -201,6 +381,7 @@ public class ProductController {
         log.trace("updateSubProduct start");
         log.debug("updateSubProduct id = {}, product = {}", id, product);
         ProductOperations updatedProduct = productService.updateProduct(id, productResourceMapper.fromDto(product));
+        productResponseCache.invalidate();
         ProductResource result = productResourceMapper.toResource(updatedProduct);
         log.debug("updateSubProduct result = {}", result);
         log.trace("updateSubProduct end");
@@ -220,6 +401,7 @@ public class ProductController {
         log.trace("updateProductStatus start");
         log.debug("updateProductStatus id = {}, status = {}", id, status);
         productService.updateProductStatus(id, status);
+        productResponseCache.invalidate();
         log.trace("updateProductStatus end");
     }
 
@@ -233,6 +415,7 @@ public class ProductController {
         log.trace("deleteProduct start");
         log.debug("deleteProduct id = {}", id);
         productService.deleteProduct(id);
+        productResponseCache.invalidate();
         log.trace("deleteProduct end");
     }
 
@@ -252,4 +435,56 @@ public class ProductController {
         } else return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+
+    /**
+     * The reads of the whole catalog share the same strong ETag, derived from the catalog version: it is cheap to compute,
+     * so a matching If-None-Match is answered with 304 before loading or mapping any product.
+     * {@link WebRequest#checkNotModified(String)} sets the ETag header and, when it matches, the 304 status:
+     * in that case the handler methods return {@code null}, and they must not declare a {@link ResponseStatus}
+     * that would override it.
+     * The binary formats and the gzip encoded representations are different entities, so they get their own ETag.
+     */
+    private static String getCatalogETag(CatalogVersion catalogVersion, ProductResponseCache.Format format, boolean gzip) {
+        return "\"" + Long.toHexString(catalogVersion.getCount()) + "-" + catalogVersion.getFingerprint()
+                + (format == ProductResponseCache.Format.JSON ? "" : "-" + format.name().toLowerCase())
+                + (gzip ? "-gzip" : "")
+                + "\"";
+    }
+
+
+    /**
+     * The reads serialized per request are left to the server response compression, which gives up on responses
+     * carrying a strong ETag, as the compressed body would share the ETag of the identity one: these reads get the
+     * weak form of the catalog ETag, still matched by the strong one in If-None-Match.
+     * The message converters negotiate the binary formats from the Accept header too, so the format is part of it.
+     */
+    private static String getWeakCatalogETag(CatalogVersion catalogVersion, WebRequest request) {
+        ProductResponseCache.Format format = ProductResponseCache.Format.negotiate(request.getHeader(HttpHeaders.ACCEPT));
+        return "W/" + getCatalogETag(catalogVersion, format, false);
+    }
+
+
+    /**
+     * The other reads get the weak ETag of the version of the products they have read, so that a missing product
+     * is reported before any 304, and the version of the whole catalog is not read on every request
+     */
+    private static String getWeakETag(Collection<? extends ProductOperations> products, WebRequest request) {
+        return getWeakCatalogETag(CatalogVersion.of(products), request);
+    }
+
+
+    /**
+     * The cached bytes are handed as they are to the message converter, which copies them to the response stream
+     */
+    private static ResponseEntity<byte[]> toResponseEntity(ProductResponseCache.Entry response, boolean gzip) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(response.getFormat().getMediaType())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(response.getGzip());
+        }
+        return builder.body(response.getBody());
+    }
+
 }
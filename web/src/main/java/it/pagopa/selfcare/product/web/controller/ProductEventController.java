@@ -0,0 +1,45 @@
+package it.pagopa.selfcare.product.web.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import it.pagopa.selfcare.product.web.event.ProductEventBroadcaster;
+import it.pagopa.selfcare.product.web.model.ProductEventResource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Slf4j
+@RestController
+@RequestMapping("/products")
+@Api(tags = "product")
+public class ProductEventController {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final ProductEventBroadcaster productEventBroadcaster;
+
+    @Autowired
+    public ProductEventController(ProductEventBroadcaster productEventBroadcaster) {
+        this.productEventBroadcaster = productEventBroadcaster;
+    }
+
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation(value = "", notes = "${swagger.product.operation.getProductEvents}", response = ProductEventResource.class)
+    public SseEmitter getProductEvents(@ApiParam("${swagger.product.model.lastEventId}")
+                                       @RequestHeader(value = LAST_EVENT_ID, required = false)
+                                       String lastEventId) {
+        log.trace("getProductEvents start");
+        log.debug("getProductEvents lastEventId = {}", lastEventId);
+        SseEmitter emitter = productEventBroadcaster.subscribe(lastEventId);
+        log.trace("getProductEvents end");
+        return emitter;
+    }
+
+}
@@ -0,0 +1,417 @@
+package it.pagopa.selfcare.product.web.event;
+
+import it.pagopa.selfcare.product.connector.api.ProductChangeListener;
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.web.model.ProductEventResource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the product changes to the subscribed clients as Server-Sent Events.
+ * The changes come from the MongoDB change stream when it is enabled, so that those made by other replicas are included,
+ * otherwise from the events published by the product service.
+ * <p>
+ * The most recent events are kept in a ring buffer, so a client reconnecting with the Last-Event-ID of an event still
+ * in the buffer receives the events it has missed. The events coming from the change stream have an id made of their
+ * cluster time, which is the same on every replica, so a client can be resumed by any of them; the other events have
+ * an id made of the boot id of this instance and of a sequence number, and can only be resumed by the same instance.
+ * A client that cannot be resumed, because it has been away too long or the changes it has missed are unknown to this
+ * instance, receives a {@value #RESYNC_EVENT} event instead and should reload the catalog.
+ * <p>
+ * The buffer and the subscribers are confined to a single dispatcher thread, which queues the events of every
+ * subscriber in order; the queues are written to the clients by a separate pool of sender threads, since a write
+ * blocks as long as the client does not read. A subscriber that falls more than the buffer size behind is completed,
+ * so that it reconnects and either resumes from the buffer or resyncs, without slowing down the other ones.
+ */
+@Slf4j
+public class ProductEventBroadcaster implements ProductChangeListener, DisposableBean {
+
+    static final String RESYNC_EVENT = "resync";
+    static final String CLUSTER_TIME_ID_PREFIX = "ct-";
+    private static final String HEARTBEAT_COMMENT = "heartbeat";
+
+    private final boolean changeStreamEnabled;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final String bootId;
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService senders;
+    private final Deque<BufferedEvent> buffer = new ArrayDeque<>();
+    private final Map<SseEmitter, Subscriber> subscribers = new LinkedHashMap<>();
+    private long sequence;
+    private Long latestClusterTime;
+    /**
+     * The cluster time after which no change has been missed, or {@code null} until a change arrives from the stream
+     */
+    private Long resumableClusterTime;
+
+
+    public ProductEventBroadcaster(boolean changeStreamEnabled, int bufferSize, Duration timeout, Duration heartbeatInterval) {
+        this.changeStreamEnabled = changeStreamEnabled;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.bootId = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "product-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final AtomicInteger senderCount = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "product-events-send-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher.scheduleWithFixedDelay(this::heartbeat,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * @param lastEventId the id of the last event received by the client, if it is reconnecting
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(timeout.toMillis()));
+    }
+
+
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        log.trace("subscribe start");
+        log.debug("subscribe lastEventId = {}", lastEventId);
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(emitter::complete);
+        dispatch(() -> {
+            final List<BufferedEvent> missed = findMissed(lastEventId);
+            final Subscriber subscriber = new Subscriber(emitter, missed == null ? null : parseClusterTime(lastEventId));
+            if (missed == null) {
+                subscriber.enqueue(SseEmitter.event().name(RESYNC_EVENT).id(currentId()).data(""));
+            } else {
+                missed.forEach(event -> subscriber.enqueue(event.toSseEvent()));
+            }
+            subscribers.put(emitter, subscriber);
+        });
+        log.trace("subscribe end");
+        return emitter;
+    }
+
+
+    @EventListener
+    public void onServiceEvent(ProductChangeEvent event) {
+        if (!changeStreamEnabled) {
+            publish(event);
+        }
+    }
+
+
+    @Override
+    public void onProductChange(ProductChangeEvent event) {
+        publish(event);
+    }
+
+
+    /**
+     * Single changes may have been missed: the buffer is dropped and the subscribers are told to reload the catalog
+     */
+    @Override
+    public void onCatalogResync() {
+        log.trace("onCatalogResync start");
+        dispatch(() -> {
+            sequence++;
+            buffer.clear();
+            resumableClusterTime = null;
+            new ArrayList<>(subscribers.values()).forEach(subscriber ->
+                    offer(subscriber, SseEmitter.event().name(RESYNC_EVENT).id(currentId()).data("")));
+        });
+        log.trace("onCatalogResync end");
+    }
+
+
+    private void publish(ProductChangeEvent event) {
+        log.trace("publish start");
+        log.debug("publish type = {}, productId = {}", event.getType(), event.getProductId());
+        final ProductEventResource resource = new ProductEventResource();
+        resource.setType(event.getType());
+        resource.setProductId(event.getProductId());
+        final Long clusterTime = changeStreamEnabled ? event.getClusterTime() : null;
+        dispatch(() -> {
+            sequence++;
+            if (clusterTime != null) {
+                latestClusterTime = clusterTime;
+                if (resumableClusterTime == null) {
+                    resumableClusterTime = clusterTime;
+                }
+            }
+            final BufferedEvent buffered = new BufferedEvent(sequence, clusterTime,
+                    clusterTime == null ? currentId() : toClusterTimeId(clusterTime), resource);
+            buffer.addLast(buffered);
+            while (buffer.size() > bufferSize) {
+                final BufferedEvent evicted = buffer.removeFirst();
+                if (evicted.clusterTime != null && resumableClusterTime != null) {
+                    resumableClusterTime = Math.max(resumableClusterTime, evicted.clusterTime);
+                }
+            }
+            new ArrayList<>(subscribers.values()).forEach(subscriber -> {
+                if (subscriber.accepts(buffered)) {
+                    offer(subscriber, buffered.toSseEvent());
+                }
+            });
+        });
+        log.trace("publish end");
+    }
+
+
+    /**
+     * @return the buffered events following the given one, or {@code null} if some of them are no longer buffered
+     */
+    private List<BufferedEvent> findMissed(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        if (lastEventId.startsWith(CLUSTER_TIME_ID_PREFIX)) {
+            return findMissedAfter(parseClusterTime(lastEventId));
+        }
+        final int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0 || !bootId.equals(lastEventId.substring(0, separator))) {
+            return null;
+        }
+        final long lastSequence;
+        try {
+            lastSequence = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        final long oldestSequence = buffer.isEmpty() ? sequence + 1 : buffer.getFirst().sequence;
+        if (lastSequence > sequence || lastSequence + 1 < oldestSequence) {
+            return null;
+        }
+        final List<BufferedEvent> missed = new ArrayList<>();
+        buffer.forEach(event -> {
+            if (event.sequence > lastSequence) {
+                missed.add(event);
+            }
+        });
+        return missed;
+    }
+
+
+    /**
+     * @return the buffered events following the given cluster time, or {@code null} if some changes may have been missed
+     */
+    private List<BufferedEvent> findMissedAfter(Long lastClusterTime) {
+        if (!changeStreamEnabled || lastClusterTime == null
+                || resumableClusterTime == null || lastClusterTime < resumableClusterTime) {
+            return null;
+        }
+        final List<BufferedEvent> missed = new ArrayList<>();
+        buffer.forEach(event -> {
+            if (event.clusterTime != null && event.clusterTime > lastClusterTime) {
+                missed.add(event);
+            }
+        });
+        return missed;
+    }
+
+
+    private static Long parseClusterTime(String eventId) {
+        if (eventId == null || !eventId.startsWith(CLUSTER_TIME_ID_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseUnsignedLong(eventId.substring(CLUSTER_TIME_ID_PREFIX.length()), 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    private static String toClusterTimeId(long clusterTime) {
+        return CLUSTER_TIME_ID_PREFIX + Long.toHexString(clusterTime);
+    }
+
+
+    private void unsubscribe(SseEmitter emitter) {
+        dispatch(() -> subscribers.remove(emitter));
+    }
+
+
+    /**
+     * Queues the event, completing the subscriber if it is too far behind
+     */
+    private void offer(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.enqueue(event)) {
+            log.debug("Product events subscriber too far behind, completing it");
+            subscribers.remove(subscriber.emitter);
+            // the emitter is locked by a pending write, so it is completed by a sender thread
+            execute(subscriber.emitter::complete);
+        }
+    }
+
+
+    private void execute(Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Product events senders already shut down");
+        }
+    }
+
+
+    private void dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.debug("Product events dispatcher already shut down");
+        }
+    }
+
+
+    private void heartbeat() {
+        new ArrayList<>(subscribers.values()).forEach(subscriber -> {
+            // a subscriber with pending events does not need to be kept alive
+            if (subscriber.isIdle()) {
+                offer(subscriber, SseEmitter.event().comment(HEARTBEAT_COMMENT));
+            }
+        });
+    }
+
+
+    /**
+     * @return the cluster time of the latest change when no change has been missed since, so that the id can be
+     * resumed by any replica, otherwise the boot id and the sequence number
+     */
+    private String currentId() {
+        return resumableClusterTime != null && latestClusterTime != null
+                ? toClusterTimeId(latestClusterTime)
+                : bootId + "-" + sequence;
+    }
+
+
+    @Override
+    public void destroy() {
+        dispatch(() -> {
+            subscribers.keySet().forEach(emitter -> execute(emitter::complete));
+            subscribers.clear();
+            senders.shutdown();
+        });
+        dispatcher.shutdown();
+    }
+
+
+    /**
+     * The bounded queue of the events still to be written to a client, drained by a sender thread
+     */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        /**
+         * The cluster time the client has resumed from, as it may be ahead of the changes known to this instance
+         */
+        private final Long resumedClusterTime;
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean gone;
+
+        private Subscriber(SseEmitter emitter, Long resumedClusterTime) {
+            this.emitter = emitter;
+            this.resumedClusterTime = resumedClusterTime;
+        }
+
+        private boolean accepts(BufferedEvent event) {
+            return resumedClusterTime == null || event.clusterTime == null || event.clusterTime > resumedClusterTime;
+        }
+
+        private synchronized boolean isIdle() {
+            return pending.isEmpty() && !draining;
+        }
+
+        /**
+         * @return {@code false} if the queue is full
+         */
+        private synchronized boolean enqueue(SseEmitter.SseEventBuilder event) {
+            if (gone) {
+                return true;
+            }
+            if (pending.size() >= bufferSize) {
+                gone = true;
+                pending.clear();
+                return false;
+            }
+            pending.addLast(event);
+            if (!draining) {
+                draining = true;
+                execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                final SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = gone ? null : pending.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Unable to send a product event, unsubscribing: {}", e.toString());
+                    synchronized (this) {
+                        gone = true;
+                        pending.clear();
+                        draining = false;
+                    }
+                    unsubscribe(emitter);
+                    return;
+                }
+            }
+        }
+
+    }
+
+
+    private static final class BufferedEvent {
+
+        private final long sequence;
+        private final Long clusterTime;
+        private final String id;
+        private final ProductEventResource resource;
+
+        private BufferedEvent(long sequence, Long clusterTime, String id, ProductEventResource resource) {
+            this.sequence = sequence;
+            this.clusterTime = clusterTime;
+            this.id = id;
+            this.resource = resource;
+        }
+
+        private SseEmitter.SseEventBuilder toSseEvent() {
+            return SseEmitter.event()
+                    .id(id)
+                    .name(resource.getType().name())
+                    .data(resource, MediaType.APPLICATION_JSON);
+        }
+
+    }
+
+}
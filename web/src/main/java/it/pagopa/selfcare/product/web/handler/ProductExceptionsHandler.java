@@ -3,14 +3,18 @@ package it.pagopa.selfcare.product.web.handler;
 import it.pagopa.selfcare.commons.web.model.Problem;
 import it.pagopa.selfcare.commons.web.model.mapper.ProblemMapper;
 import it.pagopa.selfcare.product.connector.exception.ResourceAlreadyExistsException;
+import it.pagopa.selfcare.product.connector.exception.ResourceConflictException;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
 import it.pagopa.selfcare.product.core.exception.InvalidRoleMappingException;
+import it.pagopa.selfcare.product.core.exception.TooManyUploadsException;
 import it.pagopa.selfcare.product.web.controller.ProductController;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import javax.validation.ValidationException;
+
 import static org.springframework.http.HttpStatus.*;
 
 /**
@@ -34,10 +38,31 @@ public class ProductExceptionsHandler {
     }
 
 
+    @ExceptionHandler({ValidationException.class})
+    ResponseEntity<Problem> handleValidationException(ValidationException e) {
+        log.warn(e.toString());
+        return ProblemMapper.toResponseEntity(new Problem(BAD_REQUEST, e.getMessage()));
+    }
+
+
     @ExceptionHandler({ResourceAlreadyExistsException.class})
     ResponseEntity<Problem> handleResourceAlreadyExistsException(ResourceAlreadyExistsException e) {
         log.warn(e.toString());
         return ProblemMapper.toResponseEntity(new Problem(CONFLICT, e.getMessage()));
     }
 
+
+    @ExceptionHandler({TooManyUploadsException.class})
+    ResponseEntity<Problem> handleTooManyUploadsException(TooManyUploadsException e) {
+        log.warn(e.toString());
+        return ProblemMapper.toResponseEntity(new Problem(TOO_MANY_REQUESTS, e.getMessage()));
+    }
+
+
+    @ExceptionHandler({ResourceConflictException.class})
+    ResponseEntity<Problem> handleResourceConflictException(ResourceConflictException e) {
+        log.warn(e.toString());
+        return ProblemMapper.toResponseEntity(new Problem(CONFLICT, e.getMessage()));
+    }
+
 }
\ No newline at end of file
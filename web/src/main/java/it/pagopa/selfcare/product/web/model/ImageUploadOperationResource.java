@@ -0,0 +1,34 @@
+package it.pagopa.selfcare.product.web.model;
+
+import io.swagger.annotations.ApiModelProperty;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class ImageUploadOperationResource {
+
+    @ApiModelProperty(value = "${swagger.product.model.imageUploadOperation.id}")
+    private String id;
+
+    @ApiModelProperty(value = "${swagger.product.model.id}")
+    private String productId;
+
+    @ApiModelProperty(value = "${swagger.product.model.imageType}")
+    private ProductImageType imageType;
+
+    @ApiModelProperty(value = "${swagger.product.model.imageUploadOperation.status}")
+    private ImageUploadOperation.Status status;
+
+    @ApiModelProperty(value = "${swagger.product.model.imageUploadOperation.error}")
+    private String error;
+
+    @ApiModelProperty(value = "${swagger.product.model.imageUploadOperation.createdAt}")
+    private Instant createdAt;
+
+    @ApiModelProperty(value = "${swagger.product.model.imageUploadOperation.updatedAt}")
+    private Instant updatedAt;
+
+}
@@ -0,0 +1,21 @@
+package it.pagopa.selfcare.product.web.model;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class ProductChangesResource {
+
+    @ApiModelProperty(value = "${swagger.product.model.changes.catalogVersion}", required = true)
+    private long catalogVersion;
+
+    @ApiModelProperty(value = "${swagger.product.model.changes.lastModifiedAt}")
+    private Instant lastModifiedAt;
+
+    @ApiModelProperty(value = "${swagger.product.model.changes.products}", required = true)
+    private List<ProductResource> products;
+
+}
@@ -16,6 +16,8 @@ public class ProductDto implements ProductOperations {
     private String logo;
     private String logoBgColor;
     private String depictImageUrl;
+    private Map<Integer, String> logoRenditions;
+    private Map<Integer, String> depictImageRenditions;
     private String title;
     private String description;
     private String urlPublic;
@@ -38,6 +40,7 @@ public class ProductDto implements ProductOperations {
     private Map<String, ? extends BackOfficeConfigurations> backOfficeEnvironmentConfigurations;
     private ProductOperations productOperations;
     private boolean invoiceable;
+    private Long version;
 
 
     @Override
@@ -0,0 +1,16 @@
+package it.pagopa.selfcare.product.web.model;
+
+import io.swagger.annotations.ApiModelProperty;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
+import lombok.Data;
+
+@Data
+public class ProductEventResource {
+
+    @ApiModelProperty(value = "${swagger.product.model.event.type}", required = true)
+    private ProductChangeType type;
+
+    @ApiModelProperty(value = "${swagger.product.model.id}", required = true)
+    private String productId;
+
+}
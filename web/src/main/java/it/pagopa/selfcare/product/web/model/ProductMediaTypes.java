@@ -0,0 +1,17 @@
+package it.pagopa.selfcare.product.web.model;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The media types the product resources are represented with: JSON, the default, and the binary formats
+ * offered to the service to service callers, cheaper to parse and smaller on the wire.
+ */
+public final class ProductMediaTypes {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    private ProductMediaTypes() {
+    }
+
+}
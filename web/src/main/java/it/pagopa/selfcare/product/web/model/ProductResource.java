@@ -66,9 +66,15 @@ public class ProductResource {
     @ApiModelProperty(value = "${swagger.product.model.logo}")
     private String logo;
 
+    @ApiModelProperty(value = "${swagger.product.model.logoRenditions}")
+    private Map<Integer, String> logoRenditions;
+
     @ApiModelProperty(value = "${swagger.product.model.depictImageUrl}")
     private String depictImageUrl;
 
+    @ApiModelProperty(value = "${swagger.product.model.depictImageRenditions}")
+    private Map<Integer, String> depictImageRenditions;
+
     @ApiModelProperty(value = "${swagger.product.model.createdAt}")
     private Instant createdAt;
 
@@ -81,6 +87,9 @@ public class ProductResource {
     @ApiModelProperty(value = "${swagger.product.model.modifiedBy}")
     private UUID modifiedBy;
 
+    @ApiModelProperty(value = "${swagger.product.model.version}")
+    private Long version;
+
     @ApiModelProperty(value = "${swagger.product.model.parentProduct}")
     private String parentId;
 
@@ -0,0 +1,77 @@
+package it.pagopa.selfcare.product.web.model;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import javax.validation.ValidationException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Sparse fieldsets of {@link ProductResource}: the callers can ask for a subset of its properties,
+ * which are then the only ones read from the store and written in the response. The id is always written.
+ */
+public final class ProductResourceFields {
+
+    public static final String FILTER_ID = "productResourceFields";
+
+    static final Set<String> NAMES = Arrays.stream(ProductResource.class.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    private static final String ID = "id";
+
+    private ProductResourceFields() {
+    }
+
+
+    /**
+     * @return the requested fields, or {@code null} if none has been requested
+     * @throws ValidationException if a requested field is not a {@link ProductResource} property
+     */
+    public static Set<String> of(Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        final Set<String> unknown = fields.stream()
+                .filter(field -> !NAMES.contains(field))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!unknown.isEmpty()) {
+            throw new ValidationException(String.format("Unknown product fields %s", unknown));
+        }
+        return new LinkedHashSet<>(fields);
+    }
+
+
+    /**
+     * @param fields the fields to write, as returned by {@link #of(Collection)}
+     * @return the body to be written with only the given fields of its {@link ProductResource}s
+     */
+    public static MappingJacksonValue select(Object body, Set<String> fields) {
+        final MappingJacksonValue value = new MappingJacksonValue(body);
+        if (fields != null) {
+            final Set<String> written = new LinkedHashSet<>(fields);
+            written.add(ID);
+            value.setFilters(new SimpleFilterProvider()
+                    .addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(written)));
+        }
+        return value;
+    }
+
+
+    /**
+     * Mixed in the {@link ProductResource} by the response mappers, which otherwise write all its properties
+     */
+    @JsonFilter(FILTER_ID)
+    public abstract static class FilterMixIn {
+    }
+
+}
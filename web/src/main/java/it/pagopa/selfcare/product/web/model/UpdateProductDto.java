@@ -67,4 +67,7 @@ public class UpdateProductDto {
     @Valid
     private Map<String, BackOfficeConfigurationsResource> backOfficeEnvironmentConfigurations;
 
+    @ApiModelProperty(value = "${swagger.product.model.version}")
+    private Long version;
+
 }
@@ -30,4 +30,7 @@ public class UpdateSubProductDto {
     @JsonProperty(required = true)
     @NotBlank
     private String title;
+
+    @ApiModelProperty(value = "${swagger.product.model.version}")
+    private Long version;
 }
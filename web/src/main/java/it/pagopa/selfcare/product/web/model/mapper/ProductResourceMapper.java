@@ -1,9 +1,12 @@
 package it.pagopa.selfcare.product.web.model.mapper;
 
 import it.pagopa.selfcare.product.connector.model.BackOfficeConfigurations;
+import it.pagopa.selfcare.product.connector.model.ContractOperations;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
 import it.pagopa.selfcare.product.connector.model.PartyRole;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductRoleInfoOperations;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
 import it.pagopa.selfcare.product.web.model.*;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -32,6 +35,12 @@ public interface ProductResourceMapper {
 
     ProductDto fromDto(UpdateSubProductDto dto);
 
+    ContractResource toContractResource(ContractOperations contract);
+
+    ContractResource toContractResource(ProductOperations product);
+
+    ImageUploadOperationResource toOperationResource(ImageUploadOperation operation);
+
     @Named("toBackOfficeConfigurations")
     static Map<String, BackOfficeConfigurationsResource> toBackOfficeConfigurations(Map<String, ? extends BackOfficeConfigurations> backOfficeConfigurations) {
         Map<String, BackOfficeConfigurationsResource> result;
@@ -68,24 +77,26 @@ public interface ProductResourceMapper {
         return null;
     }
 
-    default List<ProductTreeResource> toTreeResource(List<ProductOperations> model) {
+    default ProductTreeResource toTreeResource(ProductTree model) {
+        ProductTreeResource resource = null;
+        if (model != null) {
+            resource = new ProductTreeResource();
+            resource.setNode(toResource(model.getNode()));
+            if (model.getChildren() != null && !model.getChildren().isEmpty()) {
+                resource.setChildren(model.getChildren().stream()
+                        .map(this::toResource)
+                        .collect(Collectors.toList()));
+            }
+        }
+        return resource;
+    }
+
+    default List<ProductTreeResource> toTreeResource(List<ProductTree> model) {
         List<ProductTreeResource> resources = null;
         if (model != null) {
-            Map<String, List<ProductOperations>> collect = model.stream()
-                    .filter(productOperations -> productOperations.getParentId() != null)
-                    .collect(Collectors.groupingBy(ProductOperations::getParentId, Collectors.toList()));
             resources = model.stream()
-                    .filter(productOperations -> productOperations.getParentId() == null)
-                    .map(productOperations -> {
-                        ProductTreeResource productTreeResource = new ProductTreeResource();
-                        productTreeResource.setNode(this.toResource(productOperations));
-                        if (collect.get(productOperations.getId()) != null) {
-                            productTreeResource.setChildren(collect.get(productOperations.getId()).stream()
-                                    .map(this::toResource)
-                                    .collect(Collectors.toList()));
-                        }
-                        return productTreeResource;
-                    }).collect(Collectors.toList());
+                    .map(this::toTreeResource)
+                    .collect(Collectors.toList());
         }
         return resources;
     }
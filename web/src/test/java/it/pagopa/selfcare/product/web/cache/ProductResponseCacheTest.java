@@ -0,0 +1,229 @@
+package it.pagopa.selfcare.product.web.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.web.model.ProductResource;
+import it.pagopa.selfcare.product.web.model.ProductResourceFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductResponseCacheTest {
+
+    private static final CatalogVersion CATALOG_VERSION = new CatalogVersion(1, "0123456789abcdef");
+
+    private final ProductResponseCache productResponseCache = new ProductResponseCache(new ObjectMapper());
+
+
+    @Test
+    void get_serializesOnce() throws IOException {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> body = () -> {
+            calls.incrementAndGet();
+            return List.of("prod-io");
+        };
+        // when
+        ProductResponseCache.Entry first = productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        ProductResponseCache.Entry second = productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, new CatalogVersion(1, "0123456789abcdef"), body);
+        // then
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+        assertEquals("[\"prod-io\"]", new String(first.getBody(), StandardCharsets.UTF_8));
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(first.getGzip()))) {
+            assertArrayEquals(first.getBody(), inputStream.readAllBytes());
+        }
+    }
+
+
+    @Test
+    void get_concurrentRequestsShareOneSerialization() throws Exception {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<List<String>> body = () -> {
+            calls.incrementAndGet();
+            building.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of("prod-io");
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // when
+            List<Future<ProductResponseCache.Entry>> entries = new ArrayList<>();
+            entries.add(executor.submit(() -> productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body)));
+            assertTrue(building.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                entries.add(executor.submit(() -> productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body)));
+            }
+            release.countDown();
+            // then
+            ProductResponseCache.Entry first = entries.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<ProductResponseCache.Entry> entry : entries) {
+                assertSame(first, entry.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void get_failureIsNotCached() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> body = () -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("catalog unavailable");
+            }
+            return List.of("prod-io");
+        };
+        // when
+        Executable executable = () -> productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        // then
+        assertThrows(IllegalStateException.class, executable);
+        ProductResponseCache.Entry entry = productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        assertEquals("[\"prod-io\"]", new String(entry.getBody(), StandardCharsets.UTF_8));
+        assertEquals(2, calls.get());
+    }
+
+
+    @Test
+    void get_newCatalogVersion() {
+        // given
+        productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, () -> List.of("prod-io"));
+        // when
+        ProductResponseCache.Entry entry = productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON,
+                new CatalogVersion(2, "fedcba9876543210"),
+                () -> List.of("prod-io", "prod-pn"));
+        // then
+        assertEquals("[\"prod-io\",\"prod-pn\"]", new String(entry.getBody(), StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    void get_viewsAreIndependent() {
+        // given
+        productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, () -> List.of("prod-io"));
+        // when
+        ProductResponseCache.Entry entry = productResponseCache.get(ProductResponseCache.View.TREE, ProductResponseCache.Format.JSON, CATALOG_VERSION, () -> List.of());
+        // then
+        assertEquals("[]", new String(entry.getBody(), StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    void invalidate() {
+        // given
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> body = () -> {
+            calls.incrementAndGet();
+            return List.of();
+        };
+        productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        // when
+        productResponseCache.invalidate();
+        productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        // then
+        assertEquals(2, calls.get());
+    }
+
+
+    @Test
+    void get_catalogCompressionRatio() {
+        // given
+        List<ProductResource> catalog = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            catalog.add(ProductResourceFixtures.mockProduct(i));
+        }
+        // when
+        ProductResponseCache.Entry entry = new ProductResponseCache(new ObjectMapper().findAndRegisterModules())
+                .get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, () -> catalog);
+        // then
+        assertTrue(entry.getBody().length > 100_000, "catalog of " + entry.getBody().length + " bytes");
+        assertTrue(entry.getGzip().length * 8 < entry.getBody().length,
+                "gzip " + entry.getGzip().length + " bytes, json " + entry.getBody().length + " bytes");
+    }
+
+
+    @Test
+    void get_formatsAreIndependent() throws IOException {
+        // given
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        ProductResponseCache productResponseCache = new ProductResponseCache(Map.of(
+                ProductResponseCache.Format.JSON, new ObjectMapper(),
+                ProductResponseCache.Format.CBOR, cborMapper));
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<List<String>> body = () -> {
+            calls.incrementAndGet();
+            return List.of("prod-io");
+        };
+        productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.JSON, CATALOG_VERSION, body);
+        // when
+        ProductResponseCache.Entry entry = productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.CBOR, CATALOG_VERSION, body);
+        // then
+        assertEquals(2, calls.get());
+        assertEquals(ProductResponseCache.Format.CBOR, entry.getFormat());
+        assertEquals(List.of("prod-io"), cborMapper.readValue(entry.getBody(), List.class));
+        assertSame(entry, productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.CBOR, CATALOG_VERSION, body));
+    }
+
+
+    @Test
+    void get_unsupportedFormat() {
+        // when
+        Executable executable = () -> productResponseCache.get(ProductResponseCache.View.PRODUCTS, ProductResponseCache.Format.SMILE, CATALOG_VERSION, List::of);
+        // then
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+
+
+    @Test
+    void negotiate() {
+        assertEquals(ProductResponseCache.Format.JSON, ProductResponseCache.Format.negotiate(null));
+        assertEquals(ProductResponseCache.Format.JSON, ProductResponseCache.Format.negotiate("*/*"));
+        assertEquals(ProductResponseCache.Format.JSON, ProductResponseCache.Format.negotiate("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"));
+        assertEquals(ProductResponseCache.Format.JSON, ProductResponseCache.Format.negotiate("application/cbor;q=0.5, application/json"));
+        assertEquals(ProductResponseCache.Format.CBOR, ProductResponseCache.Format.negotiate("application/cbor"));
+        assertEquals(ProductResponseCache.Format.CBOR, ProductResponseCache.Format.negotiate("application/json;q=0.9, application/cbor"));
+        assertEquals(ProductResponseCache.Format.SMILE, ProductResponseCache.Format.negotiate("application/x-jackson-smile, application/json;q=0.5"));
+        assertEquals(ProductResponseCache.Format.JSON, ProductResponseCache.Format.negotiate("not a media type"));
+    }
+
+
+    @Test
+    void acceptsGzip() {
+        assertFalse(ProductResponseCache.acceptsGzip(null));
+        assertFalse(ProductResponseCache.acceptsGzip("identity"));
+        assertFalse(ProductResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductResponseCache.acceptsGzip("*, gzip; q=0.0"));
+        assertTrue(ProductResponseCache.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ProductResponseCache.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(ProductResponseCache.acceptsGzip("*"));
+    }
+
+}
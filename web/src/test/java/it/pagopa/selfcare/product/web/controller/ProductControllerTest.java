@@ -5,14 +5,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import it.pagopa.selfcare.commons.base.utils.InstitutionType;
 import it.pagopa.selfcare.commons.utils.TestUtils;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
+import it.pagopa.selfcare.product.connector.model.CatalogVersion;
+import it.pagopa.selfcare.product.connector.model.ImageUploadOperation;
 import it.pagopa.selfcare.product.connector.model.PartyRole;
+import it.pagopa.selfcare.product.connector.model.ProductImageType;
 import it.pagopa.selfcare.product.connector.model.ProductOperations;
 import it.pagopa.selfcare.product.connector.model.ProductStatus;
+import it.pagopa.selfcare.product.connector.model.ProductTree;
+import it.pagopa.selfcare.product.core.ImageUploadService;
 import it.pagopa.selfcare.product.core.ProductService;
+import it.pagopa.selfcare.product.core.exception.TooManyUploadsException;
+import it.pagopa.selfcare.product.web.cache.ProductResponseCache;
 import it.pagopa.selfcare.product.web.config.WebTestConfig;
 import it.pagopa.selfcare.product.web.handler.ProductExceptionsHandler;
 import it.pagopa.selfcare.product.web.model.*;
 import it.pagopa.selfcare.product.web.model.mapper.ProductResourceMapperImpl;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
@@ -20,7 +28,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
@@ -29,9 +40,17 @@ import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequ
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.util.MimeTypeUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static it.pagopa.selfcare.commons.utils.TestUtils.mockInstance;
 import static java.util.UUID.randomUUID;
@@ -39,11 +58,14 @@ import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.MediaType.APPLICATION_CBOR_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_PROBLEM_JSON;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(value = {ProductController.class}, excludeAutoConfiguration = SecurityAutoConfiguration.class)
@@ -59,6 +81,8 @@ class ProductControllerTest {
     private static final UpdateProductDto UPDATE_PRODUCT_DTO = mockInstance(new UpdateProductDto(), "setRoleMappings", "setLogoBgColor", "setBackOfficeEnvironmentConfigurations");
     private static final CreateSubProductDto CREATE_SUB_PRODUCT_DTO = mockInstance(new CreateSubProductDto());
     private static final UpdateSubProductDto UPDATE_SUB_PRODUCT_DTO = mockInstance(new UpdateSubProductDto());
+    private static final CatalogVersion CATALOG_VERSION = new CatalogVersion(2, "0123456789abcdef");
+    private static final String CATALOG_ETAG = "\"2-0123456789abcdef\"";
 
     static {
         EnumMap<PartyRole, ProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
@@ -89,6 +113,9 @@ class ProductControllerTest {
     @MockBean
     private ProductService productServiceMock;
 
+    @MockBean
+    private ImageUploadService imageUploadServiceMock;
+
 
     @Autowired
     protected MockMvc mvc;
@@ -96,6 +123,133 @@ class ProductControllerTest {
     @Autowired
     protected ObjectMapper objectMapper;
 
+    @Autowired
+    private ProductResponseCache productResponseCache;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+
+
+    @BeforeEach
+    void setUp() {
+        productResponseCache.invalidate();
+        when(productServiceMock.getCatalogVersion())
+                .thenReturn(CATALOG_VERSION);
+    }
+
+
+    @Test
+    void submitImageUpload() throws Exception {
+        //given
+        String productId = "productId";
+        String contentType = MimeTypeUtils.IMAGE_PNG_VALUE;
+        String filename = "test.png";
+        byte[] content = "test product logo".getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile multipartFile = new MockMultipartFile("image", filename, contentType, content);
+        ImageUploadOperation operation = new ImageUploadOperation("operationId", productId, ProductImageType.LOGO,
+                ImageUploadOperation.Status.PENDING, null, Instant.ofEpochMilli(1_000), Instant.ofEpochMilli(1_000));
+        AtomicReference<byte[]> staged = new AtomicReference<>();
+        when(imageUploadServiceMock.submit(any(), any(), anyLong(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Path target = Files.createTempFile("staged-", ".tmp");
+                    try {
+                        invocation.getArgument(5, ImageUploadService.StagingWriter.class).writeTo(target);
+                        staged.set(Files.readAllBytes(target));
+                    } finally {
+                        Files.deleteIfExists(target);
+                    }
+                    return operation;
+                });
+        //when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .multipart(BASE_URL + "/" + productId + "/images/operations")
+                        .file(multipartFile)
+                        .param("imageType", ProductImageType.LOGO.name()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost" + BASE_URL + "/" + productId + "/images/operations/" + operation.getId()))
+                .andReturn();
+        //then
+        ImageUploadOperationResource resource = objectMapper.readValue(result.getResponse().getContentAsString(), ImageUploadOperationResource.class);
+        assertEquals(operation.getId(), resource.getId());
+        assertEquals(productId, resource.getProductId());
+        assertEquals(ProductImageType.LOGO, resource.getImageType());
+        assertEquals(ImageUploadOperation.Status.PENDING, resource.getStatus());
+        assertArrayEquals(content, staged.get());
+        verify(imageUploadServiceMock, times(1))
+                .submit(Mockito.eq(productId), Mockito.eq(ProductImageType.LOGO), Mockito.eq((long) content.length), Mockito.eq(contentType), Mockito.eq(filename), any());
+        verifyNoMoreInteractions(imageUploadServiceMock);
+        verifyNoInteractions(productServiceMock);
+    }
+
+
+    @Test
+    void submitImageUpload_tooManyUploads() throws Exception {
+        //given
+        String productId = "productId";
+        MockMultipartFile multipartFile = new MockMultipartFile("image", "test.png",
+                MimeTypeUtils.IMAGE_PNG_VALUE, "test product logo".getBytes(StandardCharsets.UTF_8));
+        when(imageUploadServiceMock.submit(any(), any(), anyLong(), any(), any(), any()))
+                .thenThrow(new TooManyUploadsException("Too many image uploads in progress, retry later"));
+        //when
+        mvc.perform(MockMvcRequestBuilders
+                        .multipart(BASE_URL + "/" + productId + "/images/operations")
+                        .file(multipartFile)
+                        .param("imageType", ProductImageType.LOGO.name()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(content().contentType(APPLICATION_PROBLEM_JSON));
+        //then
+        verify(imageUploadServiceMock, times(1))
+                .submit(Mockito.eq(productId), Mockito.eq(ProductImageType.LOGO), anyLong(), any(), any(), any());
+        verifyNoMoreInteractions(imageUploadServiceMock);
+    }
+
+
+    @Test
+    void getImageUploadOperation() throws Exception {
+        //given
+        String productId = "productId";
+        String operationId = "operationId";
+        ImageUploadOperation operation = new ImageUploadOperation(operationId, productId, ProductImageType.DEPICT_IMAGE,
+                ImageUploadOperation.Status.FAILED, "error", Instant.ofEpochMilli(1_000), Instant.ofEpochMilli(2_000));
+        when(imageUploadServiceMock.getOperation(any(), any()))
+                .thenReturn(operation);
+        //when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/" + productId + "/images/operations/" + operationId))
+                .andExpect(status().isOk())
+                .andReturn();
+        //then
+        ImageUploadOperationResource resource = objectMapper.readValue(result.getResponse().getContentAsString(), ImageUploadOperationResource.class);
+        assertEquals(operationId, resource.getId());
+        assertEquals(ImageUploadOperation.Status.FAILED, resource.getStatus());
+        assertEquals("error", resource.getError());
+        assertEquals(operation.getUpdatedAt(), resource.getUpdatedAt());
+        verify(imageUploadServiceMock, times(1))
+                .getOperation(productId, operationId);
+        verifyNoMoreInteractions(imageUploadServiceMock);
+    }
+
+
+    @Test
+    void getImageUploadOperation_notFound() throws Exception {
+        //given
+        String productId = "productId";
+        String operationId = "operationId";
+        when(imageUploadServiceMock.getOperation(any(), any()))
+                .thenThrow(ResourceNotFoundException.class);
+        //when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/" + productId + "/images/operations/" + operationId))
+                .andExpect(status().isNotFound());
+        //then
+        verify(imageUploadServiceMock, times(1))
+                .getOperation(productId, operationId);
+        verifyNoMoreInteractions(imageUploadServiceMock);
+    }
+
 
     @Test
     void saveProductLogo() throws Exception {
@@ -118,7 +272,7 @@ class ProductControllerTest {
         //then
         ArgumentCaptor<InputStream> inputStreamArgumentCaptor = ArgumentCaptor.forClass(InputStream.class);
         verify(productServiceMock, times(1))
-                .saveProductLogo(Mockito.eq(productId), inputStreamArgumentCaptor.capture(), Mockito.eq(contentType), Mockito.eq(filename));
+                .saveProductLogo(Mockito.eq(productId), inputStreamArgumentCaptor.capture(), Mockito.eq(multipartFile.getSize()), Mockito.eq(contentType), Mockito.eq(filename));
         assertArrayEquals(inputStream.readAllBytes(), inputStreamArgumentCaptor.getValue().readAllBytes());
         Mockito.verifyNoMoreInteractions(productServiceMock);
     }
@@ -145,7 +299,7 @@ class ProductControllerTest {
         //then
         ArgumentCaptor<InputStream> inputStreamArgumentCaptor = ArgumentCaptor.forClass(InputStream.class);
         verify(productServiceMock, times(1))
-                .saveProductDepictImage(Mockito.eq(productId), inputStreamArgumentCaptor.capture(), Mockito.eq(contentType), Mockito.eq(filename));
+                .saveProductDepictImage(Mockito.eq(productId), inputStreamArgumentCaptor.capture(), Mockito.eq(multipartFile.getSize()), Mockito.eq(contentType), Mockito.eq(filename));
         assertArrayEquals(inputStream.readAllBytes(), inputStreamArgumentCaptor.getValue().readAllBytes());
         Mockito.verifyNoMoreInteractions(productServiceMock);
     }
@@ -186,6 +340,186 @@ class ProductControllerTest {
         assertProduct(product, products.get(0));
     }
 
+    @Test
+    void getProductsById() throws Exception {
+        // given
+        ProductOperations first = mockInstance(new ProductDto(), 1, "setRoleMappings", "setParentId", "setCreatedBy", "setModifiedBy");
+        first.setCreatedBy(randomUUID().toString());
+        first.setModifiedBy(randomUUID().toString());
+        ProductOperations second = mockInstance(new ProductDto(), 2, "setRoleMappings", "setParentId", "setCreatedBy", "setModifiedBy");
+        second.setCreatedBy(randomUUID().toString());
+        second.setModifiedBy(randomUUID().toString());
+        when(productServiceMock.getProductsById(any(), any()))
+                .thenReturn(List.of(second, first));
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .param("ids", second.getId() + "," + first.getId())
+                        .param("institutionType", InstitutionType.PA.name())
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag(null, first, second)))
+                .andReturn();
+        // then
+        List<ProductResource> products = objectMapper.readValue(
+                result.getResponse().getContentAsString(),
+                new TypeReference<>() {
+                });
+        assertEquals(2, products.size());
+        assertProduct(second, products.get(0));
+        assertProduct(first, products.get(1));
+        verify(productServiceMock, times(1))
+                .getProductsById(List.of(second.getId(), first.getId()), InstitutionType.PA);
+        verify(productServiceMock, never())
+                .getProducts(anyBoolean());
+        verify(productServiceMock, never())
+                .getCatalogVersion();
+    }
+
+    @Test
+    void getProductsById_notModified() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings");
+        when(productServiceMock.getProductsById(any(), any()))
+                .thenReturn(List.of(product));
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .param("ids", product.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, weakETag(null, product))
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified());
+        // then
+        verify(productServiceMock, times(1))
+                .getProductsById(List.of(product.getId()), null);
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+    @Test
+    void getProductsById_tooManyIds() throws Exception {
+        // given
+        String ids = IntStream.rangeClosed(0, 100)
+                .mapToObj(i -> "prod-" + i)
+                .collect(Collectors.joining(","));
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .param("ids", ids)
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isBadRequest());
+        // then
+        verifyNoInteractions(productServiceMock);
+    }
+
+    @Test
+    void getProductsById_fields() throws Exception {
+        // given
+        ProductOperations first = mockInstance(new ProductDto(), 1, "setRoleMappings", "setCreatedBy", "setModifiedBy", "setStatus");
+        first.setStatus(ProductStatus.ACTIVE);
+        ProductOperations second = mockInstance(new ProductDto(), 2, "setRoleMappings", "setCreatedBy", "setModifiedBy", "setStatus");
+        second.setStatus(ProductStatus.TESTING);
+        when(productServiceMock.getProductsById(any(), any(), any()))
+                .thenReturn(List.of(second, first));
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .param("ids", second.getId() + "," + first.getId())
+                        .param("fields", "status")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andReturn();
+        // then
+        List<Map<String, Object>> products = objectMapper.readValue(
+                result.getResponse().getContentAsString(),
+                new TypeReference<>() {
+                });
+        assertEquals(List.of(Map.of("id", second.getId(), "status", second.getStatus().name()),
+                        Map.of("id", first.getId(), "status", first.getStatus().name())),
+                products);
+        verify(productServiceMock, times(1))
+                .getProductsById(List.of(second.getId(), first.getId()), null, Set.of("status"));
+        verify(productServiceMock, never())
+                .getProductsById(any(), any());
+    }
+
+    @Test
+    void getProductChanges() throws Exception {
+        // given
+        Instant since = Instant.ofEpochMilli(1_000);
+        ProductOperations inactive = mockInstance(new ProductDto(), 1, "setRoleMappings", "setCreatedBy", "setModifiedBy", "setStatus", "setCreatedAt", "setModifiedAt");
+        inactive.setStatus(ProductStatus.INACTIVE);
+        inactive.setCreatedAt(Instant.ofEpochMilli(100));
+        inactive.setModifiedAt(Instant.ofEpochMilli(2_000));
+        ProductOperations created = mockInstance(new ProductDto(), 2, "setRoleMappings", "setCreatedBy", "setModifiedBy", "setCreatedAt", "setModifiedAt");
+        created.setCreatedAt(Instant.ofEpochMilli(500));
+        when(productServiceMock.getProductsModifiedAfter(any()))
+                .thenReturn(List.of(inactive, created));
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/changes")
+                        .param("since", since.toString())
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag(null, inactive, created)))
+                .andReturn();
+        // then
+        ProductChangesResource changes = objectMapper.readValue(result.getResponse().getContentAsString(), ProductChangesResource.class);
+        assertEquals(2_000, changes.getCatalogVersion());
+        assertEquals(Instant.ofEpochMilli(2_000), changes.getLastModifiedAt());
+        assertEquals(2, changes.getProducts().size());
+        assertProduct(inactive, changes.getProducts().get(0));
+        assertEquals(ProductStatus.INACTIVE, changes.getProducts().get(0).getStatus());
+        assertProduct(created, changes.getProducts().get(1));
+        verify(productServiceMock, times(1))
+                .getProductsModifiedAfter(since);
+    }
+
+    @Test
+    void getProductChanges_noChanges() throws Exception {
+        // given
+        Instant since = Instant.ofEpochMilli(1_000);
+        when(productServiceMock.getProductsModifiedAfter(any()))
+                .thenReturn(List.of());
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/changes")
+                        .param("since", since.toString())
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andReturn();
+        // then
+        ProductChangesResource changes = objectMapper.readValue(result.getResponse().getContentAsString(), ProductChangesResource.class);
+        assertEquals(since.toEpochMilli(), changes.getCatalogVersion());
+        assertEquals(since, changes.getLastModifiedAt());
+        assertTrue(changes.getProducts().isEmpty());
+        verify(productServiceMock, never())
+                .getCatalogVersion();
+    }
+
+    @Test
+    void getProductChanges_notModified() throws Exception {
+        // given
+        when(productServiceMock.getProductsModifiedAfter(any()))
+                .thenReturn(List.of());
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/changes")
+                        .param("since", "2023-01-01T00:00:00Z")
+                        .header(HttpHeaders.IF_NONE_MATCH, weakETag(null))
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified());
+        // then
+        verify(productServiceMock, times(1))
+                .getProductsModifiedAfter(Instant.parse("2023-01-01T00:00:00Z"));
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+    private static String weakETag(String format, ProductOperations... products) {
+        CatalogVersion version = CatalogVersion.of(List.of(products));
+        return "W/\"" + Long.toHexString(version.getCount()) + "-" + version.getFingerprint()
+                + (format == null ? "" : "-" + format) + "\"";
+    }
+
     private void assertProduct(ProductOperations expected, ProductResource actual) {
 
         assertEquals(expected.getId(), actual.getId());
@@ -218,6 +552,181 @@ class ProductControllerTest {
     }
 
 
+    @Test
+    void getProducts_eTag() throws Exception {
+        // given
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.emptyList());
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG));
+        // then
+        verify(productServiceMock, times(1))
+                .getCatalogVersion();
+        verify(productServiceMock, times(1))
+                .getProducts(true);
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+
+    @Test
+    void getProducts_notModified() throws Exception {
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .header(HttpHeaders.IF_NONE_MATCH, CATALOG_ETAG)
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG))
+                .andExpect(content().string(emptyString()));
+        // then
+        verify(productServiceMock, times(1))
+                .getCatalogVersion();
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+
+    @Test
+    void getProducts_cached() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings", "setParentId", "setCreatedBy", "setModifiedBy");
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.singletonList(product));
+        // when
+        MvcResult first = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult second = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                .andReturn();
+        // then
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), second.getResponse().getContentAsByteArray());
+        verify(productServiceMock, times(2))
+                .getCatalogVersion();
+        verify(productServiceMock, times(1))
+                .getProducts(true);
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+
+    @Test
+    void getProducts_cacheInvalidatedByWrite() throws Exception {
+        // given
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.emptyList());
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk());
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .put(BASE_URL + "/id/status/" + ProductStatus.ACTIVE))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk());
+        // then
+        verify(productServiceMock, times(2))
+                .getProducts(true);
+    }
+
+
+    @Test
+    void getProducts_gzip() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings", "setParentId", "setCreatedBy", "setModifiedBy");
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.singletonList(product));
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2-0123456789abcdef-gzip\""))
+                .andReturn();
+        // then
+        byte[] json;
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            json = inputStream.readAllBytes();
+        }
+        List<ProductResource> products = objectMapper.readValue(json, new TypeReference<>() {
+        });
+        assertEquals(1, products.size());
+        assertProduct(product, products.get(0));
+    }
+
+
+    @Test
+    void getProducts_cbor() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings", "setParentId", "setCreatedBy", "setModifiedBy");
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.singletonList(product));
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept(APPLICATION_CBOR_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2-0123456789abcdef-cbor\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+        // then
+        List<ProductResource> products = cborHttpMessageConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(),
+                new TypeReference<>() {
+                });
+        assertEquals(1, products.size());
+        assertProduct(product, products.get(0));
+    }
+
+
+    @Test
+    void getProducts_jsonByDefault() throws Exception {
+        // given
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.emptyList());
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .accept("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG))
+                .andExpect(content().string("[]"));
+        // then
+    }
+
+
+    @Test
+    void getProducts_staleETag() throws Exception {
+        // given
+        when(productServiceMock.getProducts(true))
+                .thenReturn(Collections.emptyList());
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-0\"")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CATALOG_ETAG));
+        // then
+        verify(productServiceMock, times(1))
+                .getProducts(true);
+    }
+
+
     @Test
     void getProduct_exists() throws Exception {
 
@@ -254,6 +763,69 @@ class ProductControllerTest {
         assertProduct(product, actual);
     }
 
+    @Test
+    void getProduct_smile() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings", "setCreatedBy", "setModifiedBy");
+        product.setCreatedBy(randomUUID().toString());
+        product.setModifiedBy(randomUUID().toString());
+        when(productServiceMock.getProduct(anyString(), any()))
+                .thenReturn(product);
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .accept(ProductMediaTypes.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ProductMediaTypes.APPLICATION_SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag("smile", product)))
+                .andReturn();
+        // then
+        ProductResource actual = smileHttpMessageConverter.getObjectMapper().readValue(result.getResponse().getContentAsByteArray(), ProductResource.class);
+        assertProduct(product, actual);
+    }
+
+    @Test
+    void getProduct_fields() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings", "setCreatedBy", "setModifiedBy");
+        when(productServiceMock.getProduct(anyString(), any(), any()))
+                .thenReturn(product);
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .param("institutionType", InstitutionType.PA.name())
+                        .param("fields", "title,contractTemplatePath")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag(null, product)))
+                .andReturn();
+        // then
+        Map<String, Object> actual = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {
+        });
+        assertEquals(Map.of("id", product.getId(),
+                        "title", product.getTitle(),
+                        "contractTemplatePath", product.getContractTemplatePath()),
+                actual);
+        verify(productServiceMock, times(1))
+                .getProduct("id", InstitutionType.PA, Set.of("title", "contractTemplatePath"));
+        verify(productServiceMock, never())
+                .getProduct(anyString(), any());
+    }
+
+    @Test
+    void getProduct_unknownField() throws Exception {
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .param("fields", "title,unknown")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(APPLICATION_PROBLEM_JSON));
+        // then
+        verifyNoInteractions(productServiceMock);
+    }
+
     @Test
     void getProduct_notExists() throws Exception {
         // given
@@ -270,6 +842,79 @@ class ProductControllerTest {
         // then
     }
 
+    @Test
+    void getProduct_notExistsWithETag() throws Exception {
+        // given
+        when(productServiceMock.getProduct(anyString(), any()))
+                .thenThrow(ResourceNotFoundException.class);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .header(HttpHeaders.IF_NONE_MATCH, "*")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotFound());
+        // then
+        verify(productServiceMock, never())
+                .getCatalogVersion();
+    }
+
+    @Test
+    void getProduct_notModified() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings");
+        when(productServiceMock.getProduct(anyString(), any()))
+                .thenReturn(product);
+        String eTag = weakETag(null, product);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag.substring(2))
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        // then
+        verify(productServiceMock, times(1))
+                .getProduct("id", null);
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+    @Test
+    void getProduct_modified() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings");
+        product.setVersion(1L);
+        String previousETag = weakETag(null, product);
+        product.setVersion(2L);
+        when(productServiceMock.getProduct(anyString(), any()))
+                .thenReturn(product);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .header(HttpHeaders.IF_NONE_MATCH, previousETag)
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag(null, product)));
+    }
+
+    @Test
+    void getProduct_modifiedOtherFormat() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings");
+        when(productServiceMock.getProduct(anyString(), any()))
+                .thenReturn(product);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id")
+                        .header(HttpHeaders.IF_NONE_MATCH, weakETag(null, product))
+                        .accept(APPLICATION_CBOR_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag("cbor", product)));
+        // then
+        verify(productServiceMock, times(1))
+                .getProduct("id", null);
+    }
+
     @Test
     void createProduct() throws Exception {
         // given
@@ -457,11 +1102,8 @@ class ProductControllerTest {
     @Test
     void getProductRoles_exists() throws Exception {
         // given
-        when(productServiceMock.getProduct(anyString(), any()))
+        when(productServiceMock.getProductRoleMappings(anyString()))
                 .thenAnswer(invocationOnMock -> {
-                    String id = invocationOnMock.getArgument(0, String.class);
-                    ProductOperations product = mockInstance(new ProductDto(), "setId", "setRoleMappings");
-                    product.setId(id);
                     EnumMap<PartyRole, ProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
                     for (PartyRole partyRole : PartyRole.values()) {
                         ProductRoleInfo productRoleInfo = new ProductRoleInfo();
@@ -471,6 +1113,8 @@ class ProductControllerTest {
                         productRoleInfo.setRoles(roles);
                         roleMappings.put(partyRole, productRoleInfo);
                     }
+                    ProductOperations product = new ProductDto();
+                    product.setId(invocationOnMock.getArgument(0, String.class));
                     product.setRoleMappings(roleMappings);
                     return product;
                 });
@@ -493,7 +1137,7 @@ class ProductControllerTest {
     @Test
     void getProductRoles_notExists() throws Exception {
         // given
-        when(productServiceMock.getProduct(anyString(), any()))
+        when(productServiceMock.getProductRoleMappings(anyString()))
                 .thenThrow(ResourceNotFoundException.class);
         // when
         mvc.perform(MockMvcRequestBuilders
@@ -506,6 +1150,64 @@ class ProductControllerTest {
         // then
     }
 
+    @Test
+    void getProductRoles_notModified() throws Exception {
+        // given
+        ProductOperations product = mockInstance(new ProductDto(), "setRoleMappings");
+        when(productServiceMock.getProductRoleMappings(anyString()))
+                .thenReturn(product);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id/role-mappings")
+                        .header(HttpHeaders.IF_NONE_MATCH, weakETag(null, product))
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified());
+        // then
+        verify(productServiceMock, times(1))
+                .getProductRoleMappings("id");
+        verifyNoMoreInteractions(productServiceMock);
+    }
+
+    @Test
+    void getProductContractTemplate() throws Exception {
+        // given
+        ProductOperations contract = mockInstance(new ProductDto(), "setRoleMappings");
+        when(productServiceMock.getProductContractTemplate(anyString(), any()))
+                .thenReturn(contract);
+        // when
+        MvcResult result = mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id/contract-template")
+                        .param("institutionType", InstitutionType.PA.name())
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, weakETag(null, contract)))
+                .andReturn();
+        // then
+        ContractResource contractResource = objectMapper.readValue(result.getResponse().getContentAsString(), ContractResource.class);
+        assertEquals(contract.getContractTemplatePath(), contractResource.getContractTemplatePath());
+        assertEquals(contract.getContractTemplateVersion(), contractResource.getContractTemplateVersion());
+        assertEquals(contract.getContractTemplateUpdatedAt(), contractResource.getContractTemplateUpdatedAt());
+        verify(productServiceMock, times(1))
+                .getProductContractTemplate("id", InstitutionType.PA);
+    }
+
+    @Test
+    void getProductContractTemplate_notExists() throws Exception {
+        // given
+        when(productServiceMock.getProductContractTemplate(anyString(), any()))
+                .thenThrow(ResourceNotFoundException.class);
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/id/contract-template")
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(APPLICATION_PROBLEM_JSON))
+                .andExpect(content().string(not(emptyString())));
+        // then
+        verify(productServiceMock, times(1))
+                .getProductContractTemplate("id", null);
+    }
+
     @Test
     void getProductsTree() throws Exception {
         //given
@@ -517,8 +1219,8 @@ class ProductControllerTest {
         children.setParentId(node.getId());
         children.setCreatedBy(randomUUID().toString());
         children.setModifiedBy(randomUUID().toString());
-        when(productServiceMock.getProducts(Mockito.anyBoolean()))
-                .thenReturn(List.of(node, children));
+        when(productServiceMock.getProductsTree())
+                .thenReturn(List.of(new ProductTree(node, List.of(children))));
         //when
         MvcResult result = mvc.perform(MockMvcRequestBuilders
                 .get(BASE_URL + "/tree")
@@ -532,8 +1234,27 @@ class ProductControllerTest {
                 });
         assertNotNull(treeResources);
         assertEquals(1, treeResources.size());
+        assertEquals(node.getId(), treeResources.get(0).getNode().getId());
+        assertEquals(1, treeResources.get(0).getChildren().size());
+        assertEquals(children.getId(), treeResources.get(0).getChildren().get(0).getId());
+        verify(productServiceMock, times(1))
+                .getCatalogVersion();
+        verify(productServiceMock, times(1))
+                .getProductsTree();
+        Mockito.verifyNoMoreInteractions(productServiceMock);
+    }
+
+    @Test
+    void getProductsTree_notModified() throws Exception {
+        // when
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BASE_URL + "/tree")
+                        .header(HttpHeaders.IF_NONE_MATCH, CATALOG_ETAG)
+                        .accept(APPLICATION_JSON_VALUE))
+                .andExpect(status().isNotModified());
+        // then
         verify(productServiceMock, times(1))
-                .getProducts(false);
+                .getCatalogVersion();
         Mockito.verifyNoMoreInteractions(productServiceMock);
 
     }
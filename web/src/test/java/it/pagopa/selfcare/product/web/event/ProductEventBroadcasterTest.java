@@ -0,0 +1,354 @@
+package it.pagopa.selfcare.product.web.event;
+
+import it.pagopa.selfcare.product.connector.model.ProductChangeEvent;
+import it.pagopa.selfcare.product.connector.model.ProductChangeType;
+import it.pagopa.selfcare.product.web.model.ProductEventResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductEventBroadcasterTest {
+
+    private static final int BUFFER_SIZE = 2;
+    private static final long WAIT_MILLIS = 5_000;
+
+    private ProductEventBroadcaster broadcaster;
+    private ProductEventBroadcaster otherReplica;
+
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new ProductEventBroadcaster(false, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.destroy();
+        if (otherReplica != null) {
+            otherReplica.destroy();
+        }
+    }
+
+
+    @Test
+    void subscribe_liveEvents() throws Exception {
+        // given
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(null, emitter);
+        // when
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        broadcaster.onProductChange(new ProductChangeEvent(ProductChangeType.STATUS_CHANGE, "prod-2", null));
+        // then
+        List<SentEvent> events = emitter.await(2);
+        assertEquals(ProductChangeType.CREATE.name(), events.get(0).name);
+        assertEquals("prod-1", events.get(0).resource.getProductId());
+        assertEquals(ProductChangeType.CREATE, events.get(0).resource.getType());
+        assertEquals(ProductChangeType.STATUS_CHANGE.name(), events.get(1).name);
+        assertEquals("prod-2", events.get(1).resource.getProductId());
+        assertTrue(events.get(0).id.endsWith("-1"));
+        assertTrue(events.get(1).id.endsWith("-2"));
+    }
+
+
+    @Test
+    void subscribe_resumesMissedEvents() throws Exception {
+        // given
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-1", null));
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.DELETE, "prod-2", null));
+        List<SentEvent> received = first.await(3);
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(received.get(1).id, resumed);
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-3", null));
+        // then
+        List<SentEvent> events = resumed.await(2);
+        assertEquals(received.get(2).id, events.get(0).id);
+        assertEquals("prod-2", events.get(0).resource.getProductId());
+        assertEquals("prod-3", events.get(1).resource.getProductId());
+    }
+
+
+    @Test
+    void subscribe_upToDate() throws Exception {
+        // given
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        String lastEventId = first.await(1).get(0).id;
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(lastEventId, resumed);
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-2", null));
+        // then
+        List<SentEvent> events = resumed.await(1);
+        assertEquals("prod-2", events.get(0).resource.getProductId());
+    }
+
+
+    @Test
+    void subscribe_evictedEvents() throws Exception {
+        // given
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        for (int i = 0; i <= BUFFER_SIZE + 1; i++) {
+            broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-" + i, null));
+        }
+        List<SentEvent> received = first.await(BUFFER_SIZE + 2);
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(received.get(0).id, resumed);
+        // then
+        List<SentEvent> events = resumed.await(1);
+        assertEquals(ProductEventBroadcaster.RESYNC_EVENT, events.get(0).name);
+        assertEquals(received.get(BUFFER_SIZE + 1).id, events.get(0).id);
+    }
+
+
+    @Test
+    void subscribe_unknownEventId() throws Exception {
+        // given
+        RecordingEmitter emitter = new RecordingEmitter();
+        // when
+        broadcaster.subscribe("0123456789ab-1", emitter);
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        // then
+        List<SentEvent> events = emitter.await(2);
+        assertEquals(ProductEventBroadcaster.RESYNC_EVENT, events.get(0).name);
+        assertNull(events.get(0).resource);
+        assertEquals("prod-1", events.get(1).resource.getProductId());
+    }
+
+
+    @Test
+    void onServiceEvent_changeStreamEnabled() throws Exception {
+        // given
+        broadcaster.destroy();
+        broadcaster = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(null, emitter);
+        // when
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        broadcaster.onProductChange(new ProductChangeEvent(ProductChangeType.CREATE, "prod-2", null));
+        // then
+        List<SentEvent> events = emitter.await(1);
+        assertEquals("prod-2", events.get(0).resource.getProductId());
+        assertTrue(events.get(0).id.endsWith("-1"));
+    }
+
+
+    @Test
+    void subscribe_otherReplica() throws Exception {
+        // given
+        broadcaster.destroy();
+        broadcaster = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        otherReplica = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        for (long clusterTime = 1; clusterTime <= 2; clusterTime++) {
+            ProductChangeEvent change = new ProductChangeEvent(ProductChangeType.UPDATE, "prod-" + clusterTime, null, clusterTime);
+            broadcaster.onProductChange(change);
+            otherReplica.onProductChange(change);
+        }
+        List<SentEvent> received = first.await(2);
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        otherReplica.subscribe(received.get(0).id, resumed);
+        // then
+        List<SentEvent> events = resumed.await(1);
+        assertTrue(received.get(0).id.startsWith(ProductEventBroadcaster.CLUSTER_TIME_ID_PREFIX));
+        assertEquals(received.get(1).id, events.get(0).id);
+        assertEquals("prod-2", events.get(0).resource.getProductId());
+    }
+
+
+    @Test
+    void subscribe_aheadOfReplica() throws Exception {
+        // given
+        broadcaster.destroy();
+        broadcaster = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        otherReplica = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        ProductChangeEvent seenByBoth = new ProductChangeEvent(ProductChangeType.UPDATE, "prod-1", null, 1L);
+        ProductChangeEvent notYetSeen = new ProductChangeEvent(ProductChangeType.UPDATE, "prod-2", null, 2L);
+        broadcaster.onProductChange(seenByBoth);
+        broadcaster.onProductChange(notYetSeen);
+        otherReplica.onProductChange(seenByBoth);
+        String lastEventId = first.await(2).get(1).id;
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        otherReplica.subscribe(lastEventId, resumed);
+        otherReplica.onProductChange(notYetSeen);
+        otherReplica.onProductChange(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-3", null, 3L));
+        // then
+        List<SentEvent> events = resumed.await(1);
+        assertEquals("prod-3", events.get(0).resource.getProductId());
+    }
+
+
+    @Test
+    void subscribe_otherReplicaMissedChanges() throws Exception {
+        // given
+        broadcaster.destroy();
+        broadcaster = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        otherReplica = new ProductEventBroadcaster(true, BUFFER_SIZE, Duration.ofMinutes(1), Duration.ofHours(1));
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        broadcaster.onProductChange(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-1", null, 1L));
+        String lastEventId = first.await(1).get(0).id;
+        // started after the first change
+        otherReplica.onProductChange(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-2", null, 2L));
+        // when
+        RecordingEmitter resumed = new RecordingEmitter();
+        otherReplica.subscribe(lastEventId, resumed);
+        // then
+        List<SentEvent> events = resumed.await(1);
+        assertEquals(ProductEventBroadcaster.RESYNC_EVENT, events.get(0).name);
+        assertEquals(ProductEventBroadcaster.CLUSTER_TIME_ID_PREFIX + "2", events.get(0).id);
+    }
+
+
+    @Test
+    void onCatalogResync() throws Exception {
+        // given
+        RecordingEmitter first = new RecordingEmitter();
+        broadcaster.subscribe(null, first);
+        broadcaster.onProductChange(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        // when
+        broadcaster.onCatalogResync();
+        // then
+        List<SentEvent> events = first.await(2);
+        assertEquals(ProductEventBroadcaster.RESYNC_EVENT, events.get(1).name);
+        RecordingEmitter resumed = new RecordingEmitter();
+        broadcaster.subscribe(events.get(0).id, resumed);
+        assertEquals(ProductEventBroadcaster.RESYNC_EVENT, resumed.await(1).get(0).name);
+    }
+
+
+    @Test
+    void send_clientGone() throws Exception {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        SseEmitter gone = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                attempts.incrementAndGet();
+                throw new IOException("Broken pipe");
+            }
+        };
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(null, gone);
+        broadcaster.subscribe(null, emitter);
+        // when
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.CREATE, "prod-1", null));
+        broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-1", null));
+        // then
+        emitter.await(2);
+        assertEquals(1, attempts.get());
+    }
+
+
+    @Test
+    void send_slowClient() throws Exception {
+        // given
+        CountDownLatch released = new CountDownLatch(1);
+        SseEmitter slow = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    released.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public void complete() {
+                released.countDown();
+            }
+        };
+        RecordingEmitter emitter = new RecordingEmitter();
+        broadcaster.subscribe(null, slow);
+        broadcaster.subscribe(null, emitter);
+        // when
+        for (int i = 0; i < BUFFER_SIZE + 2; i++) {
+            broadcaster.onServiceEvent(new ProductChangeEvent(ProductChangeType.UPDATE, "prod-" + i, null));
+        }
+        // then
+        emitter.await(BUFFER_SIZE + 2);
+        assertTrue(released.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+
+    private static final class SentEvent {
+
+        private final String id;
+        private final String name;
+        private final ProductEventResource resource;
+
+        private SentEvent(SseEmitter.SseEventBuilder builder) {
+            String fields = builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(String.class::isInstance)
+                    .map(String.class::cast)
+                    .collect(Collectors.joining());
+            this.id = field(fields, "id:");
+            this.name = field(fields, "event:");
+            this.resource = builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(ProductEventResource.class::isInstance)
+                    .map(ProductEventResource.class::cast)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        private static String field(String fields, String prefix) {
+            return fields.lines()
+                    .filter(line -> line.startsWith(prefix))
+                    .map(line -> line.substring(prefix.length()))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+    }
+
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<SentEvent> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(new SentEvent(builder));
+        }
+
+        private List<SentEvent> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, events.size());
+            return events;
+        }
+
+    }
+
+}
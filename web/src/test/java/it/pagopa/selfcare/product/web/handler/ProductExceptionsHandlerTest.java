@@ -2,12 +2,16 @@ package it.pagopa.selfcare.product.web.handler;
 
 import it.pagopa.selfcare.commons.web.model.Problem;
 import it.pagopa.selfcare.product.connector.exception.ResourceAlreadyExistsException;
+import it.pagopa.selfcare.product.connector.exception.ResourceConflictException;
 import it.pagopa.selfcare.product.connector.exception.ResourceNotFoundException;
 import it.pagopa.selfcare.product.core.exception.InvalidRoleMappingException;
+import it.pagopa.selfcare.product.core.exception.TooManyUploadsException;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.ResponseEntity;
 
+import javax.validation.ValidationException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.http.HttpStatus.*;
@@ -51,6 +55,21 @@ class ProductExceptionsHandlerTest {
     }
 
 
+    @Test
+    void handleValidationException() {
+        // given
+        ValidationException validationException = new ValidationException(DETAIL_MESSAGE);
+        // when
+        ResponseEntity<Problem> responseEntity = handler.handleValidationException(validationException);
+        // then
+        assertNotNull(responseEntity);
+        assertEquals(BAD_REQUEST, responseEntity.getStatusCode());
+        assertNotNull(responseEntity.getBody());
+        assertEquals(DETAIL_MESSAGE, responseEntity.getBody().getDetail());
+        assertEquals(BAD_REQUEST.value(), responseEntity.getBody().getStatus());
+    }
+
+
     @Test
     void handleResourceAlreadyExistsException() {
         // given
@@ -67,4 +86,38 @@ class ProductExceptionsHandlerTest {
         assertEquals(CONFLICT.value(), responseEntity.getBody().getStatus());
     }
 
+
+    @Test
+    void handleResourceConflictException() {
+        // given
+        ResourceConflictException mockException = Mockito.mock(ResourceConflictException.class);
+        Mockito.when(mockException.getMessage())
+                .thenReturn(DETAIL_MESSAGE);
+        // when
+        ResponseEntity<Problem> responseEntity = handler.handleResourceConflictException(mockException);
+        // then
+        assertNotNull(responseEntity);
+        assertEquals(CONFLICT, responseEntity.getStatusCode());
+        assertNotNull(responseEntity.getBody());
+        assertEquals(DETAIL_MESSAGE, responseEntity.getBody().getDetail());
+        assertEquals(CONFLICT.value(), responseEntity.getBody().getStatus());
+    }
+
+
+    @Test
+    void handleTooManyUploadsException() {
+        // given
+        TooManyUploadsException mockException = Mockito.mock(TooManyUploadsException.class);
+        Mockito.when(mockException.getMessage())
+                .thenReturn(DETAIL_MESSAGE);
+        // when
+        ResponseEntity<Problem> responseEntity = handler.handleTooManyUploadsException(mockException);
+        // then
+        assertNotNull(responseEntity);
+        assertEquals(TOO_MANY_REQUESTS, responseEntity.getStatusCode());
+        assertNotNull(responseEntity.getBody());
+        assertEquals(DETAIL_MESSAGE, responseEntity.getBody().getDetail());
+        assertEquals(TOO_MANY_REQUESTS.value(), responseEntity.getBody().getStatus());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package it.pagopa.selfcare.product.web.model;
+
+import it.pagopa.selfcare.product.connector.model.PartyRole;
+import it.pagopa.selfcare.product.connector.model.ProductStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.UUID.randomUUID;
+
+public final class ProductResourceFixtures {
+
+    private ProductResourceFixtures() {
+    }
+
+
+    /**
+     * A product shaped as the production ones: every role mapping and back-office environment filled in,
+     * with random user ids and URLs that do not compress.
+     */
+    public static ProductResource mockProduct(int index) {
+        String id = "prod-" + index;
+        ProductResource product = new ProductResource();
+        product.setId(id);
+        product.setTitle("Product " + index);
+        product.setDescription("Description of the product " + index + ", shown in the product catalog of the institution dashboard");
+        product.setLogoBgColor("#0066CC");
+        product.setIdentityTokenAudience(id + ".selfcare.pagopa.it");
+        product.setUrlPublic("https://" + id + ".pagopa.it");
+        product.setUrlBO("https://" + id + ".selfcare.pagopa.it/auth?token=<IdentityToken>");
+        product.setStatus(ProductStatus.ACTIVE);
+        product.setContractTemplatePath("contracts/template/" + id + "/" + randomUUID() + "/contract.html");
+        product.setContractTemplateVersion("1.0." + index);
+        product.setContractTemplateUpdatedAt(Instant.ofEpochMilli(1_650_000_000_000L + index));
+        product.setLogo("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/" + id + "/logo-" + randomUUID() + ".png");
+        product.setDepictImageUrl("https://selcdcheckoutsa.z6.web.core.windows.net/resources/products/" + id + "/depict-image-" + randomUUID() + ".jpeg");
+        product.setCreatedAt(Instant.ofEpochMilli(1_600_000_000_000L + index));
+        product.setCreatedBy(randomUUID());
+        product.setModifiedAt(Instant.ofEpochMilli(1_650_000_000_000L + index));
+        product.setModifiedBy(randomUUID());
+        EnumMap<PartyRole, ProductRoleInfo> roleMappings = new EnumMap<>(PartyRole.class);
+        for (PartyRole partyRole : PartyRole.values()) {
+            List<ProductRole> roles = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                ProductRole role = new ProductRole();
+                role.setCode(partyRole.name().toLowerCase() + "-" + i);
+                role.setLabel("Role " + i + " of the " + partyRole.name().toLowerCase());
+                role.setDescription("Grants the " + partyRole.name().toLowerCase() + " the permissions of the role " + i + " on the product " + index);
+                roles.add(role);
+            }
+            ProductRoleInfo roleInfo = new ProductRoleInfo();
+            roleInfo.setMultiroleAllowed(partyRole == PartyRole.OPERATOR);
+            roleInfo.setRoles(roles);
+            roleMappings.put(partyRole, roleInfo);
+        }
+        product.setRoleMappings(roleMappings);
+        Map<String, BackOfficeConfigurationsResource> backOfficeConfigurations = new HashMap<>();
+        for (String environment : List.of("dev", "uat", "prod")) {
+            BackOfficeConfigurationsResource configurations = new BackOfficeConfigurationsResource();
+            configurations.setUrl("https://" + environment + "." + id + ".selfcare.pagopa.it/auth?token=<IdentityToken>");
+            configurations.setIdentityTokenAudience(environment + "." + id + ".selfcare.pagopa.it");
+            backOfficeConfigurations.put(environment, configurations);
+        }
+        product.setBackOfficeEnvironmentConfigurations(backOfficeConfigurations);
+        return product;
+    }
+
+}
@@ -0,0 +1,124 @@
+package it.pagopa.selfcare.product.web.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a {@link ProductResource} and of a catalog tree of {@link ProductTreeResource}
+ * in each of the formats offered by the product reads.
+ * It is not run by the build: run {@link #main(String[])} from the test classpath; the encoded sizes are
+ * printed on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductResourceSerializationBenchmark {
+
+    private static final int TREE_PARENTS = 10;
+    private static final int TREE_CHILDREN = 4;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private ProductResource product;
+    private List<ProductTreeResource> tree;
+    private byte[] encodedProduct;
+    private byte[] encodedTree;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .factory(factory(format))
+                .build();
+        product = ProductResourceFixtures.mockProduct(0);
+        tree = new ArrayList<>();
+        int index = 0;
+        for (int i = 0; i < TREE_PARENTS; i++) {
+            ProductTreeResource node = new ProductTreeResource();
+            node.setNode(ProductResourceFixtures.mockProduct(index++));
+            List<ProductResource> children = new ArrayList<>();
+            for (int j = 0; j < TREE_CHILDREN; j++) {
+                ProductResource child = ProductResourceFixtures.mockProduct(index++);
+                child.setParentId(node.getNode().getId());
+                children.add(child);
+            }
+            node.setChildren(children);
+            tree.add(node);
+        }
+        encodedProduct = objectMapper.writeValueAsBytes(product);
+        encodedTree = objectMapper.writeValueAsBytes(tree);
+        System.out.printf("%n%s product %d bytes, tree %d bytes%n", format, encodedProduct.length, encodedTree.length);
+    }
+
+
+    @Benchmark
+    public byte[] encodeProduct() throws IOException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+
+    @Benchmark
+    public ProductResource decodeProduct() throws IOException {
+        return objectMapper.readValue(encodedProduct, ProductResource.class);
+    }
+
+
+    @Benchmark
+    public byte[] encodeTree() throws IOException {
+        return objectMapper.writeValueAsBytes(tree);
+    }
+
+
+    @Benchmark
+    public ProductTreeResource[] decodeTree() throws IOException {
+        return objectMapper.readValue(encodedTree, ProductTreeResource[].class);
+    }
+
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "CBOR":
+                return new CBORFactory();
+            case "SMILE":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductResourceSerializationBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+}